@@ -1,59 +1,66 @@
 package actor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import army.Army;
-import javafx.animation.Animation;
-import javafx.animation.RotateTransitionBuilder;
-import javafx.animation.Transition;
-import javafx.animation.TranslateTransitionBuilder;
+import core.ActorRules;
+import core.ActorTemplate;
+import core.ArmyState;
+import core.Battle;
+import core.SpawnGroup;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
-import javafx.scene.control.Tooltip;
-import javafx.util.Duration;
 import util.InputGUI;
-import util.SingletonRandom;
+import util.RandomSource;
 
 /*
  * Actor must contain a name, health, strength, and speed. This will be an abstract super class
+ * Location and attributes are held in the Army's core.ArmyState (one slot per Actor), the name in a plain field. The JavaFX properties mirroring
+ * them, and the avatar, are only created when something asks for them: the properties when a TableView cell binds to this Actor, the avatar
+ * when the battle is drawn with Nodes. An Actor that is never shown in a table or as a Node stays a handful of fields.
  */
 
 public abstract class Actor {
 
 	private static final int NAME_LENGTH_MAX = 11;
-	private static final double HEALTH_MIN = 1.0;
-	private static final double HEALTH_MAX = 200.00;
-	private static final double STRENGTH_MIN = 30.0;
-	private static final double STRENGTH_MAX = 100.00;
-	private static final double SPEED_MIN = 30.0;
-	private static final double SPEED_MAX = 100.00;
+	private static final double HEALTH_MIN = ArmyState.HEALTH_MIN;
+	private static final double HEALTH_MAX = ArmyState.HEALTH_MAX;
+	private static final double STRENGTH_MIN = ArmyState.STRENGTH_MIN;
+	private static final double STRENGTH_MAX = ArmyState.STRENGTH_MAX;
+	private static final double SPEED_MIN = ArmyState.SPEED_MIN;
+	private static final double SPEED_MAX = ArmyState.SPEED_MAX;
+
+	private static final AtomicInteger objectCount = new AtomicInteger(); // Actors may be built on several threads at once, see Army.build()
 
-	private static int objectCount = 0;
+	private String name;
+	private SimpleStringProperty nameProperty; // the properties are null until first asked for; health, strength and speed then trail the state
+	private SimpleDoubleProperty healthProperty; // by up to one pulse, see publishProperties()
+	private SimpleDoubleProperty strengthProperty;
+	private SimpleDoubleProperty speedProperty;
 
-	public SimpleStringProperty name = new SimpleStringProperty();
-	public SimpleDoubleProperty health = new SimpleDoubleProperty();
-	public SimpleDoubleProperty strength = new SimpleDoubleProperty();
-	public SimpleDoubleProperty speed = new SimpleDoubleProperty();
+	private ArmyState state; // headless storage shared by every Actor in the Army
+	private int slot; // this Actor's index into the state columns
+	private RandomSource random; // this Actor's own stream, see ArmyState.randomStream()
 
-	private Tooltip toolTip = new Tooltip();
 	private Army armyAllegiance; // Used to capture the Effect applied to the battefieldAvatar, and used to probe its relationship to other Actor objects when evaluating move()
-	private Node battlefieldAvatar; // No need to tag as "transient" since I am overriding readObject() and writeObject()
-	private Transition transition; // Retained for run-time control of animations. Need reference-to value to support suspend() call.
-	private double duration = 200.0;
+	private Node battlefieldAvatar; // null until getBattleFieldAvatar() is first called
 
 	public Actor(){}
 	
 	public Actor( int subClassCount, Army armyAllegiance ) {
 		this.armyAllegiance = armyAllegiance;
-		battlefieldAvatar = buildShape(); // abstract method MUST be implemented in each subclass
-		setName( this.getClass().getSimpleName() + " " + ++objectCount + ":" + subClassCount );
-		setHealth( SingletonRandom.instance.getNormalDistribution( HEALTH_MIN, HEALTH_MAX, 2.0 ) );
-		setStrength( SingletonRandom.instance.getNormalDistribution( STRENGTH_MIN, STRENGTH_MAX, 2.0 ) );
-		setSpeed( SingletonRandom.instance.getNormalDistribution( SPEED_MIN, SPEED_MAX, 2.0 ) );
-		setRandomLocation( armyAllegiance );
-		adjustAvatarBasedOnActorAttributes();
+		state = armyAllegiance.getState();
+		slot = armyAllegiance.claimSlot( getKind() );
+		random = state.randomStream( slot );
+		SpawnGroup group = armyAllegiance.getSpawnGroup(); // the scenario's type and spawn region for this Actor
+		ActorTemplate template = group.getTemplate( getKind() );
+		setName( this.getClass().getSimpleName() + " " + objectCount.incrementAndGet() + ":" + subClassCount );
+		setHealth( random.getNormalDistribution( template.getHealthMin(), template.getHealthMax(), 2.0 ) );
+		setStrength( random.getNormalDistribution( template.getStrengthMin(), template.getStrengthMax(), 2.0 ) );
+		setSpeed( random.getNormalDistribution( template.getSpeedMin(), template.getSpeedMax(), 2.0 ) );
+		setRandomLocation( group );
 	}
 
 	public void inputAllFields() {
@@ -66,69 +73,118 @@ public abstract class Actor {
 	public abstract boolean hasMount();
 	public abstract void setMount( boolean hasMount );
 
+	/** @return one of the core.ActorKind codes; called from the Actor constructor, so it must not depend on subclass fields. */
+	protected abstract byte getKind();
+
+	public ArmyState getState() {
+		return state;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
 	/*******************************************************/
 	//-----------------------NAME--------------------------//
 
 	public String getName() {
-		return name.get();
+		return name;
 	}
 
 	/** @param name the name to set */
 	public void setName( String name ) {
 		if ( name.length() > NAME_LENGTH_MAX )
 			name = name.substring( 0, NAME_LENGTH_MAX );
-		this.name.set( name );
+		this.name = name;
+		if ( nameProperty != null )
+			nameProperty.set( name );
 	} // END NAME
 
+	// Property accessors, found by the PropertyValueFactory columns in Actor_Table_List so that the cells follow published changes. Each property is
+	// created on the first call, from the state as it stands, so only Actors that have been shown in a table carry them. Application Thread only.
+	public SimpleStringProperty nameProperty() {
+		if ( nameProperty == null )
+			nameProperty = new SimpleStringProperty( this, "name", name );
+		return nameProperty;
+	}
+
+	public SimpleDoubleProperty healthProperty() {
+		if ( healthProperty == null )
+			healthProperty = new SimpleDoubleProperty( this, "health", state.getHealth( slot ) );
+		return healthProperty;
+	}
+
+	public SimpleDoubleProperty strengthProperty() {
+		if ( strengthProperty == null )
+			strengthProperty = new SimpleDoubleProperty( this, "strength", state.getStrength( slot ) );
+		return strengthProperty;
+	}
+
+	public SimpleDoubleProperty speedProperty() {
+		if ( speedProperty == null )
+			speedProperty = new SimpleDoubleProperty( this, "speed", state.getSpeed( slot ) );
+		return speedProperty;
+	}
+
+	/** Copies the attributes that changed from the state into whichever UI-facing properties exist and the avatar, if built: health decides whether
+	 * the avatar is shown, strength its scale. Called by Army.publishProperties() for Actors whose attributes changed, at most once per pulse, so the TableView and the
+	 * scene graph see one change per attribute per frame however often the battle writes it, and none for attributes left alone.
+	 * 
+	 * @param changed the ArmyState.CHANGED_ bits of the attributes written since the last call */
+	public void publishProperties( int changed ) {
+		if ( ( changed & ArmyState.CHANGED_HEALTH ) != 0 ) {
+			if ( healthProperty != null )
+				healthProperty.set( state.getHealth( slot ) );
+			if ( battlefieldAvatar != null )
+				battlefieldAvatar.setVisible( state.isAlive( slot ) ); // a replay or a load can bring the dead back
+		}
+		if ( ( changed & ArmyState.CHANGED_STRENGTH ) != 0 ) {
+			if ( strengthProperty != null )
+				strengthProperty.set( state.getStrength( slot ) );
+			if ( battlefieldAvatar != null )
+				scaleAvatar();
+		}
+		if ( ( changed & ArmyState.CHANGED_SPEED ) != 0 && speedProperty != null )
+			speedProperty.set( state.getSpeed( slot ) );
+	}
+
 	/*******************************************************/
 	//---------------------HEALTH--------------------------//
 
 	public double getHealth() {
-		return health.get();
+		return state.getHealth( slot );
 	}
 
 	/** @param health the health to set */
 	public void setHealth( double health ) {
-		if ( health < HEALTH_MIN ) {
-			health = 0.0;
-		} else if ( health > HEALTH_MAX ) {
-			health = HEALTH_MAX;
-		}
-		this.health.set( health );
+		state.setHealth( slot, health ); // clamps; the property follows on the next publish
+		armyAllegiance.requestPublish();
 	} // END HEALTH
 
 	/*******************************************************/
 	//--------------------STRENGTH-------------------------//
 
 	public double getStrength() {
-		return strength.get();
+		return state.getStrength( slot );
 	}
 
 	/** @param strength the strength to set */
 	public void setStrength( double strength ) {
-		if ( strength < STRENGTH_MIN ) {
-			strength = STRENGTH_MIN;
-		} else if ( strength > STRENGTH_MAX ) {
-			strength = STRENGTH_MAX;
-		}
-		this.strength.set( strength );
+		state.setStrength( slot, strength ); // clamps
+		armyAllegiance.requestPublish();
 	} // END STRENGTH
 
 	/*******************************************************/
 	//----------------------SPEED--------------------------//
 
 	public double getSpeed() {
-		return speed.get();
+		return state.getSpeed( slot );
 	}
 
 	/** @param speed the speed to set */
 	public void setSpeed( double speed ) {
-		if ( speed < SPEED_MIN ) {
-			speed = SPEED_MIN;
-		} else if ( speed > SPEED_MAX ) {
-			speed = SPEED_MAX;
-		}
-		this.speed.set( speed );
+		state.setSpeed( slot, speed ); // clamps
+		armyAllegiance.requestPublish();
 	} // END SPEED
 	
 	/*******************************************************/
@@ -136,71 +192,65 @@ public abstract class Actor {
 
 	protected abstract Node buildShape(); // Each subclass will have a different look.
 
+	/** Builds the avatar on the first call, placed and scaled as the state stands; Canvas rendering never calls this. The tooltip is not per
+	 * avatar: Simulator shows one shared Tooltip for whichever Actor is under the mouse. */
 	public Node getBattleFieldAvatar() {
+		if ( battlefieldAvatar == null ) {
+			battlefieldAvatar = buildShape(); // abstract method MUST be implemented in each subclass
+			initAvatar();
+		}
 		return battlefieldAvatar;
 	}
 
-	// created as separate method: called when a TableView edit has taken place and the change in attributes needs to be reflected in the scene graph
-	private void adjustAvatarBasedOnActorAttributes() {
+	/** @return whether getBattleFieldAvatar() has built the avatar yet */
+	public boolean hasBattleFieldAvatar() {
+		return battlefieldAvatar != null;
+	}
+
+	// Once per avatar: the army's effect never changes.
+	private void initAvatar() {
+		battlefieldAvatar.setEffect( armyAllegiance.getEffectToApplyToActorObjectsInArmy() );
+		battlefieldAvatar.setVisible( state.isAlive( slot ) );
+		battlefieldAvatar.setTranslateX( getX() );
+		battlefieldAvatar.setTranslateY( getY() );
+		battlefieldAvatar.setRotate( state.getRotation( slot ) );
+		scaleAvatar();
+	}
+
+	// Strength decides the size of the avatar; called when it changes, e.g. after a TableView edit or contact damage.
+	private void scaleAvatar() {
 		battlefieldAvatar.setScaleX( getStrength() / 60.0 );
 		battlefieldAvatar.setScaleY( getStrength() / 60.0 );
-		battlefieldAvatar.setEffect( armyAllegiance.getEffectToApplyToActorObjectsInArmy() );
-		toolTip.setText( this.toString() );
-		toolTip.setOpacity( 0.80 );
-		Tooltip.install( battlefieldAvatar, toolTip );
 	}
 
 	/*******************************************************/
 	//---------------MOVEMENT AND LOCATION-----------------//
 
-	public boolean isActive() {
-		return !( ( transition == null ) || ( transition.getStatus() != Animation.Status.RUNNING ) );
+	public double getX() {
+		return state.getX( slot );
+	}
+
+	public double getY() {
+		return state.getY( slot );
+	}
+
+	/** Copies the simulation state onto the avatar; called by the BattleClock once per rendered frame. The battle itself is advanced in fixed
+	 * timesteps by core.Battle.tick(), so no per-Actor animation objects are created. Only the location and rotation are written here: attribute
+	 * changes reach the avatar through publishProperties().
+	 * 
+	 * @param alpha fraction of a timestep since the latest tick, used to blend between the last two simulated locations */
+	public void updateAvatar( double alpha ) {
+		battlefieldAvatar.setTranslateX( state.getInterpolatedX( slot, alpha ) );
+		battlefieldAvatar.setTranslateY( state.getInterpolatedY( slot, alpha ) );
+		battlefieldAvatar.setRotate( state.getRotation( slot ) );
 	}
-	
-	/** Call once to begin motion; each call to move() invokes one short-term animation; an "onFinished" CALLBACK is set to call move() again; looks recursive BUT IT IS NOT (I call it chained). */
-    public void move() {
-    	adjustAvatarBasedOnActorAttributes();
-    	Point2D ptNewLocation = findNewLocationToMoveTo(); // COULD RETURN NULL if not moving
-    	if ( ptNewLocation == null || getHealth() <= 0.0 ) { // don't move . . . should be in a rotate mode
-    		transition = RotateTransitionBuilder.create() // look around then invoke move() when finished looking
-        	    .node( battlefieldAvatar )
-        	    .fromAngle( 0.0 )
-        	    .toAngle( 360.0 )
-        	    .cycleCount( 2 ) // if the Actor isn't yet healthy enough to move, then this version of move() (a RotateTransition) will be reasserted again and again.
-        	    .autoReverse( true )
-        	    .duration( Duration.seconds( 500.0 / getSpeed() ) )
-        	    .onFinished( new EventHandler<ActionEvent>() {
-        	        @Override
-        	        public void handle( ActionEvent arg0 ) {
-        	            move();
-        	        }
-        	    } ) // Looks recursive, but not really . . . it is chained, where the termination of a transition calls move() to spawn another.
-        	    .build();
-    		transition.play();
-    	} else { // found a new location . . . move towards
-    		transition = TranslateTransitionBuilder.create()
-        	    .node( battlefieldAvatar )
-        		.delay( Duration.seconds( 150.0 / getHealth() ) )  // before transition starts
-        		.duration( Duration.seconds( getDuration() / getSpeed() ) )  //
-        		.toX( ptNewLocation.getX() )
-        		.toY( ptNewLocation.getY() )
-        		.onFinished( new EventHandler<ActionEvent>() {
-        		    @Override
-        		    public void handle( ActionEvent arg0 ) {
-        		        move();
-        		    }
-        		} ) // Looks recursive, but not really . . . it is chained, where the termination of a transition calls move() to spawn another.
-        		.build();
-    		transition.play();
-    	}
-    }
     
     public double getDuration(){
-    	return this.duration;
+    	return state.getMoveDuration( slot );
     }
     
     public void setDuration( double duration ){
-      	this.duration  = duration;    	
+      	state.setMoveDuration( slot, duration );
     }
 
 	/** Determines the motion of an Actor object. Internally it calls a polymorphic method to define the new target location of the Actor (based on
@@ -208,62 +258,50 @@ public abstract class Actor {
 	 * 
 	 * @return new coordinate of the Node */
 	public Point2D findNewLocationToMoveTo() {
-		Actor nearestOpposingActor = armyAllegiance.findNearestActorInOpposingArmy( this );
+		Actor nearestOpposingActor = armyAllegiance.findNearestHostileActor( this );
 		if ( nearestOpposingActor == null )
 			return null;
 			// Don't move. A "null" return value is normal under specific circumstances, for example, when their are no opposing Actor
 		Point2D ptNewPossiblePoint = getSubclassSpecificNewLocation( nearestOpposingActor ); // Point2D is immutable
-		double x = ptNewPossiblePoint.getX();
-		double y = ptNewPossiblePoint.getY();
-		// Snap the proposed newPossiblePoint to the inside boundaries of the scene.
-		double sceneWidth = battlefieldAvatar.getScene().getWidth();
-		double sceneHeight = battlefieldAvatar.getScene().getHeight();
-		final double edgeOffset = 20.0;
-		if ( x < 0.0 )
-			x = edgeOffset;
-		else if ( x > sceneWidth )
-			x = sceneWidth - edgeOffset;
-		if ( y < 0.0 )
-			y = edgeOffset;
-		else if ( y > sceneHeight )
-			y = sceneHeight - edgeOffset;
-		if ( y < sceneHeight * 0.109 && x < ( sceneWidth * 0.378 ) )
-			x = ( sceneWidth * 0.38 );
-		else if( y > sceneHeight * 0.109 && y < sceneHeight * 0.388 && x < ( sceneWidth * 0.322 ) )
-			x = ( sceneWidth * 0.33 );
-		else if ( y > sceneHeight * 0.388 && y < sceneHeight * 0.623 && x < ( sceneWidth * 0.397 ) )
-			x = ( sceneWidth * 0.4 );
-		else if ( y > sceneHeight * 0.623 && x < ( sceneWidth * 0.57 ) )
-			x = ( sceneWidth * 0.58 );
-		
-		return new Point2D( x, y ); // Since Point2D is immutable, we cannot change newPossiblePoint and may need to manufacture a new one. So,
-		
-		// currently, I manufacture a new Point2D in all cases rather than testing if I need to.
-		
+		double[] location = { ptNewPossiblePoint.getX(), ptNewPossiblePoint.getY() };
+		getBattle().snapToBattlefield( location ); // Snap the proposed newPossiblePoint to the inside boundaries of the battlefield.
+		return new Point2D( location[ 0 ], location[ 1 ] );
     }
-   
+
+	/** Each subclass delegates to its rule in core.ActorRules, which reads and writes the ArmyState directly. */
 	public abstract Point2D getSubclassSpecificNewLocation( Actor nearestOpposingActor );
 
-	public void suspend() {
-		if ( transition == null ) // not active, nothing to do
-			return;
-		transition.stop();
-		transition = null;
+	/** Runs the core rule for this Actor's kind against the given opponent.
+	 * 
+	 * @return the proposed (unsnapped) new location */
+	protected Point2D applyCoreRule( Actor nearestOpposingActor ) {
+		double[] location = new double[ 2 ];
+		ActorRules.newLocation( getBattle(), state, slot, nearestOpposingActor.getState(), nearestOpposingActor.getSlot(), location );
+		return new Point2D( location[ 0 ], location[ 1 ] );
 	}
 
-	public void setRandomLocation( Army armyAllegiance ) {
-		final double range = 100.0 / 2.0;
-		final double spread = 1.2;
-		Point2D ptCenterOfDistribution = null;
+	protected Battle getBattle() {
+		return state.getBattle();
+	}
 
-		if ( armyAllegiance.getArmyName().compareTo( "Forces of Light" ) == 0 ) {
-			ptCenterOfDistribution = new Point2D( 452.0, 150.0 );
-		} else if ( armyAllegiance.getArmyName().compareTo( "Forces of Darkness" ) == 0 ) {
-			ptCenterOfDistribution = new Point2D( 690.0, 400.0 );
-		}
+	/** @return this Actor's own random stream, for every roll made on its behalf */
+	protected RandomSource getRandom() {
+		return random;
+	}
 
-		battlefieldAvatar.setTranslateX( SingletonRandom.instance.getNormalDistribution( ptCenterOfDistribution.getX() - range, ptCenterOfDistribution.getX() + range, spread ) );
-		battlefieldAvatar.setTranslateY( SingletonRandom.instance.getNormalDistribution( ptCenterOfDistribution.getY() - range, ptCenterOfDistribution.getY() + range, spread ) );
+	/** Places the Actor at random in the group's spawn region, most likely near its centre. */
+	public void setRandomLocation( SpawnGroup group ) {
+		final double range = group.getRange();
+		final double spread = 1.2;
+		double centreX = group.getCentreX();
+		double centreY = group.getCentreY();
+
+		state.setLocation( slot, random.getNormalDistribution( centreX - range, centreX + range, spread ),
+				random.getNormalDistribution( centreY - range, centreY + range, spread ) );
+		if ( battlefieldAvatar != null ) {
+			battlefieldAvatar.setTranslateX( getX() );
+			battlefieldAvatar.setTranslateY( getY() );
+		}
 	} 
 
 	@Override
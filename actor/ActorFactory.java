@@ -1,37 +1,66 @@
 package actor;
 
+import java.util.Arrays;
+
 import army.Army;
+import core.ActorKind;
 
+/** Registry of the Actor subclasses, one per core.ActorKind code: a kind's shape and rules are fixed by the core, its Actor subclass is looked up
+ * here. Scenario types (core.ActorTemplate) are data on top of a kind, so they need no registration. The built-in subclasses are registered when
+ * the class loads; register() replaces one, e.g. with a subclass that draws itself differently. create() may be called from any thread. */
 public final class ActorFactory {
-	
-	/** enum is a special data type that enables for a variable to be a set of predefined constants. The variable must be equal to one of the values
-	 * that have been predefined for it. */
-	public enum Type {
-		HOBBIT() { @Override public Actor create( Army armyAllegiance ) { return new Hobbit( armyAllegiance ); } }, // HOBBIT is a constant, thus all UPPERCASE letters 
-		WIZARD() { @Override public Actor create( Army armyAllegiance ) { return new Wizard( armyAllegiance ); } }, 
-		ORC()    { @Override public Actor create( Army armyAllegiance ) { return new Orc   ( armyAllegiance ); } }, 
-		ELF()    { @Override public Actor create( Army armyAllegiance ) { return new Elf   ( armyAllegiance ); } },
-		RANDOM() { @Override public Actor create( Army armyAllegiance ) { return createActorRandomSelection( armyAllegiance ); } };
-		
-		/** Polymorphic method that will bind to the specific create() method for the actual named type (e.g. HOBBIT); create an object of that type
-		 * and return a reference-to it.   
-		 * 
-		 * This is required to use a method inside an enum type
-		 * 
-		 * @param armyAllegiance Used to define the <i>Army</i> allegiance of the <i>Actor</i>.
-		 * @return reference-to <i>Actor</i> object created through random number selection. */
-		public abstract Actor create( Army armyAllegiance ); // supports polymorphic call where actual subclass objects are created. 
-	
-	} // end enum Type 
-
-	public final static int numTypes = Type.values().length; // Auto detects the number of CONSTANTS that have been defined "public" is acceptable because it is a CONSTANT "final" 
-
-	/** Method that will select one of the available <i>Actor</i> types, create an object of that type and return a reference-to that object.
-	 * 
-	 * @param armyAllegiance Used to define the <i>Army</i> allegiance of the <i>Actor</i>.
-	 * @return reference-to <i>Actor</i> object created through random number selection. allegiance */
-	public final static Actor createActorRandomSelection( Army armyAllegiance ) {
-		return Type.values()[ (int) ( Math.random() * ( numTypes - 1 ) ) ].create( armyAllegiance ); // subtract last because one enum type is RANDOM 
-	} // end createActorRandomSelection() 
-
-} // end class ActoryFactory
\ No newline at end of file
+
+	/** Builds the Actor subclass registered for a kind. */
+	public interface Creator {
+		Actor create( Army armyAllegiance );
+	}
+
+	private static volatile Creator[] creators = new Creator[ ActorKind.COUNT ]; // replaced, never written, once published
+	private static volatile byte[] registeredKinds = new byte[ 0 ]; // the kinds with a Creator, ascending: what a random choice picks from
+
+	static {
+		register( ActorKind.HOBBIT, new Creator() { @Override public Actor create( Army armyAllegiance ) { return new Hobbit( armyAllegiance ); } } );
+		register( ActorKind.WIZARD, new Creator() { @Override public Actor create( Army armyAllegiance ) { return new Wizard( armyAllegiance ); } } );
+		register( ActorKind.ORC,    new Creator() { @Override public Actor create( Army armyAllegiance ) { return new Orc   ( armyAllegiance ); } } );
+		register( ActorKind.ELF,    new Creator() { @Override public Actor create( Army armyAllegiance ) { return new Elf   ( armyAllegiance ); } } );
+	}
+
+	private ActorFactory() { } // static registry only
+
+	/** Makes creator the one used for every Actor of the kind created from now on. */
+	public static synchronized void register( byte kind, Creator creator ) {
+		if ( kind < 0 || kind >= ActorKind.COUNT )
+			throw new IllegalArgumentException( "Unknown actor kind: " + kind );
+		Creator[] updated = creators.clone();
+		updated[ kind ] = creator;
+		int count = 0;
+		byte[] kinds = new byte[ updated.length ];
+		for ( byte k = 0; k < updated.length; ++k ) {
+			if ( updated[ k ] != null )
+				kinds[ count++ ] = k;
+		}
+		creators = updated;
+		registeredKinds = Arrays.copyOf( kinds, count );
+	}
+
+	/** @return a new Actor of the kind, in the army
+	 * @throws IllegalArgumentException if no subclass is registered for the kind */
+	public static Actor create( byte kind, Army armyAllegiance ) {
+		Creator creator = kind >= 0 && kind < ActorKind.COUNT ? creators[ kind ] : null;
+		if ( creator == null )
+			throw new IllegalArgumentException( "No Actor registered for kind " + kind );
+		return creator.create( armyAllegiance );
+	}
+
+	/** @return one of the registered kinds, each equally likely, drawn from the army's random stream; lets a bulk populate settle every random
+	 *         choice up front, in order */
+	public static byte selectRandomKind( Army armyAllegiance ) {
+		byte[] kinds = registeredKinds;
+		return kinds[ armyAllegiance.getState().getRandom().nextInt( kinds.length ) ];
+	}
+
+	/** @return a new Actor of a randomly chosen registered kind, in the army */
+	public static Actor createActorRandomSelection( Army armyAllegiance ) {
+		return create( selectRandomKind( armyAllegiance ), armyAllegiance );
+	}
+} // end class ActorFactory
@@ -1,17 +1,20 @@
 package actor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import army.Army;
+import core.ActorKind;
 import util.InputGUI;
 
 /* Elves can have a bow. */
 public class Elf extends Actor {
 
-	private static int elfCount = 0;
+	private static final AtomicInteger elfCount = new AtomicInteger();
 	private boolean hasBow;
 	private boolean hasMount;
 	private double originalSpeed;
@@ -19,11 +22,11 @@ public class Elf extends Actor {
 	private static Color fillColor = Color.GOLD;
 
 	public Elf(Army armyAllegiance) {
-		super( ++elfCount, armyAllegiance );
+		super( elfCount.incrementAndGet(), armyAllegiance );
 		this.originalStrength = getStrength();
 		this.originalSpeed = getSpeed();
-		setHasBow( Math.random() < 0.5 );
-		setMount( Math.random() < 0.5 );
+		setHasBow( getRandom().chance( 0.5 ) );
+		setMount( getRandom().chance( 0.5 ) );
 	}
 
 	@Override
@@ -86,12 +89,14 @@ public class Elf extends Actor {
 		return battlefieldAvatar;
 	}
 
+	@Override
+	protected byte getKind() {
+		return ActorKind.ELF;
+	}
+
 	@Override
 	public Point2D getSubclassSpecificNewLocation( Actor nearestOpposingActor ) {
-		if (this.getBattleFieldAvatar().intersects( nearestOpposingActor.getBattleFieldAvatar().getBoundsInParent())){
-			this.setHealth( this.getHealth() - nearestOpposingActor.getStrength() / 3 );
-		}
-		return new Point2D( nearestOpposingActor.getBattleFieldAvatar().getTranslateX(), nearestOpposingActor.getBattleFieldAvatar().getTranslateY() );
+		return applyCoreRule( nearestOpposingActor ); // ActorRules.elf(): heads for the nearest opponent, around blocked terrain
 	}
 
 }
@@ -1,13 +1,15 @@
 package actor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import army.Army;
+import core.ActorKind;
 import util.InputGUI;
-import util.SingletonRandom;
 
 /*
  * Hobbits have a stealth attribute, run away from battle, and are tiny. If stealth is over 50%, change of being unseen
@@ -18,7 +20,7 @@ public class Hobbit extends Actor {
 	public static final double STEALTH_MIN = 0.0;
 	public static final double STEALH_MAX = 100.0;
 
-	private static int hobbitCount = 0;
+	private static final AtomicInteger hobbitCount = new AtomicInteger();
 
 	private double originalSpeed;
 	private double stealth;
@@ -27,11 +29,11 @@ public class Hobbit extends Actor {
 	private static Color fillColor = Color.BLUE;
 
 	public Hobbit( Army armyAllegiance ) {
-		super( ++hobbitCount, armyAllegiance );
+		super( hobbitCount.incrementAndGet(), armyAllegiance );
 		setStrength( getStrength() / 1.4 );
-		setStealth( SingletonRandom.instance.getNormalDistribution( STEALTH_MIN, STEALH_MAX, 2.0 ) );
+		setStealth( getRandom().getNormalDistribution( STEALTH_MIN, STEALH_MAX, 2.0 ) );
 		this.originalSpeed = getSpeed();
-		setMount( Math.random() < 0.5 );
+		setMount( getRandom().chance( 0.5 ) );
 	}
 
 	@Override
@@ -66,15 +68,15 @@ public class Hobbit extends Actor {
 	public void setVisiblity( double stealth ) {
 		// TODO implement this in a useful way somewhere
 		if ( stealth >= 50 && stealth < 60 ) {
-			isVisible = Math.random() < 0.5;
+			isVisible = getRandom().nextDouble() < 0.5;
 		} else if ( stealth >= 60 && stealth < 70 ) {
-			isVisible = Math.random() > 0.6;
+			isVisible = getRandom().nextDouble() > 0.6;
 		} else if ( stealth >= 70 && stealth < 80 ) {
-			isVisible = Math.random() > 0.7;
+			isVisible = getRandom().nextDouble() > 0.7;
 		} else if ( stealth >= 80 && stealth < 90 ) {
-			isVisible = Math.random() > 0.8;
+			isVisible = getRandom().nextDouble() > 0.8;
 		} else if ( stealth >= 90 ) {
-			isVisible = Math.random() > 0.9;
+			isVisible = getRandom().nextDouble() > 0.9;
 		} else {
 			isVisible = true;
 		}
@@ -112,44 +114,14 @@ public class Hobbit extends Actor {
 		return battlefieldAvatar;
 	}
 	
+	@Override
+	protected byte getKind() {
+		return ActorKind.HOBBIT;
+	}
+
 	@Override
 	public Point2D getSubclassSpecificNewLocation( Actor nearestOpposingActor ) {
-		
-		double actorXValue = this.getBattleFieldAvatar().getTranslateX();
-		double actorYValue = this.getBattleFieldAvatar().getTranslateY();
-		double opposingXValue = nearestOpposingActor.getBattleFieldAvatar().getTranslateX();
-		double opposingYValue = nearestOpposingActor.getBattleFieldAvatar().getTranslateY();
-		double sceneWidth = nearestOpposingActor.getBattleFieldAvatar().getScene().getWidth();
-		double sceneHeight = nearestOpposingActor.getBattleFieldAvatar().getScene().getHeight();
-		double differenceInXValues = Math.abs( nearestOpposingActor.getBattleFieldAvatar().getTranslateX() - this.getBattleFieldAvatar().getTranslateX() );
-		double differenceInYValues = Math.abs( nearestOpposingActor.getBattleFieldAvatar().getTranslateY() - this.getBattleFieldAvatar().getTranslateY() );
-		double xValue = 0.0;
-		double yValue = 0.0;
-		
-		if (this.getBattleFieldAvatar().intersects( nearestOpposingActor.getBattleFieldAvatar().getBoundsInParent())){
-			this.setHealth( this.getHealth() - nearestOpposingActor.getStrength() / 3 );
-		}
-		
-		if ( differenceInXValues <= 10.0 || differenceInYValues <= 10.0 ) {
-			if ( opposingXValue <= actorXValue && opposingYValue <= actorYValue ) {
-				xValue = sceneWidth * 0.10;
-				yValue = sceneHeight * 0.10;
-			} else if ( opposingXValue >= actorXValue && opposingYValue >= actorYValue ) {
-				xValue = -sceneWidth * 0.10;
-				yValue = -sceneHeight * 0.10;
-			} else if ( opposingXValue <= actorXValue && opposingYValue >= actorYValue ) {
-				xValue = sceneWidth * 0.10;
-				yValue = -sceneHeight * 0.10;
-			} else if ( opposingXValue >= actorXValue && opposingYValue <= actorYValue ) {
-				xValue = -sceneWidth * 0.10;
-				yValue = sceneHeight * 0.10;
-			}
-			return new Point2D( xValue, yValue );
-		} else if ( actorXValue != sceneWidth ) {
-			xValue = actorXValue + ( actorXValue * 0.10 );
-			yValue = actorYValue - ( actorYValue * 0.30 );
-		}
-		return new Point2D( xValue, yValue );
+		return applyCoreRule( nearestOpposingActor ); // ActorRules.hobbit(): runs away from battle
 	}
 
 	@Override
@@ -1,5 +1,7 @@
 package actor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
@@ -7,11 +9,12 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import util.InputGUI;
 import army.Army;
+import core.ActorKind;
 
 /* Orcs go Berserk */
 public class Orc extends Actor {
 
-	private static int orcCount;
+	private static final AtomicInteger orcCount = new AtomicInteger();
 	private boolean isBerserk;
 	private boolean hasMount;
 	private double originalSpeed;
@@ -19,11 +22,11 @@ public class Orc extends Actor {
 	private static Color fillColor = Color.OLIVEDRAB;
 
 	public Orc(Army armyAllegiance) {
-		super( ++orcCount, armyAllegiance );
+		super( orcCount.incrementAndGet(), armyAllegiance );
 		this.originalStrength = getStrength();
 		this.originalSpeed = getSpeed();
-		setBerserk( Math.random() < 0.5 );
-		setMount( Math.random() < 0.5 );
+		setBerserk( getRandom().chance( 0.5 ) );
+		setMount( getRandom().chance( 0.5 ) );
 	}
 
 	@Override
@@ -86,16 +89,14 @@ public class Orc extends Actor {
 		return battlefieldAvatar;
 	}
 
+	@Override
+	protected byte getKind() {
+		return ActorKind.ORC;
+	}
+
 	@Override
 	public Point2D getSubclassSpecificNewLocation( Actor nearestOpposingActor ) {
-		if (this.getBattleFieldAvatar().intersects( nearestOpposingActor.getBattleFieldAvatar().getBoundsInParent())){
-			this.setHealth( this.getHealth() - nearestOpposingActor.getStrength() / 3 );
-		}
-		if (nearestOpposingActor.getStrength() > 50.0){
-			return new Point2D( nearestOpposingActor.getBattleFieldAvatar().getTranslateX(), nearestOpposingActor.getBattleFieldAvatar().getTranslateY() );
-		}else {
-			return new Point2D( this.getBattleFieldAvatar().getTranslateX() + 10, this.getBattleFieldAvatar().getTranslateY() + 10);
-		}
+		return applyCoreRule( nearestOpposingActor ); // ActorRules.orc(): charges strong opponents, wanders away from weak ones
 	}
 
 }
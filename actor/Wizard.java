@@ -1,28 +1,31 @@
 package actor;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Polygon;
 import army.Army;
+import core.ActorKind;
 import util.InputGUI;
 
 public class Wizard extends Actor {
 
-	private static int wizardCount = 0;
+	private static final AtomicInteger wizardCount = new AtomicInteger();
 	public boolean hasStaff;
 	public boolean hasMount;
 	private double originalStrength;
 	private double originalSpeed;
-	private static Color fillColor;
+	private Color fillColor; // rolled once per Wizard; the avatar may be built long after, see Actor.getBattleFieldAvatar()
 
 	public Wizard(Army armyAllegiance) {
-		super( ++wizardCount, armyAllegiance );
+		super( wizardCount.incrementAndGet(), armyAllegiance );
 		this.originalStrength = getStrength();
 		this.originalSpeed = getSpeed();
-		setStaff( Math.random() < 0.5 );
-		setMount( Math.random() < 0.5 );
+		setStaff( getRandom().chance( 0.5 ) );
+		setMount( getRandom().chance( 0.5 ) );
 		setFillColor();
 	}
 
@@ -73,13 +76,13 @@ public class Wizard extends Actor {
 	} // END MOUNT
 	
 	public Color getFillColor(){
-		return Wizard.fillColor;
+		return fillColor;
 	}
 	public void setFillColor(){
-		if(Math.random() < 0.5){
-			Wizard.fillColor = Color.WHITE;
+		if(getRandom().chance( 0.5 )){
+			fillColor = Color.WHITE;
 		}else{
-			Wizard.fillColor = Color.GREY;
+			fillColor = Color.GREY;
 		}
 	}	
 
@@ -99,12 +102,13 @@ public class Wizard extends Actor {
 		return String.format( "%s Staff: %-9b Mount: %-9b", super.toString(), hasStaff(), hasMount() );
 	}
 
+	@Override
+	protected byte getKind() {
+		return ActorKind.WIZARD;
+	}
+
 	@Override
 	public Point2D getSubclassSpecificNewLocation( Actor nearestOpposingActor ) {
-		if (this.getBattleFieldAvatar().intersects( nearestOpposingActor.getBattleFieldAvatar().getBoundsInParent())){
-			this.setHealth( this.getHealth() - nearestOpposingActor.getStrength() / 3 );
-		}
-		// TODO Auto-generated method stub
-		return new Point2D( nearestOpposingActor.getBattleFieldAvatar().getTranslateX(), nearestOpposingActor.getBattleFieldAvatar().getTranslateY() );
+		return applyCoreRule( nearestOpposingActor ); // ActorRules.wizard(): heads for the nearest opponent, around blocked terrain
 	}
 }
@@ -1,9 +1,16 @@
 package army;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import table_list.Actor_Table_List;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.geometry.Point2D;
 import javafx.scene.Node;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TableView;
@@ -11,24 +18,50 @@ import javafx.scene.effect.DropShadowBuilder;
 import javafx.scene.effect.Effect;
 import javafx.scene.paint.Color;
 import actor.Actor;
-import actor.ActorFactory.Type;
+import actor.ActorFactory;
+import core.ActorKind;
+import core.ArmyState;
+import core.Battle;
+import core.Roster;
+import core.SpawnGroup;
 
-/* To hold a collection of Actor objects */
+/* To hold a collection of Actor objects. The Actor objects are views over this Army's core.ArmyState, which holds the actual attributes and locations.
+ * Only the living are in army (and so in the TableView, the ListView and the render loop): the dead are moved to the graveyard once per pulse. */
 
 public class Army {
 
-	private Army opposingArmy;
+	private List<Army> armiesInBattle = Collections.emptyList(); // every Army of the battle this one is in, by battle index, this one included
 
 	private String armyName;
 
-	public ListView<Actor> listView;
+	public ListView<Actor> listView; // both views are built on first request, see getListViewOfActors() and getTableViewOfActors()
 	public TableView<Actor> tableView;
 	public ObservableList<Actor> army;
+	private ObservableList<Actor> graveyard; // actors evicted from the live set, in order of death
+	private final BitSet buried = new BitSet(); // slots whose Actor is in graveyard rather than army
+	private final ArrayList<Actor> lifeChanges = new ArrayList<Actor>(); // Actors that died or were revived since the last publishProperties()
+	private ArmyState state; // headless storage behind every Actor in the army; its spatial index is queried by hostile Armies
+	private ArrayList<Actor> actorsBySlot; // maps an ArmyState slot back to the Actor viewing it
+	private final AtomicBoolean publishScheduled = new AtomicBoolean(); // a publishProperties() is already queued on the Application Thread
+	private final ThreadLocal<Build> currentBuild = new ThreadLocal<Build>(); // the build() running on this thread, if any
+
+	// What the Actors made by one build() call are made from: the next of the reserved slots, and their spawn group.
+	private static final class Build {
+		int nextSlot;
+		final SpawnGroup group;
+
+		Build( int firstSlot, SpawnGroup group ) {
+			nextSlot = firstSlot;
+			this.group = group;
+		}
+	}
 
 	private Effect effectsToApplyToActorObjectsInArmy;
+	private Color color;
 
 	public Army( String armyName, Color color ) {
 		setArmyName( armyName );
+		this.color = color;
 		effectsToApplyToActorObjectsInArmy = DropShadowBuilder.create().spread( 0.6 ).radius( 10.0 ).color( color ).build();
 		init();
 	}
@@ -36,18 +69,102 @@ public class Army {
 	private void init() { // INITIALIZER BLOCK: Start: Executed for every
 		// possible constructor / deserialization
 		army = FXCollections.observableArrayList(); // not serializable
-		tableView = Actor_Table_List.createTable();
-		tableView.setItems( army );
-		listView = Actor_Table_List.createList();
-		listView.setItems( army );
+		graveyard = FXCollections.observableArrayList();
+		state = new ArmyState( getArmyName() );
+		state.setLifeListener( new ArmyState.LifeListener() {
+			@Override
+			public void actorDied( ArmyState army, int slot ) {
+				lifeChanges.add( actorsBySlot.get( slot ) );
+			}
+
+			@Override
+			public void actorRevived( ArmyState army, int slot ) {
+				lifeChanges.add( actorsBySlot.get( slot ) );
+			}
+		} );
+		actorsBySlot = new ArrayList<Actor>();
 	} // INITIALIZER BLOCK: End
 
-	public void populate( Type type, int actorCount, ObservableList<Node> observableList ) {
-		for ( int i = 0; i < actorCount; ++i ) {
-			Actor newActor = type.create( this );
-			army.add( newActor );
-			observableList.add( newActor.getBattleFieldAvatar() );
+	/** Called by the Actor constructor: the slot that will hold the new Actor's attributes. Normally a new slot at the end of the state; inside
+	 * build(), the next of the slots reserved for it. */
+	public int claimSlot( byte kind ) {
+		Build build = currentBuild.get();
+		if ( build == null )
+			return state.add( kind );
+		int slot = build.nextSlot++;
+		state.initReservedSlot( slot, kind );
+		return slot;
+	}
+
+	/** Called by the Actor constructor: the type ranges and spawn region the new Actor is rolled from. Inside build(), the group being built;
+	 * otherwise the built-in types around the army's spawn centre. */
+	public SpawnGroup getSpawnGroup() {
+		Build build = currentBuild.get();
+		return build != null ? build.group : SpawnGroup.around( state );
+	}
+
+	/** Bulk populate: creates Actors for actors from .. to - 1 of a spawn group into the slots reserved with getState().reserve(), starting at
+	 * firstSlot. Touches nothing visible, so it may run on any thread, several at once for disjoint slot ranges; the Actors join the army when
+	 * published.
+	 * 
+	 * @param kinds the kind of each actor of the group, or null if they all have the kind of the group's template: random groups are settled with
+	 *            ActorFactory.selectRandomKind() beforehand */
+	public List<Actor> build( SpawnGroup group, byte[] kinds, int from, int to, int firstSlot ) {
+		ArrayList<Actor> built = new ArrayList<Actor>( to - from );
+		currentBuild.set( new Build( firstSlot, group ) );
+		try {
+			for ( int i = from; i < to; ++i ) {
+				built.add( ActorFactory.create( kinds != null ? kinds[ i ] : group.getTemplate().getKind(), this ) );
+			}
+		} finally {
+			currentBuild.remove();
 		}
+		return built;
+	}
+
+	/** Bulk populate, on the JavaFX Application Thread: makes Actors returned by build() part of the army, with one addAll() per list so that the
+	 * TableView, ListView and scene graph each see a single change. Batches must be published in slot order.
+	 * 
+	 * @param observableList scene graph list to add the avatars to, or null when the battle is drawn on a Canvas */
+	public void publish( List<Actor> actors, ObservableList<Node> observableList ) {
+		state.publish( actors.size() );
+		actorsBySlot.addAll( actors );
+		army.addAll( actors );
+		if ( observableList != null ) {
+			ArrayList<Node> avatars = new ArrayList<Node>( actors.size() );
+			for ( Actor actor : actors ) {
+				avatars.add( actor.getBattleFieldAvatar() );
+			}
+			observableList.addAll( avatars );
+		}
+		requestPublish(); // their properties were set before they were visible to publishProperties()
+	}
+
+	/** Adds every avatar to the scene graph in one call, e.g. when switching back from Canvas rendering. */
+	public void addAvatarsTo( ObservableList<Node> observableList ) {
+		ArrayList<Node> avatars = new ArrayList<Node>( actorsBySlot.size() );
+		for ( Actor actor : actorsBySlot ) {
+			avatars.add( actor.getBattleFieldAvatar() );
+		}
+		observableList.addAll( avatars );
+	}
+
+	/** Removes every Actor, and its avatar from the scene graph list if one is given, and empties the state. */
+	public void clear( ObservableList<Node> observableList ) {
+		if ( observableList != null ) {
+			HashSet<Node> avatars = new HashSet<Node>( actorsBySlot.size() * 2 ); // a set keeps removeAll() linear
+			for ( Actor actor : actorsBySlot ) {
+				if ( actor.hasBattleFieldAvatar() )
+					avatars.add( actor.getBattleFieldAvatar() );
+			}
+			observableList.removeAll( avatars );
+		}
+		army.clear();
+		graveyard.clear();
+		buried.clear();
+		lifeChanges.clear();
+		actorsBySlot.clear();
+		state.clear();
 	}
 
 	public void editArmy( int index ) {
@@ -56,12 +173,23 @@ public class Army {
 		}
 	}
 
+	/** Prints the living Actors to the console, numbered by position, in one write. For large armies use captureRoster() and core.RosterWriter. */
 	public void display() {
-		System.out.println( getArmyName() );
+		StringBuilder text = new StringBuilder( getArmyName() ).append( '\n' );
+		int index = 0;
 		for ( Actor actor : army ) {
-			System.out.printf( "%d. %s\n", army.indexOf( actor ) + 1, actor );
+			text.append( ++index ).append( ". " ).append( actor ).append( '\n' );
+		}
+		System.out.println( text );
+	}
+
+	/** Copies every actor, living and dead, with its name, for writing out on another thread. Call on the JavaFX Application Thread. */
+	public Roster captureRoster() {
+		String[] names = new String[ state.size() ];
+		for ( int slot = 0; slot < names.length; ++slot ) {
+			names[ slot ] = slot < actorsBySlot.size() ? actorsBySlot.get( slot ).getName() : ActorKind.name( state.getKind( slot ) ) + " " + slot;
 		}
-		System.out.println();
+		return Roster.capture( state, names );
 	}
 
 	public String getArmyName() {
@@ -76,11 +204,43 @@ public class Army {
 		return army.size();
 	}
 
+	public ArmyState getState() {
+		return state;
+	}
+
+	/** @return the dead, in order of death, as of the last publishProperties() */
+	public ObservableList<Actor> getGraveyard() {
+		return graveyard;
+	}
+
+	/** @return the Actor viewing the given ArmyState slot */
+	public Actor getActor( int slot ) {
+		return actorsBySlot.get( slot );
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	/** Centre of the normal distribution used to place newly created Actor objects. */
+	public void setSpawnCentre( double x, double y ) {
+		state.setSpawnCentre( x, y );
+	}
+
 	public ListView<Actor> getListViewOfActors() {
+		if ( listView == null ) {
+			listView = Actor_Table_List.createList();
+			listView.setItems( army );
+		}
 		return listView;
 	}
 
+	/** Built on the first call; its cells create the properties of the Actors they show, see Actor.nameProperty(). */
 	public TableView<Actor> getTableViewOfActors() {
+		if ( tableView == null ) {
+			tableView = Actor_Table_List.createTable();
+			tableView.setItems( army );
+		}
 		return tableView;
 	}
 
@@ -88,49 +248,88 @@ public class Army {
 		return effectsToApplyToActorObjectsInArmy;
 	}
 
-	public void run() {
+	/** Brings every avatar up to date with the simulation state (the battle itself is advanced by core.Battle, not by the Army).
+	 * 
+	 * @param alpha fraction of a timestep since the latest tick */
+	public void render( double alpha ) {
 		for ( Actor actor : army ) {
-			actor.move();
-			if (actor.getHealth() == 0.0){
-				actor.getBattleFieldAvatar().setVisible( false );				
+			actor.updateAvatar( alpha );
+		}
+	}
+	
+	/** Brings the UI-facing properties and avatar of every Actor whose attributes changed since the last call up to date with the state, in one
+	 * pass over the live set, passing on which attributes changed; then moves the Actors that died or came back since the last call between army
+	 * and the graveyard, with one change per list. Called once per pulse by the battle loop, and through requestPublish() for changes made while it
+	 * is not running. */
+	public void publishProperties() {
+		publishScheduled.set( false );
+		int published = actorsBySlot.size(); // slots reserved by a bulk populate have no Actor here yet
+		for ( int i = 0, n = state.liveCount(); i < n; ++i ) {
+			int slot = state.liveSlot( i );
+			if ( slot < published )
+				publishProperties( slot );
+		}
+		if ( lifeChanges.isEmpty() )
+			return;
+		ArrayList<Actor> died = new ArrayList<Actor>();
+		ArrayList<Actor> revived = new ArrayList<Actor>();
+		for ( Actor actor : lifeChanges ) {
+			int slot = actor.getSlot();
+			publishProperties( slot ); // the final health, and the avatar hidden or shown
+			boolean isLive = state.isLive( slot );
+			if ( isLive == buried.get( slot ) ) { // changed sides since the last pulse, rather than died and came back within it
+				buried.set( slot, !isLive );
+				( isLive ? revived : died ).add( actor );
 			}
 		}
+		lifeChanges.clear();
+		moveBetween( army, graveyard, died );
+		moveBetween( graveyard, army, revived );
 	}
 
-	public void suspend() {
-		for ( Actor actor : army ) {
-			actor.suspend();
-		}
+	private void publishProperties( int slot ) {
+		int changed = state.takeChangedAttributes( slot );
+		if ( changed != 0 )
+			actorsBySlot.get( slot ).publishProperties( changed );
 	}
-	
-	public void setDuration( double duration ){
-		for (Actor actor : army){
-			actor.setDuration( actor.getDuration() * duration );
-		}		
-	}
-
-	public Actor findNearestActorInOpposingArmy( Actor actor ) {
-		// receiving an actor in to the army, use distance to
-		double distanceToClosestSoFar = Double.MAX_VALUE;
-		Actor closestActor = null;
-
-		Point2D myLocation = new Point2D( actor.getBattleFieldAvatar().getTranslateX(), actor.getBattleFieldAvatar().getTranslateY() );
-
-		for ( Actor opposingActor : opposingArmy.army ) { // cycles through opposing army, finds x,y coordinates, and then compares to
-			// initial actor's x,y
-			Point2D opposingLocation = new Point2D( opposingActor.getBattleFieldAvatar().getTranslateX(), opposingActor.getBattleFieldAvatar().getTranslateY() );
-			double distanceToNewestCandidateOpponent = myLocation.distance( opposingLocation );
-			if ( distanceToNewestCandidateOpponent < distanceToClosestSoFar ) {
-				distanceToClosestSoFar = distanceToNewestCandidateOpponent;
-				closestActor = opposingActor;
-			}
+
+	// Keeps the order of from and appends to to in the order given; a set keeps removeAll() linear.
+	private static void moveBetween( ObservableList<Actor> from, ObservableList<Actor> to, List<Actor> actors ) {
+		if ( actors.isEmpty() )
+			return;
+		from.removeAll( new HashSet<Actor>( actors ) );
+		to.addAll( actors );
+	}
+
+	/** Queues one publishProperties() on the Application Thread, however many times it is called (from any thread) before that runs. */
+	public void requestPublish() {
+		if ( publishScheduled.compareAndSet( false, true ) ) {
+			Platform.runLater( new Runnable() {
+				@Override
+				public void run() {
+					publishProperties();
+				}
+			} );
 		}
-		return closestActor;
 	}
-	
-    
-	public void setOpposingArmy( Army opposingArmy ) {
-		this.opposingArmy = opposingArmy;
+
+	/** @return the nearest Actor to the given one in any Army hostile to this one, found as the battle's SearchMode says, or null if there is none */
+	public Actor findNearestHostileActor( Actor actor ) {
+		Battle battle = state.getBattle();
+		if ( battle == null )
+			return null;
+		long target = battle.findNearestOpponent( state, actor.getX(), actor.getY() );
+		return target < 0L ? null : armiesInBattle.get( Battle.opponentArmy( target ) ).actorsBySlot.get( Battle.opponentSlot( target ) );
+	}
+
+	/** Adds the army to the battle, hostile to every army already in it (see Battle.setHostile()), and to armies: the list of every Army of the
+	 * battle, by battle index, shared by all of them, where the Actors their targets are found in are looked up. */
+	public void joinBattle( Battle battle, List<Army> armies ) {
+		if ( armies.size() != battle.getArmyCount() )
+			throw new IllegalArgumentException( "Expected the " + battle.getArmyCount() + " Armies already in the battle, got " + armies.size() );
+		battle.addArmy( state );
+		armies.add( this );
+		armiesInBattle = armies;
 	}
 
 }
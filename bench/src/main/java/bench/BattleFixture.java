@@ -0,0 +1,80 @@
+package bench;
+
+import java.util.Random;
+
+import core.ActorKind;
+import core.ActorRules;
+import core.ArmyState;
+import core.Battle;
+
+/** Builds reproducible headless battles for the benchmarks: two armies of the requested size, spread around the usual spawn centres, or more
+ * spaced out round the middle of the battlefield, at either Density, with attributes drawn from seeded generators so that every run measures the
+ * same battle. */
+final class BattleFixture {
+	private BattleFixture() { }
+
+	/** How closely each army is packed round its spawn centre. SCALED widens the spread with army size, keeping the density of a small battle at
+	 * any size; SPAWN_RANGE spawns through ActorRules.spawn() within the fixed SpawnGroup.DEFAULT_RANGE, as real battles do, so a large army is
+	 * packed as densely as it is on the battlefield. */
+	enum Density {
+		SCALED, SPAWN_RANGE
+	}
+
+	static final double WIDTH = 1000.0;
+	static final double HEIGHT = 594.0;
+	static final long SEED = 20131118L;
+
+	static Battle build( int actorsPerArmy ) {
+		return build( actorsPerArmy, 2, Density.SCALED );
+	}
+
+	static Battle build( int actorsPerArmy, Density density ) {
+		return build( actorsPerArmy, 2, density );
+	}
+
+	// Every army hostile to every other.
+	static Battle build( int actorsPerArmy, int armyCount, Density density ) {
+		Random random = new Random( SEED );
+		Battle battle = new Battle( WIDTH, HEIGHT );
+		battle.setSeed( SEED ); // ActorRules.spawn() rolls from the battle's streams
+		for ( int i = 0; i < armyCount; ++i ) {
+			ArmyState army;
+			if ( armyCount == 2 ) {
+				army = new ArmyState( i == 0 ? "Forces of Light" : "Forces of Darkness" );
+				army.setSpawnCentre( i == 0 ? 452.0 : 690.0, i == 0 ? 150.0 : 400.0 );
+			} else {
+				double angle = 2.0 * Math.PI * i / armyCount;
+				army = new ArmyState( "Army " + ( i + 1 ) );
+				army.setSpawnCentre( WIDTH / 2.0 + 300.0 * Math.cos( angle ), HEIGHT / 2.0 + 180.0 * Math.sin( angle ) );
+			}
+			battle.addArmy( army );
+		}
+		for ( int i = 0; i < armyCount; ++i ) {
+			if ( density == Density.SPAWN_RANGE )
+				spawn( battle.getArmy( i ), actorsPerArmy, random );
+			else
+				fill( battle.getArmy( i ), actorsPerArmy, random );
+		}
+		return battle;
+	}
+
+	// Within SpawnGroup.DEFAULT_RANGE of the spawn centre, however many there are.
+	private static void spawn( ArmyState army, int count, Random random ) {
+		army.ensureCapacity( count );
+		for ( int i = 0; i < count; ++i )
+			ActorRules.spawn( army, (byte) random.nextInt( ActorKind.COUNT ) );
+	}
+
+	// Spread grows with army size so that density stays in the range the real battles see.
+	private static void fill( ArmyState army, int count, Random random ) {
+		double spread = 25.0 * Math.max( 1.0, Math.sqrt( count / 100.0 ) );
+		army.ensureCapacity( count );
+		for ( int i = 0; i < count; ++i ) {
+			int slot = army.add( (byte) random.nextInt( ActorKind.COUNT ) );
+			army.setHealth( slot, ArmyState.HEALTH_MIN + random.nextDouble() * ( ArmyState.HEALTH_MAX - ArmyState.HEALTH_MIN ) );
+			army.setStrength( slot, ArmyState.STRENGTH_MIN + random.nextDouble() * ( ArmyState.STRENGTH_MAX - ArmyState.STRENGTH_MIN ) );
+			army.setSpeed( slot, ArmyState.SPEED_MIN + random.nextDouble() * ( ArmyState.SPEED_MAX - ArmyState.SPEED_MIN ) );
+			army.setLocation( slot, army.getSpawnCentreX() + random.nextGaussian() * spread, army.getSpawnCentreY() + random.nextGaussian() * spread );
+		}
+	}
+}
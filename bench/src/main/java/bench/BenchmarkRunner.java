@@ -0,0 +1,23 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Entry point of benchmarks.jar. Accepts the usual JMH command line (benchmark regexp, -p, -f, -rff, ...) and always attaches the GC profiler,
+ * so every result carries gc.alloc.rate.norm (bytes allocated per operation) next to its timing. */
+public final class BenchmarkRunner {
+	private BenchmarkRunner() { }
+
+	public static void main( String[] args ) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent( new CommandLineOptions( args ) )
+				.addProfiler( GCProfiler.class )
+				.build();
+		new Runner( options ).run();
+	}
+}
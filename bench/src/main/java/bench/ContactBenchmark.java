@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Battle;
+import core.ContactDetector;
+
+/** Battle.tick() collision phase: boxes for every living actor, sweep-and-prune, and the per-army contact lists. Detection does not change the
+ * battle, so one battle serves the whole run. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ContactBenchmark {
+
+	@Param( { "100", "1000", "10000", "100000" } )
+	int actorsPerArmy;
+
+	@Param( { "SCALED", "SPAWN_RANGE" } )
+	String density;
+
+	private Battle battle;
+	private final ContactDetector contacts = new ContactDetector();
+
+	@Setup
+	public void setUp() {
+		battle = BattleFixture.build( actorsPerArmy, BattleFixture.Density.valueOf( density ) );
+	}
+
+	@Benchmark
+	public int detect() {
+		contacts.detect( battle );
+		return contacts.getPairCount();
+	}
+}
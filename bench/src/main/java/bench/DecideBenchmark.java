@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.ArmyState;
+import core.Battle;
+
+/** Actor.findNewLocationToMoveTo(): nearest-opponent lookup, kind-specific rule and battlefield snapping for one actor. The battle is rebuilt for
+ * every iteration so that each one starts from the same opening positions. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class DecideBenchmark {
+
+	@Param( { "100", "1000", "10000", "100000" } )
+	int actorsPerArmy;
+
+	@Param( { "SCALED", "SPAWN_RANGE" } )
+	String density;
+
+	private Battle battle;
+	private ArmyState army;
+	private final double[] location = new double[ 2 ];
+	private int cursor;
+
+	@Setup( Level.Iteration )
+	public void setUp() {
+		battle = BattleFixture.build( actorsPerArmy, BattleFixture.Density.valueOf( density ) );
+		army = battle.getArmies().get( 0 );
+		cursor = 0;
+	}
+
+	@Benchmark
+	public double[] decideNewLocation() {
+		int slot = cursor;
+		cursor = ( cursor + 1 ) % actorsPerArmy;
+		battle.decideNewLocation( army, slot, location );
+		return location;
+	}
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Battle;
+import core.FlowField;
+import core.TerrainMask;
+
+/** Pathfinding over the Middle-earth terrain: building one army's flow field (which should barely change with army size) and a full sequential tick
+ * with terrain on, to compare with TickBenchmark. Run from the bench directory, so that the map is found at ../img. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class FlowFieldBenchmark {
+
+	static final String MAP = "../img/MiddleEarth-3.jpg";
+
+	@Param( { "100", "1000", "10000", "100000" } )
+	int actorsPerArmy;
+
+	private TerrainMask terrain;
+	private Battle battle;
+	private final FlowField field = new FlowField();
+
+	@Setup( Level.Trial )
+	public void loadTerrain() throws IOException {
+		terrain = TerrainMask.load( new File( MAP ) );
+	}
+
+	@Setup( Level.Iteration )
+	public void setUp() {
+		battle = BattleFixture.build( actorsPerArmy );
+		battle.setTerrain( terrain );
+	}
+
+	@Benchmark
+	public FlowField build() {
+		field.build( battle, battle.getArmy( 1 ) );
+		return field;
+	}
+
+	@Benchmark
+	public long tickOnTerrain() {
+		battle.tick( Battle.FIXED_TIMESTEP );
+		return battle.getTickCount();
+	}
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.ArmyState;
+import core.Battle;
+
+/** Battle.findNearestOpponent(): one nearest-opponent query, through the hostile armies' spatial grids and through the linear-scan reference, with
+ * every army hostile to every other. After the first hit each further grid is searched only as far as the best target so far; the scan walks
+ * each hostile army in full. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class NearestOpponentBenchmark {
+
+	@Param( { "100", "1000", "10000", "100000" } )
+	int actorsPerArmy;
+
+	@Param( { "2", "8" } )
+	int armies;
+
+	@Param( { "SPATIAL_GRID", "LINEAR_SCAN" } )
+	String searchMode;
+
+	@Param( { "SCALED", "SPAWN_RANGE" } )
+	String density;
+
+	private Battle battle;
+	private ArmyState army;
+	private int cursor;
+
+	@Setup
+	public void setUp() {
+		battle = BattleFixture.build( actorsPerArmy, armies, BattleFixture.Density.valueOf( density ) );
+		army = battle.getArmies().get( 0 );
+		battle.setSearchMode( Battle.SearchMode.valueOf( searchMode ) );
+	}
+
+	@Benchmark
+	public long findNearest() {
+		int slot = cursor;
+		cursor = ( cursor + 1 ) % actorsPerArmy;
+		return battle.findNearestOpponent( army, slot );
+	}
+}
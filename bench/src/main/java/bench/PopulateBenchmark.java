@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.ActorKind;
+import core.ActorRules;
+import core.ArmyState;
+
+/** Army.populate(): spawning a whole army (attribute rolls, placement, spatial index insertion) into fresh headless state. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class PopulateBenchmark {
+
+	@Param( { "100", "1000", "10000", "100000" } )
+	int actorsPerArmy;
+
+	@Benchmark
+	public ArmyState populate() {
+		ArmyState army = new ArmyState( "Forces of Darkness" );
+		army.setSpawnCentre( 690.0, 400.0 );
+		for ( int i = 0; i < actorsPerArmy; ++i )
+			ActorRules.spawn( army, (byte) ( i % ActorKind.COUNT ) );
+		return army;
+	}
+}
@@ -0,0 +1,43 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.RandomSource;
+
+/** RandomSource.getNormalDistribution(): one truncated-normal draw, single-threaded and with four threads each drawing from its own stream. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class RandomBenchmark {
+
+	@Param( { "1.2", "2.0" } )
+	double standardDeviationSpread;
+
+	private final RandomSource random = RandomSource.stream( BattleFixture.SEED, Thread.currentThread().getId() );
+
+	@Benchmark
+	public double normalDistribution() {
+		return random.getNormalDistribution( 1.0, 200.0, standardDeviationSpread );
+	}
+
+	@Benchmark
+	@Threads( 4 )
+	public double normalDistributionFourThreads() {
+		return random.getNormalDistribution( 1.0, 200.0, standardDeviationSpread );
+	}
+}
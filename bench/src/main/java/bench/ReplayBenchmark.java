@@ -0,0 +1,78 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Battle;
+import core.ReplayRecorder;
+
+/** Cost of leaving replay recording on: one sequential tick with a ReplayRecorder attached, to compare with TickBenchmark. The recording goes to a
+ * temporary file that is deleted after each iteration. Frames written and dropped are reported as secondary results; a non-zero framesDropped
+ * means the disk could not keep up. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ReplayBenchmark {
+
+	@Param( { "100", "1000", "10000", "100000" } )
+	int actorsPerArmy;
+
+	private Battle battle;
+	private ReplayRecorder recorder;
+	private File file;
+
+	/** The recorder's frame counts for the iteration, reported by JMH alongside the timing. */
+	@State( Scope.Thread )
+	@AuxCounters( AuxCounters.Type.EVENTS )
+	public static class Frames {
+		public long framesWritten;
+		public long framesDropped;
+
+		@Setup( Level.Iteration )
+		public void reset() {
+			framesWritten = 0;
+			framesDropped = 0;
+		}
+	}
+
+	@Setup( Level.Iteration )
+	public void setUp() throws IOException {
+		battle = BattleFixture.build( actorsPerArmy );
+		file = File.createTempFile( "bench", ".replay" );
+		recorder = new ReplayRecorder( file, battle );
+		battle.setRecorder( recorder );
+	}
+
+	@TearDown( Level.Iteration )
+	public void tearDown() throws IOException {
+		recorder.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public long recordedTick( Frames frames ) {
+		battle.tick( Battle.FIXED_TIMESTEP );
+		frames.framesWritten = recorder.getFramesWritten(); // the recorder is new each iteration, so its totals are the iteration's
+		frames.framesDropped = recorder.getFramesDropped();
+		return battle.getTickCount();
+	}
+}
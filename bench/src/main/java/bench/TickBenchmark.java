@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Battle;
+
+/** Simulator.run(): one fixed-timestep tick of the whole battle, sequential and fork-join. The battle is rebuilt for every iteration so that each
+ * one starts from the same opening positions. */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class TickBenchmark {
+
+	@Param( { "100", "1000", "10000", "100000" } )
+	int actorsPerArmy;
+
+	@Param( { "SCALED", "SPAWN_RANGE" } )
+	String density;
+
+	@Param( { "SEQUENTIAL", "PARALLEL" } )
+	String tickMode;
+
+	private Battle battle;
+
+	@Setup( Level.Iteration )
+	public void setUp() {
+		battle = BattleFixture.build( actorsPerArmy, BattleFixture.Density.valueOf( density ) );
+		battle.setTickMode( Battle.TickMode.valueOf( tickMode ) );
+	}
+
+	@Benchmark
+	public long tick() {
+		battle.tick( Battle.FIXED_TIMESTEP );
+		return battle.getTickCount();
+	}
+}
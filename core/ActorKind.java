@@ -0,0 +1,55 @@
+package core;
+
+/** Kind codes stored in the <i>ArmyState</i> kind column, together with the avatar geometry needed to reason about contact without a scene graph.
+ * The JavaFX view of each kind is the Actor subclass registered for its code in <i>actor.ActorFactory</i>. */
+public final class ActorKind {
+	private ActorKind() { } // constants only
+
+	public static final byte HOBBIT = 0;
+	public static final byte WIZARD = 1;
+	public static final byte ORC = 2;
+	public static final byte ELF = 3;
+
+	public static final int COUNT = 4;
+
+	/** Avatars are scaled by strength / STRENGTH_SCALE_DIVISOR about their own centre. */
+	public static final double STRENGTH_SCALE_DIVISOR = 60.0;
+
+	// Unscaled local bounds of each avatar shape, indexed by kind: centre offset from the translate point and half extents.
+	//                                                  HOBBIT  WIZARD  ORC   ELF
+	private static final double[] CENTRE_OFFSET_X = {   6.0,   15.5,  0.0,  6.0 }; // Rectangle 12x8 at origin / Polygon 0..31 / Circle r=8 at origin
+	private static final double[] CENTRE_OFFSET_Y = {   4.0,  -14.0,  0.0,  4.0 }; // Polygon spans y -30..2
+	private static final double[] HALF_WIDTH      = {   6.0,   15.5,  8.0,  6.0 };
+	private static final double[] HALF_HEIGHT     = {   4.0,   16.0,  8.0,  4.0 };
+
+	public static double centreOffsetX( byte kind ) {
+		return CENTRE_OFFSET_X[ kind ];
+	}
+
+	public static double centreOffsetY( byte kind ) {
+		return CENTRE_OFFSET_Y[ kind ];
+	}
+
+	public static double halfWidth( byte kind ) {
+		return HALF_WIDTH[ kind ];
+	}
+
+	public static double halfHeight( byte kind ) {
+		return HALF_HEIGHT[ kind ];
+	}
+
+	public static String name( byte kind ) {
+		switch ( kind ) {
+		case HOBBIT:
+			return "Hobbit";
+		case WIZARD:
+			return "Wizard";
+		case ORC:
+			return "Orc";
+		case ELF:
+			return "Elf";
+		default:
+			throw new IllegalArgumentException( "Unknown actor kind: " + kind );
+		}
+	}
+} // end class ActorKind
@@ -0,0 +1,185 @@
+package core;
+
+import util.RandomSource;
+
+/** Kind-specific behaviour of each actor, expressed as static functions over <i>ArmyState</i> slots so that the same rules drive the JavaFX
+ * <i>actor</i> subclasses and a headless <i>Battle</i>. */
+public final class ActorRules {
+	private ActorRules() { } // static rules only
+
+	public static final double CONTACT_DAMAGE_DIVISOR = 3.0; // damage taken on contact is the opponent's strength divided by this
+
+	private static final double SPAWN_SPREAD = 1.2;
+
+	// Equipment modifiers, rolled with 50% probability each (same as the actor subclasses).
+	private static final double HOBBIT_STRENGTH_DIVISOR = 1.4;
+	private static final double BOW_STRENGTH_MOD = 1.04;
+	private static final double BERSERK_STRENGTH_MOD = 1.22;
+	private static final double STAFF_STRENGTH_MOD = 1.17;
+	private static final double MOUNT_SPEED_MOD = 1.10;
+
+	/*******************************************************/
+	//------------------------SPAWN------------------------//
+
+	/** Adds an actor of the given kind to the army with randomly rolled attributes, placed around the army's spawn centre. The rolls come from the
+	 * slot's own stream, so the result does not depend on which thread spawns it.
+	 *
+	 * @return the new slot */
+	public static int spawn( ArmyState army, byte kind ) {
+		return spawn( army, ActorTemplate.forKind( kind ), army.getSpawnCentreX(), army.getSpawnCentreY(), SpawnGroup.DEFAULT_RANGE );
+	}
+
+	/** Adds an actor of the template's type to the army, its attributes rolled from the template's ranges and placed around the given centre.
+	 *
+	 * @return the new slot */
+	public static int spawn( ArmyState army, ActorTemplate template, double centreX, double centreY, double range ) {
+		byte kind = template.getKind();
+		int slot = army.add( kind );
+		RandomSource random = army.randomStream( slot );
+		army.setHealth( slot, random.getNormalDistribution( template.getHealthMin(), template.getHealthMax(), 2.0 ) );
+		army.setStrength( slot, random.getNormalDistribution( template.getStrengthMin(), template.getStrengthMax(), 2.0 ) );
+		army.setSpeed( slot, random.getNormalDistribution( template.getSpeedMin(), template.getSpeedMax(), 2.0 ) );
+		army.setLocation( slot, random.getNormalDistribution( centreX - range, centreX + range, SPAWN_SPREAD ),
+				random.getNormalDistribution( centreY - range, centreY + range, SPAWN_SPREAD ) );
+
+		switch ( kind ) {
+		case ActorKind.HOBBIT:
+			army.setStrength( slot, army.getStrength( slot ) / HOBBIT_STRENGTH_DIVISOR );
+			break;
+		case ActorKind.ELF:
+			if ( random.chance( 0.5 ) )
+				army.setStrength( slot, army.getStrength( slot ) * BOW_STRENGTH_MOD );
+			break;
+		case ActorKind.ORC:
+			if ( random.chance( 0.5 ) )
+				army.setStrength( slot, army.getStrength( slot ) * BERSERK_STRENGTH_MOD );
+			break;
+		case ActorKind.WIZARD:
+			if ( random.chance( 0.5 ) )
+				army.setStrength( slot, army.getStrength( slot ) * STAFF_STRENGTH_MOD );
+			break;
+		}
+		if ( random.chance( 0.5 ) )
+			army.setSpeed( slot, army.getSpeed( slot ) * MOUNT_SPEED_MOD );
+		return slot;
+	}
+
+	/*******************************************************/
+	//-----------------------MOVEMENT----------------------//
+
+	/** Dispatches to the rule for the kind of actor in the slot. Writes the proposed (unsnapped) location into location[0], location[1]. */
+	public static void newLocation( Battle battle, ArmyState self, int slot, ArmyState opponents, int target, double[] location ) {
+		switch ( self.kind[ slot ] ) {
+		case ActorKind.HOBBIT:
+			hobbit( battle, self, slot, opponents, target, location );
+			break;
+		case ActorKind.ORC:
+			orc( battle, self, slot, opponents, target, location );
+			break;
+		case ActorKind.ELF:
+			elf( battle, self, slot, opponents, target, location );
+			break;
+		case ActorKind.WIZARD:
+			wizard( battle, self, slot, opponents, target, location );
+			break;
+		default:
+			throw new IllegalArgumentException( "Unknown actor kind: " + self.kind[ slot ] );
+		}
+	}
+
+	/** Hobbits run away from battle: when close to the opponent on either axis they flee towards a corner, otherwise they drift. */
+	public static void hobbit( Battle battle, ArmyState self, int slot, ArmyState opponents, int target, double[] location ) {
+		double actorXValue = self.ownX( slot );
+		double actorYValue = self.ownY( slot );
+		double opposingXValue = opponents.x[ target ];
+		double opposingYValue = opponents.y[ target ];
+		double sceneWidth = battle.getWidth();
+		double sceneHeight = battle.getHeight();
+		double differenceInXValues = Math.abs( opposingXValue - actorXValue );
+		double differenceInYValues = Math.abs( opposingYValue - actorYValue );
+		double xValue = 0.0;
+		double yValue = 0.0;
+
+		if ( differenceInXValues <= 10.0 || differenceInYValues <= 10.0 ) {
+			if ( opposingXValue <= actorXValue && opposingYValue <= actorYValue ) {
+				xValue = sceneWidth * 0.10;
+				yValue = sceneHeight * 0.10;
+			} else if ( opposingXValue >= actorXValue && opposingYValue >= actorYValue ) {
+				xValue = -sceneWidth * 0.10;
+				yValue = -sceneHeight * 0.10;
+			} else if ( opposingXValue <= actorXValue && opposingYValue >= actorYValue ) {
+				xValue = sceneWidth * 0.10;
+				yValue = -sceneHeight * 0.10;
+			} else if ( opposingXValue >= actorXValue && opposingYValue <= actorYValue ) {
+				xValue = -sceneWidth * 0.10;
+				yValue = sceneHeight * 0.10;
+			}
+		} else if ( actorXValue != sceneWidth ) {
+			xValue = actorXValue + ( actorXValue * 0.10 );
+			yValue = actorYValue - ( actorYValue * 0.30 );
+		}
+		location[ 0 ] = xValue;
+		location[ 1 ] = yValue;
+	}
+
+	/** Orcs charge strong opponents and wander away from weak ones. */
+	public static void orc( Battle battle, ArmyState self, int slot, ArmyState opponents, int target, double[] location ) {
+		if ( opponents.strength[ target ] > 50.0 )
+			approach( battle, self, slot, opponents, target, location );
+		else {
+			location[ 0 ] = self.ownX( slot ) + 10;
+			location[ 1 ] = self.ownY( slot ) + 10;
+		}
+	}
+
+	/** Elves head for the nearest opponent. */
+	public static void elf( Battle battle, ArmyState self, int slot, ArmyState opponents, int target, double[] location ) {
+		approach( battle, self, slot, opponents, target, location );
+	}
+
+	/** Wizards head for the nearest opponent. */
+	public static void wizard( Battle battle, ArmyState self, int slot, ArmyState opponents, int target, double[] location ) {
+		approach( battle, self, slot, opponents, target, location );
+	}
+
+	// Straight at the opponent, unless the army's flow field shows terrain in the way, in which case to the next waypoint around it.
+	private static void approach( Battle battle, ArmyState self, int slot, ArmyState opponents, int target, double[] location ) {
+		location[ 0 ] = opponents.x[ target ];
+		location[ 1 ] = opponents.y[ target ];
+		FlowField field = battle == null ? null : battle.getFlowField( self );
+		if ( field != null )
+			field.steer( self.ownX( slot ), self.ownY( slot ), location );
+	}
+
+	/*******************************************************/
+	//------------------------CONTACT----------------------//
+
+	/** Axis-aligned overlap test between the two avatars' bounds, each scaled by strength about its own centre. A single-pair reference for the boxes
+	 * that <i>ContactDetector</i> builds for the whole battle. */
+	public static boolean inContact( ArmyState a, int slotA, ArmyState b, int slotB ) {
+		byte kindA = a.kind[ slotA ];
+		byte kindB = b.kind[ slotB ];
+		double scaleA = a.strength[ slotA ] / ActorKind.STRENGTH_SCALE_DIVISOR;
+		double scaleB = b.strength[ slotB ] / ActorKind.STRENGTH_SCALE_DIVISOR;
+		double dx = Math.abs( ( a.x[ slotA ] + ActorKind.centreOffsetX( kindA ) ) - ( b.x[ slotB ] + ActorKind.centreOffsetX( kindB ) ) );
+		double dy = Math.abs( ( a.y[ slotA ] + ActorKind.centreOffsetY( kindA ) ) - ( b.y[ slotB ] + ActorKind.centreOffsetY( kindB ) ) );
+		return dx <= ActorKind.halfWidth( kindA ) * scaleA + ActorKind.halfWidth( kindB ) * scaleB
+				&& dy <= ActorKind.halfHeight( kindA ) * scaleA + ActorKind.halfHeight( kindB ) * scaleB;
+	}
+
+	/** Combat: the actor loses the strength of every opponent in its contact list (as found by the battle's ContactDetector this tick) divided by
+	 * CONTACT_DAMAGE_DIVISOR. */
+	public static void applyContactDamage( Battle battle, ArmyState self, int slot ) {
+		ContactDetector contacts = battle.getContacts();
+		int armyIndex = self.getBattleIndex();
+		int count = contacts.getContactCount( armyIndex, slot );
+		if ( count == 0 )
+			return;
+		double damage = 0.0;
+		for ( int i = 0; i < count; ++i ) {
+			long contact = contacts.getContact( armyIndex, slot, i );
+			damage += battle.getArmy( ContactDetector.contactArmy( contact ) ).strength[ ContactDetector.contactSlot( contact ) ];
+		}
+		self.setHealth( slot, self.health[ slot ] - damage / CONTACT_DAMAGE_DIVISOR );
+	}
+} // end class ActorRules
@@ -0,0 +1,95 @@
+package core;
+
+import java.util.Locale;
+
+/** A type of actor, as scenarios define them: a name, the kind it is built as (which decides its shape and its rules, see <i>ActorKind</i> and
+ * <i>ActorRules</i>) and the ranges its health, strength and speed are rolled from. Every kind has a built-in template, named after it, with the
+ * full <i>ArmyState</i> ranges; a scenario can define others, e.g. a "Ranger" built as an Elf but faster. Immutable, so one template is shared by
+ * every actor rolled from it, on any thread. */
+public final class ActorTemplate {
+
+	private static final ActorTemplate[] BUILT_IN = new ActorTemplate[ ActorKind.COUNT ];
+	static {
+		for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+			BUILT_IN[ kind ] = new ActorTemplate( ActorKind.name( kind ), kind, ArmyState.HEALTH_MIN, ArmyState.HEALTH_MAX, ArmyState.STRENGTH_MIN,
+					ArmyState.STRENGTH_MAX, ArmyState.SPEED_MIN, ArmyState.SPEED_MAX );
+		}
+	}
+
+	private final String name;
+	private final byte kind;
+	private final double healthMin;
+	private final double healthMax;
+	private final double strengthMin;
+	private final double strengthMax;
+	private final double speedMin;
+	private final double speedMax;
+
+	/** @throws IllegalArgumentException if the kind is unknown, or a range is empty or reaches outside the ArmyState limits */
+	public ActorTemplate( String name, byte kind, double healthMin, double healthMax, double strengthMin, double strengthMax, double speedMin,
+			double speedMax ) {
+		if ( kind < 0 || kind >= ActorKind.COUNT )
+			throw new IllegalArgumentException( "Unknown actor kind: " + kind );
+		checkRange( "health", healthMin, healthMax, ArmyState.HEALTH_MIN, ArmyState.HEALTH_MAX );
+		checkRange( "strength", strengthMin, strengthMax, ArmyState.STRENGTH_MIN, ArmyState.STRENGTH_MAX );
+		checkRange( "speed", speedMin, speedMax, ArmyState.SPEED_MIN, ArmyState.SPEED_MAX );
+		this.name = name;
+		this.kind = kind;
+		this.healthMin = healthMin;
+		this.healthMax = healthMax;
+		this.strengthMin = strengthMin;
+		this.strengthMax = strengthMax;
+		this.speedMin = speedMin;
+		this.speedMax = speedMax;
+	}
+
+	private static void checkRange( String attribute, double min, double max, double limitMin, double limitMax ) {
+		if ( !( min <= max ) || min < limitMin || max > limitMax )
+			throw new IllegalArgumentException( String.format( Locale.ROOT, "The %s range %s..%s is not within %s..%s", attribute, min, max, limitMin,
+					limitMax ) );
+	}
+
+	/** @return the built-in template of the kind: its name, and the full ArmyState ranges */
+	public static ActorTemplate forKind( byte kind ) {
+		if ( kind < 0 || kind >= ActorKind.COUNT )
+			throw new IllegalArgumentException( "Unknown actor kind: " + kind );
+		return BUILT_IN[ kind ];
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public byte getKind() {
+		return kind;
+	}
+
+	public double getHealthMin() {
+		return healthMin;
+	}
+
+	public double getHealthMax() {
+		return healthMax;
+	}
+
+	public double getStrengthMin() {
+		return strengthMin;
+	}
+
+	public double getStrengthMax() {
+		return strengthMax;
+	}
+
+	public double getSpeedMin() {
+		return speedMin;
+	}
+
+	public double getSpeedMax() {
+		return speedMax;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+} // end class ActorTemplate
@@ -0,0 +1,569 @@
+package core;
+
+import java.util.Arrays;
+
+import util.RandomSource;
+
+/** Headless, struct-of-arrays storage for every actor in one army. Each actor occupies a <i>slot</i>; its attributes live at that index in a set of
+ * primitive parallel arrays (x, y, health, strength, speed, kind, alive) so that hot loops walk contiguous memory instead of chasing Node and
+ * property references. <i>army.Army</i> and <i>actor.Actor</i> are views over one of these.
+ *
+ * Slots never move, but the living ones are also listed in a compact live set, which is what the per-tick loops walk. An actor that dies stays in
+ * the live set (and the spatial index) until the end of the tick, when evictDead() swaps it out in O(1) and tells the index and any LifeListener;
+ * so late in a battle the work shrinks with the number of survivors rather than staying proportional to everyone who ever fought.
+ *
+ * Nothing in this package depends on JavaFX, so a battle can be built and stepped without a Stage. */
+public class ArmyState {
+
+	public static final double HEALTH_MIN = 1.0;
+	public static final double HEALTH_MAX = 200.00;
+	public static final double STRENGTH_MIN = 30.0;
+	public static final double STRENGTH_MAX = 100.00;
+	public static final double SPEED_MIN = 30.0;
+	public static final double SPEED_MAX = 100.00;
+
+	public static final double DEFAULT_MOVE_DURATION = 200.0; // a translation takes moveDuration / speed seconds
+
+	// Values of the action column: what each actor is doing between decisions.
+	public static final byte ACTION_NONE = 0; // needs a decision on the next tick
+	public static final byte ACTION_TRANSLATE = 1; // waiting out actionDelay, then moving from start to target over actionLength seconds
+	public static final byte ACTION_ROTATE = 2; // nothing to move towards (or dead): looking around for actionLength seconds
+
+	// Bits of the changedAttributes column: which attributes were written since views last took them.
+	public static final int CHANGED_HEALTH = 1;
+	public static final int CHANGED_STRENGTH = 2;
+	public static final int CHANGED_SPEED = 4;
+	public static final int CHANGED_ALL = CHANGED_HEALTH | CHANGED_STRENGTH | CHANGED_SPEED;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Told when an actor leaves the live set (it died) or rejoins it (its health was raised again, or a snapshot or replay frame brought it back).
+	 * Called on the thread that ticks the battle or changes the state, never from inside a PARALLEL advance. */
+	public interface LifeListener {
+		void actorDied( ArmyState army, int slot );
+
+		void actorRevived( ArmyState army, int slot );
+	}
+
+	private final String armyName;
+	private Battle battle;
+	private int battleIndex = -1; // position in battle.getArmies()
+	private RandomSource random; // the army's own stream, derived on first use
+	private LifeListener lifeListener;
+	private double spawnCentreX;
+	private double spawnCentreY;
+
+	// Parallel arrays, package-private so the rest of the core can use them in tight loops.
+	double[] x = new double[ INITIAL_CAPACITY ];
+	double[] y = new double[ INITIAL_CAPACITY ];
+	double[] health = new double[ INITIAL_CAPACITY ];
+	double[] strength = new double[ INITIAL_CAPACITY ];
+	double[] speed = new double[ INITIAL_CAPACITY ];
+	byte[] kind = new byte[ INITIAL_CAPACITY ];
+	boolean[] alive = new boolean[ INITIAL_CAPACITY ];
+
+	// Motion columns, advanced by Battle.tick().
+	double[] previousX = new double[ INITIAL_CAPACITY ]; // location at the start of the latest tick, for render interpolation
+	double[] previousY = new double[ INITIAL_CAPACITY ];
+	double[] nextX = new double[ INITIAL_CAPACITY ]; // written during a parallel tick, swapped with x/y once every slot is done
+	double[] nextY = new double[ INITIAL_CAPACITY ];
+	boolean buffering; // between beginBufferedTick() and endBufferedTick()
+	double[] startX = new double[ INITIAL_CAPACITY ];
+	double[] startY = new double[ INITIAL_CAPACITY ];
+	double[] targetX = new double[ INITIAL_CAPACITY ];
+	double[] targetY = new double[ INITIAL_CAPACITY ];
+	byte[] action = new byte[ INITIAL_CAPACITY ];
+	double[] actionDelay = new double[ INITIAL_CAPACITY ];
+	double[] actionElapsed = new double[ INITIAL_CAPACITY ];
+	double[] actionLength = new double[ INITIAL_CAPACITY ];
+	int[] actionSerial = new int[ INITIAL_CAPACITY ]; // incremented on every decision
+	byte[] changedAttributes = new byte[ INITIAL_CAPACITY ]; // CHANGED_ bits of the attributes written since takeChangedAttributes()
+	double[] moveDuration = new double[ INITIAL_CAPACITY ];
+
+	// Live set: the first liveCount entries of liveSlots, in no particular order; livePosition maps a slot back to its entry, or -1 if not live.
+	int[] liveSlots = new int[ INITIAL_CAPACITY ];
+	int[] livePosition = new int[ INITIAL_CAPACITY ];
+	int liveCount;
+	private int size;
+	private int reserved; // slots past size set aside by reserve(), invisible to the battle until published
+
+	private final SpatialGrid index;
+
+	public ArmyState( String armyName ) {
+		this.armyName = armyName;
+		index = new SpatialGrid( this );
+	}
+
+	/** Reserves the next slot for an actor of the given kind, placed at the origin with minimum attributes until the caller sets them.
+	 *
+	 * @return the new slot */
+	public int add( byte kind ) {
+		if ( reserved > 0 )
+			throw new IllegalStateException( "Slots of " + armyName + " are reserved by a bulk populate" );
+		if ( size == x.length )
+			grow( size * 2 );
+		int slot = size++;
+		initSlot( slot, kind );
+		index.insert( slot );
+		addLive( slot );
+		return slot;
+	}
+
+	/** Bulk populate, step 1: sets aside count slots after the existing ones (and any reserved earlier). They are invisible to the battle, so other
+	 * threads may fill them with initReservedSlot() and setters while the battle carries on, provided it is not ticked in the meantime (a parallel
+	 * tick swaps the location columns).
+	 *
+	 * @return the first reserved slot */
+	public int reserve( int count ) {
+		ensureCapacity( size + reserved + count );
+		int first = size + reserved;
+		reserved += count;
+		return first;
+	}
+
+	/** Bulk populate, step 2: what add() does for a reserved slot, minus making it visible. Safe to call from any thread, one thread per slot. */
+	public void initReservedSlot( int slot, byte kind ) {
+		if ( slot < size || slot >= size + reserved )
+			throw new IllegalArgumentException( "Slot " + slot + " is not reserved" );
+		initSlot( slot, kind );
+	}
+
+	/** Bulk populate, step 3: makes the next count reserved slots part of the army, in slot order, and files them in the spatial index. */
+	public void publish( int count ) {
+		if ( count > reserved )
+			throw new IllegalStateException( "Only " + reserved + " slots of " + armyName + " are reserved" );
+		for ( int slot = size; slot < size + count; ++slot ) {
+			index.insert( slot );
+			addLive( slot );
+		}
+		size += count;
+		reserved -= count;
+	}
+
+	/** Abandons every reserved slot that has not been published. */
+	public void cancelReservation() {
+		reserved = 0;
+	}
+
+	private void initSlot( int slot, byte kind ) {
+		this.kind[ slot ] = kind;
+		x[ slot ] = 0.0;
+		y[ slot ] = 0.0;
+		health[ slot ] = HEALTH_MIN;
+		strength[ slot ] = STRENGTH_MIN;
+		speed[ slot ] = SPEED_MIN;
+		alive[ slot ] = true;
+		previousX[ slot ] = 0.0;
+		previousY[ slot ] = 0.0;
+		action[ slot ] = ACTION_NONE;
+		actionSerial[ slot ] = 0;
+		moveDuration[ slot ] = DEFAULT_MOVE_DURATION;
+		changedAttributes[ slot ] = CHANGED_ALL;
+		livePosition[ slot ] = -1; // joins the live set when it becomes part of the army
+	}
+
+	/** Removes every actor (and any reservation), keeping the allocated columns. */
+	public void clear() {
+		size = 0;
+		reserved = 0;
+		liveCount = 0;
+		index.clear();
+	}
+
+	/** Pre-sizes the columns so that a bulk populate does not repeatedly reallocate. */
+	public void ensureCapacity( int capacity ) {
+		if ( capacity > x.length )
+			grow( capacity );
+	}
+
+	/** @return bytes held by the per-slot columns at their current capacity (array contents only), for the memory footprint report */
+	public long getColumnBytes() {
+		long doubles = x.length + y.length + health.length + strength.length + speed.length + previousX.length + previousY.length + nextX.length
+				+ nextY.length + startX.length + startY.length + targetX.length + targetY.length + actionDelay.length + actionElapsed.length
+				+ actionLength.length + moveDuration.length;
+		long ints = actionSerial.length + liveSlots.length + livePosition.length;
+		long bytes = kind.length + alive.length + action.length + changedAttributes.length;
+		return 8L * doubles + 4L * ints + bytes;
+	}
+
+	/** @return slots the columns can hold without growing */
+	public int capacity() {
+		return x.length;
+	}
+
+	private void grow( int capacity ) {
+		x = Arrays.copyOf( x, capacity );
+		y = Arrays.copyOf( y, capacity );
+		health = Arrays.copyOf( health, capacity );
+		strength = Arrays.copyOf( strength, capacity );
+		speed = Arrays.copyOf( speed, capacity );
+		kind = Arrays.copyOf( kind, capacity );
+		alive = Arrays.copyOf( alive, capacity );
+		previousX = Arrays.copyOf( previousX, capacity );
+		previousY = Arrays.copyOf( previousY, capacity );
+		nextX = Arrays.copyOf( nextX, capacity );
+		nextY = Arrays.copyOf( nextY, capacity );
+		startX = Arrays.copyOf( startX, capacity );
+		startY = Arrays.copyOf( startY, capacity );
+		targetX = Arrays.copyOf( targetX, capacity );
+		targetY = Arrays.copyOf( targetY, capacity );
+		action = Arrays.copyOf( action, capacity );
+		actionDelay = Arrays.copyOf( actionDelay, capacity );
+		actionElapsed = Arrays.copyOf( actionElapsed, capacity );
+		actionLength = Arrays.copyOf( actionLength, capacity );
+		actionSerial = Arrays.copyOf( actionSerial, capacity );
+		moveDuration = Arrays.copyOf( moveDuration, capacity );
+		changedAttributes = Arrays.copyOf( changedAttributes, capacity );
+		liveSlots = Arrays.copyOf( liveSlots, capacity );
+		livePosition = Arrays.copyOf( livePosition, capacity );
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String getArmyName() {
+		return armyName;
+	}
+
+	public Battle getBattle() {
+		return battle;
+	}
+
+	void setBattle( Battle battle, int battleIndex ) { // assigned by Battle.addArmy()
+		this.battle = battle;
+		this.battleIndex = battleIndex;
+		random = null;
+	}
+
+	public int getBattleIndex() {
+		return battleIndex;
+	}
+
+	/** @return the battle's seed, or the master seed for an army not yet in a battle */
+	public long getSeed() {
+		return ( battle != null ) ? battle.getSeed() : RandomSource.MASTER_SEED;
+	}
+
+	/** @return the army's own random stream, for choices made for the army as a whole (such as which kind of actor to add next) */
+	public RandomSource getRandom() {
+		if ( random == null )
+			random = RandomSource.stream( getSeed(), ( (long) battleIndex << 32 ) | 0xFFFFFFFFL );
+		return random;
+	}
+
+	/** @return a new random stream owned by the slot. It depends only on the seed, the army's place in the battle and the slot, so an actor rolls
+	 *         the same attributes whichever thread spawns it and in whatever order. */
+	public RandomSource randomStream( int slot ) {
+		return RandomSource.stream( getSeed(), ( (long) battleIndex << 32 ) | slot );
+	}
+
+	void resetRandom() { // the seed changed: derive the army stream again on next use
+		random = null;
+	}
+
+	public LifeListener getLifeListener() {
+		return lifeListener;
+	}
+
+	/** @param lifeListener told of every actor leaving or rejoining the live set, or null */
+	public void setLifeListener( LifeListener lifeListener ) {
+		this.lifeListener = lifeListener;
+	}
+
+	public SpatialGrid getIndex() {
+		return index;
+	}
+
+	public double getSpawnCentreX() {
+		return spawnCentreX;
+	}
+
+	public double getSpawnCentreY() {
+		return spawnCentreY;
+	}
+
+	public void setSpawnCentre( double x, double y ) {
+		this.spawnCentreX = x;
+		this.spawnCentreY = y;
+	}
+
+	/*******************************************************/
+	//-----------------------LOCATION----------------------//
+
+	public double getX( int slot ) {
+		return x[ slot ];
+	}
+
+	public double getY( int slot ) {
+		return y[ slot ];
+	}
+
+	/** Places the actor (no interpolation from its old location) and keeps the spatial index in step. */
+	public void setLocation( int slot, double x, double y ) {
+		moveTo( slot, x, y );
+		previousX[ slot ] = x;
+		previousY[ slot ] = y;
+	}
+
+	// Movement within a tick: previousX/previousY keep the start-of-tick location for interpolation. Reserved slots are filed when published.
+	void moveTo( int slot, double x, double y ) {
+		this.x[ slot ] = x;
+		this.y[ slot ] = y;
+		if ( slot < size )
+			index.update( slot );
+	}
+
+	void savePreviousLocations() {
+		System.arraycopy( x, 0, previousX, 0, size );
+		System.arraycopy( y, 0, previousY, 0, size );
+	}
+
+	// Parallel tick: every slot starts with its current location in the next buffer, so slots that do not move need not write it.
+	void beginBufferedTick() {
+		System.arraycopy( x, 0, nextX, 0, size );
+		System.arraycopy( y, 0, nextY, 0, size );
+		buffering = true;
+	}
+
+	// Parallel tick: publish the next buffer as the current locations and re-file any live slot that changed cell.
+	void endBufferedTick() {
+		double[] swap = x;
+		x = nextX;
+		nextX = swap;
+		swap = y;
+		y = nextY;
+		nextY = swap;
+		buffering = false;
+		for ( int i = 0; i < liveCount; ++i )
+			index.update( liveSlots[ i ] );
+	}
+
+	// Where the slot itself currently stands: during a parallel tick, the location it has moved to so far in the next buffer, which every other
+	// slot only sees once the tick ends. A slot reads its own location through these so that it follows the same path in either TickMode.
+	double ownX( int slot ) {
+		return buffering ? nextX[ slot ] : x[ slot ];
+	}
+
+	double ownY( int slot ) {
+		return buffering ? nextY[ slot ] : y[ slot ];
+	}
+
+	/** @param alpha fraction of a fixed timestep elapsed since the latest tick, 0.0 to 1.0
+	 * @return x blended between the start and the end of the latest tick */
+	public double getInterpolatedX( int slot, double alpha ) {
+		return previousX[ slot ] + ( x[ slot ] - previousX[ slot ] ) * alpha;
+	}
+
+	public double getInterpolatedY( int slot, double alpha ) {
+		return previousY[ slot ] + ( y[ slot ] - previousY[ slot ] ) * alpha;
+	}
+
+	/*******************************************************/
+	//------------------------ACTION-----------------------//
+
+	public byte getAction( int slot ) {
+		return action[ slot ];
+	}
+
+	public int getActionSerial( int slot ) {
+		return actionSerial[ slot ];
+	}
+
+	/** Rotation of the avatar while looking around: two cycles of 0 to 360 degrees, the second one reversed.
+	 *
+	 * @return angle in degrees, 0.0 when not rotating */
+	public double getRotation( int slot ) {
+		if ( action[ slot ] != ACTION_ROTATE )
+			return 0.0;
+		double cycleLength = actionLength[ slot ] / 2.0;
+		double elapsed = Math.min( actionElapsed[ slot ], actionLength[ slot ] );
+		int cycle = (int) ( elapsed / cycleLength );
+		double fraction = ( elapsed - cycle * cycleLength ) / cycleLength;
+		return ( cycle % 2 == 0 ) ? 360.0 * fraction : 360.0 * ( 1.0 - fraction );
+	}
+
+	public double getMoveDuration( int slot ) {
+		return moveDuration[ slot ];
+	}
+
+	public void setMoveDuration( int slot, double moveDuration ) {
+		this.moveDuration[ slot ] = moveDuration;
+	}
+
+	/*******************************************************/
+	//---------------------ATTRIBUTES----------------------//
+
+	public byte getKind( int slot ) {
+		return kind[ slot ];
+	}
+
+	public boolean isAlive( int slot ) {
+		return alive[ slot ];
+	}
+
+	public double getHealth( int slot ) {
+		return health[ slot ];
+	}
+
+	/** Values below HEALTH_MIN are treated as death (health 0.0). A death takes effect in the live set at the end of the tick (see evictDead()); raising
+	 * the health of an actor already evicted brings it back at once, so that must not happen during a PARALLEL tick (contact damage never does). */
+	public void setHealth( int slot, double health ) {
+		if ( health < HEALTH_MIN ) {
+			health = 0.0;
+		} else if ( health > HEALTH_MAX ) {
+			health = HEALTH_MAX;
+		}
+		this.health[ slot ] = health;
+		alive[ slot ] = health > 0.0;
+		changedAttributes[ slot ] |= CHANGED_HEALTH;
+		if ( alive[ slot ] && slot < size && livePosition[ slot ] < 0 )
+			revive( slot );
+	}
+
+	public double getStrength( int slot ) {
+		return strength[ slot ];
+	}
+
+	public void setStrength( int slot, double strength ) {
+		this.strength[ slot ] = clamp( strength, STRENGTH_MIN, STRENGTH_MAX );
+		changedAttributes[ slot ] |= CHANGED_STRENGTH;
+	}
+
+	public double getSpeed( int slot ) {
+		return speed[ slot ];
+	}
+
+	public void setSpeed( int slot, double speed ) {
+		this.speed[ slot ] = clamp( speed, SPEED_MIN, SPEED_MAX );
+		changedAttributes[ slot ] |= CHANGED_SPEED;
+	}
+
+	/** Dirty flags for views that mirror the attributes: setHealth(), setStrength() and setSpeed() each raise their own CHANGED_ bit, so a view
+	 * can refresh just what was written.
+	 *
+	 * @return the CHANGED_ bits raised since the last call for this slot, 0 if none; clears them */
+	public int takeChangedAttributes( int slot ) {
+		int changed = changedAttributes[ slot ];
+		changedAttributes[ slot ] = 0;
+		return changed;
+	}
+
+	public int countAlive() {
+		int count = 0;
+		for ( int i = 0; i < liveCount; ++i ) {
+			if ( alive[ liveSlots[ i ] ] )
+				++count;
+		}
+		return count;
+	}
+
+	/** @return slot of the actor of this army closest to (x, y), found through the spatial index, or -1 if the live set is empty */
+	public int findNearest( double x, double y ) {
+		return index.findNearest( x, y );
+	}
+
+	/** Reference implementation of the nearest-actor query: measures the distance to every slot in the live set.
+	 *
+	 * @return slot of the actor closest to (x, y), or -1 if the live set is empty */
+	public int findNearestByLinearScan( double x, double y ) {
+		double distanceSquaredToClosestSoFar = Double.MAX_VALUE;
+		int closest = -1;
+		for ( int i = 0; i < liveCount; ++i ) {
+			int slot = liveSlots[ i ];
+			double dx = this.x[ slot ] - x;
+			double dy = this.y[ slot ] - y;
+			double distanceSquared = dx * dx + dy * dy;
+			if ( distanceSquared < distanceSquaredToClosestSoFar ) {
+				distanceSquaredToClosestSoFar = distanceSquared;
+				closest = slot;
+			}
+		}
+		return closest;
+	}
+
+	/*******************************************************/
+	//------------------------LIVE SET---------------------//
+
+	/** @return number of slots in the live set: every living actor, plus any that died during the current tick */
+	public int liveCount() {
+		return liveCount;
+	}
+
+	/** @param position 0 to liveCount() - 1
+	 * @return the slot at that position of the live set; positions change whenever an actor is evicted or revived */
+	public int liveSlot( int position ) {
+		return liveSlots[ position ];
+	}
+
+	/** @return whether the slot is in the live set */
+	public boolean isLive( int slot ) {
+		return livePosition[ slot ] >= 0;
+	}
+
+	/** Swaps every dead actor out of the live set and out of the spatial index, telling the LifeListener. Called by Battle once every actor has
+	 * advanced, so nothing walks the live set while it changes. */
+	void evictDead() {
+		for ( int i = 0; i < liveCount; ) {
+			int slot = liveSlots[ i ];
+			if ( alive[ slot ] ) {
+				++i;
+				continue;
+			}
+			removeLive( slot ); // the last entry moves into position i: look at it next
+			index.remove( slot );
+			if ( lifeListener != null )
+				lifeListener.actorDied( this, slot );
+		}
+	}
+
+	/** Brings the live set and the spatial index into line with the alive column after it was written wholesale (by a snapshot or a replay frame),
+	 * re-filing the live slots at their current locations. */
+	void syncLiveSet() {
+		for ( int slot = 0; slot < size; ++slot )
+			syncLiveSlot( slot );
+	}
+
+	/** syncLiveSet() for one slot. */
+	void syncLiveSlot( int slot ) {
+		boolean isLive = livePosition[ slot ] >= 0;
+		if ( alive[ slot ] && !isLive )
+			revive( slot );
+		else if ( !alive[ slot ] && isLive ) {
+			removeLive( slot );
+			index.remove( slot );
+			if ( lifeListener != null )
+				lifeListener.actorDied( this, slot );
+		} else if ( isLive )
+			index.update( slot );
+	}
+
+	private void revive( int slot ) {
+		addLive( slot );
+		index.insert( slot );
+		if ( lifeListener != null )
+			lifeListener.actorRevived( this, slot );
+	}
+
+	private void addLive( int slot ) {
+		livePosition[ slot ] = liveCount;
+		liveSlots[ liveCount++ ] = slot;
+	}
+
+	// O(1): the last entry takes the removed one's place.
+	private void removeLive( int slot ) {
+		int position = livePosition[ slot ];
+		int last = liveSlots[ --liveCount ];
+		liveSlots[ position ] = last;
+		livePosition[ last ] = position;
+		livePosition[ slot ] = -1;
+	}
+
+	private static double clamp( double value, double min, double max ) {
+		if ( value < min )
+			return min;
+		if ( value > max )
+			return max;
+		return value;
+	}
+} // end class ArmyState
@@ -0,0 +1,494 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.RandomSource;
+
+/** Headless battle: the battlefield dimensions plus the <i>ArmyState</i> of every army taking part, any number of them, and which armies are hostile
+ * to which. Every army is hostile to every other when it joins; setHostile() makes allies of some, who then neither target nor hurt each other.
+ * Each army files its living actors in a <i>SpatialGrid</i> of its own, and an actor's nearest opponent is found by searching only the grids of
+ * the armies hostile to it, each within the distance of the best target so far, so friendly actors are never examined. The JavaFX <i>Simulator</i> keeps one of these behind its scene graph; it can equally be built and stepped
+ * on its own with no Stage at all. */
+public class Battle {
+
+	/** How tick() walks the actors: SEQUENTIAL on the calling thread, or PARALLEL across a ForkJoinPool from a snapshot of the previous tick. */
+	public enum TickMode {
+		SEQUENTIAL, PARALLEL
+	}
+
+	/** How findNearestOpponent() locates the target of every decision: SPATIAL_GRID through the hostile armies' spatial indexes, or LINEAR_SCAN,
+	 * the original O(N) walk of each hostile army, retained as a reference implementation that the grid's results can be compared against. */
+	public enum SearchMode {
+		SPATIAL_GRID, LINEAR_SCAN
+	}
+
+	/** Length of one simulation tick in seconds; the clock always advances the battle in steps of exactly this size. */
+	public static final double FIXED_TIMESTEP = 1.0 / 60.0;
+
+	/** Ticks between rebuilds of the flow fields armies use to find their way around blocked terrain. */
+	public static final int FLOW_FIELD_INTERVAL = 10;
+
+	private static final double EDGE_OFFSET = 20.0;
+
+	private double width;
+	private double height;
+	private final List<ArmyState> armies = new ArrayList<ArmyState>();
+	private boolean[][] hostile = new boolean[ 0 ][]; // hostile[ a ][ b ]: whether army a fights army b, by battle index; symmetric, false for a == b
+	private final ContactDetector contacts = new ContactDetector();
+	private TerrainMask terrain; // where actors may stand, or null if they may stand anywhere
+	private double terrainScale; // terrain cells per battlefield unit: the map is drawn fitted to the battlefield width
+	private FlowField[] flowFields = new FlowField[ 0 ]; // by army index; only built while there is terrain to steer around
+	private boolean flowFieldsBuilt;
+	private final double[] location = new double[ 2 ]; // scratch buffer for tick()
+	private long tickCount;
+	private int decisionsInLastTick;
+	private final AtomicInteger parallelDecisions = new AtomicInteger(); // summed once per leaf task by PARALLEL ticks
+	private long seed = RandomSource.nextSeed();
+	private TickMode tickMode = TickMode.SEQUENTIAL;
+	private SearchMode searchMode = SearchMode.SPATIAL_GRID;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private ReplayRecorder recorder; // appends every tick to a replay file, or null
+
+	public Battle( double width, double height ) {
+		setSize( width, height );
+	}
+
+	public double getWidth() {
+		return width;
+	}
+
+	public double getHeight() {
+		return height;
+	}
+
+	public void setSize( double width, double height ) {
+		this.width = width;
+		this.height = height;
+		updateTerrainScale();
+	}
+
+	public TerrainMask getTerrain() {
+		return terrain;
+	}
+
+	/** @param terrain walkable ground, laid over the battlefield like the map it was built from; null makes the whole battlefield walkable */
+	public void setTerrain( TerrainMask terrain ) {
+		this.terrain = terrain;
+		updateTerrainScale();
+		flowFieldsBuilt = false;
+	}
+
+	private void updateTerrainScale() {
+		terrainScale = ( terrain != null && width > 0.0 ) ? terrain.getWidth() / width : 0.0;
+	}
+
+	/** @return whether an actor may stand at the location */
+	public boolean isWalkable( double x, double y ) {
+		return terrain == null || terrainScale == 0.0 || terrain.isWalkable( x, y, terrainScale );
+	}
+
+	/** Adds the army, hostile to every army already in the battle. */
+	public void addArmy( ArmyState army ) {
+		int battleIndex = armies.size();
+		army.setBattle( this, battleIndex );
+		armies.add( army );
+		boolean[][] grown = new boolean[ battleIndex + 1 ][];
+		for ( int a = 0; a < battleIndex; ++a ) {
+			grown[ a ] = Arrays.copyOf( hostile[ a ], battleIndex + 1 );
+			grown[ a ][ battleIndex ] = true;
+		}
+		grown[ battleIndex ] = new boolean[ battleIndex + 1 ];
+		Arrays.fill( grown[ battleIndex ], 0, battleIndex, true );
+		hostile = grown;
+		flowFieldsBuilt = false;
+	}
+
+	public List<ArmyState> getArmies() {
+		return Collections.unmodifiableList( armies );
+	}
+
+	public int getArmyCount() {
+		return armies.size();
+	}
+
+	/** @return whether the actors of the two armies (by battle index) fight each other; an army is never hostile to itself */
+	public boolean isHostile( int a, int b ) {
+		return hostile[ a ][ b ];
+	}
+
+	/** Makes two armies (by battle index) enemies, as every pair is when it joins, or allies; both ways. */
+	public void setHostile( int a, int b, boolean isHostile ) {
+		if ( a == b )
+			throw new IllegalArgumentException( "An army cannot be hostile to itself: " + a );
+		hostile[ a ][ b ] = isHostile;
+		hostile[ b ][ a ] = isHostile;
+		flowFieldsBuilt = false;
+	}
+
+	/** Makes every army hostile to every other again. */
+	public void resetHostility() {
+		for ( int a = 0; a < hostile.length; ++a ) {
+			for ( int b = 0; b < hostile.length; ++b )
+				hostile[ a ][ b ] = a != b;
+		}
+		flowFieldsBuilt = false;
+	}
+
+	/** @return the seed every random stream in this battle is derived from */
+	public long getSeed() {
+		return seed;
+	}
+
+	/** Replays a battle: set the seed before populating, and the same seed rolls the same armies. */
+	public void setSeed( long seed ) {
+		this.seed = seed;
+		for ( ArmyState army : armies )
+			army.resetRandom();
+	}
+
+	/** @param index the army's getBattleIndex() */
+	public ArmyState getArmy( int index ) {
+		return armies.get( index );
+	}
+
+	/** @return contacts between armies as they stood at the start of the latest tick */
+	public ContactDetector getContacts() {
+		return contacts;
+	}
+
+	/** @return the opponent nearest to the actor, in any army hostile to its own, packed as its army's battle index in the high 32 bits and its slot
+	 *         in the low 32 bits (see opponentArmy() and opponentSlot()), or -1 if there is none */
+	public long findNearestOpponent( ArmyState army, int slot ) {
+		return findNearestOpponent( army, army.ownX( slot ), army.ownY( slot ) );
+	}
+
+	/** @return the actor nearest to (x, y) in any army hostile to the given one, found as the SearchMode says and packed as by
+	 *         findNearestOpponent( ArmyState, int ), or -1 if there is none */
+	public long findNearestOpponent( ArmyState army, double x, double y ) {
+		if ( searchMode == SearchMode.LINEAR_SCAN )
+			return findNearestOpponentByLinearScan( army, x, y );
+		return findNearestOpponentBySpatialGrid( army, x, y );
+	}
+
+	/** SPATIAL_GRID: searches the spatial index of each hostile army in turn, bounded by the closest opponent found in the ones before it, so that
+	 * after the first hit a far-off army costs only the rings around (x, y). */
+	public long findNearestOpponentBySpatialGrid( ArmyState army, double x, double y ) {
+		boolean[] targets = hostile[ army.getBattleIndex() ];
+		double distanceSquaredToClosestSoFar = Double.MAX_VALUE;
+		long closest = -1L;
+		for ( int i = 0, n = armies.size(); i < n; ++i ) {
+			if ( !targets[ i ] )
+				continue;
+			ArmyState opponents = armies.get( i );
+			int slot = opponents.getIndex().findNearest( x, y, distanceSquaredToClosestSoFar );
+			if ( slot < 0 )
+				continue;
+			double dx = opponents.x[ slot ] - x;
+			double dy = opponents.y[ slot ] - y;
+			distanceSquaredToClosestSoFar = dx * dx + dy * dy;
+			closest = ( (long) i << 32 ) | slot;
+		}
+		return closest;
+	}
+
+	/** @return battle index of the army of an opponent returned by findNearestOpponent() */
+	public static int opponentArmy( long opponent ) {
+		return (int) ( opponent >>> 32 );
+	}
+
+	/** @return slot of an opponent returned by findNearestOpponent() */
+	public static int opponentSlot( long opponent ) {
+		return (int) opponent;
+	}
+
+	/** LINEAR_SCAN, the reference implementation of findNearestOpponent(): a linear scan of every hostile army in turn. */
+	public long findNearestOpponentByLinearScan( ArmyState army, double x, double y ) {
+		boolean[] targets = hostile[ army.getBattleIndex() ];
+		double distanceSquaredToClosestSoFar = Double.MAX_VALUE;
+		long closest = -1L;
+		for ( int i = 0, n = armies.size(); i < n; ++i ) {
+			if ( !targets[ i ] )
+				continue;
+			ArmyState opponents = armies.get( i );
+			int slot = opponents.findNearestByLinearScan( x, y );
+			if ( slot < 0 )
+				continue;
+			double dx = opponents.x[ slot ] - x;
+			double dy = opponents.y[ slot ] - y;
+			if ( dx * dx + dy * dy < distanceSquaredToClosestSoFar ) {
+				distanceSquaredToClosestSoFar = dx * dx + dy * dy;
+				closest = ( (long) i << 32 ) | slot;
+			}
+		}
+		return closest;
+	}
+
+	/** Decides where the actor moves next: finds the nearest opponent, applies the kind-specific rule and snaps the result onto the battlefield.
+	 *
+	 * @return false if there is no opponent to react to, in which case location is left untouched */
+	public boolean decideNewLocation( ArmyState army, int slot, double[] location ) {
+		long target = findNearestOpponent( army, slot );
+		if ( target < 0L )
+			return false;
+		ActorRules.newLocation( this, army, slot, armies.get( opponentArmy( target ) ), opponentSlot( target ), location );
+		snapToBattlefield( location );
+		return true;
+	}
+
+	/** @return the army's way to its opponents around blocked terrain, or null while the battlefield has no terrain (or no field has been built
+	 *         yet), in which case actors head straight for their target */
+	public FlowField getFlowField( ArmyState army ) {
+		int index = army.getBattleIndex();
+		return flowFieldsBuilt && index < flowFields.length ? flowFields[ index ] : null;
+	}
+
+	// One field per army, towards the living actors of every army hostile to it, rebuilt every FLOW_FIELD_INTERVAL ticks before any actor moves; the
+	// fields are only read during the rest of the tick, so PARALLEL ticks share them freely.
+	private void updateFlowFields() {
+		if ( terrain == null ) {
+			flowFieldsBuilt = false;
+			return;
+		}
+		if ( flowFieldsBuilt && tickCount % FLOW_FIELD_INTERVAL != 0 )
+			return;
+		if ( flowFields.length < armies.size() ) {
+			FlowField[] grown = new FlowField[ armies.size() ];
+			System.arraycopy( flowFields, 0, grown, 0, flowFields.length );
+			for ( int i = flowFields.length; i < grown.length; ++i )
+				grown[ i ] = new FlowField();
+			flowFields = grown;
+		}
+		for ( int i = 0, n = armies.size(); i < n; ++i )
+			flowFields[ i ].build( this, armies.get( i ) );
+		flowFieldsBuilt = true;
+	}
+
+	/** Snaps the proposed location to the inside boundaries of the battlefield, then moves it off blocked terrain (the sea, on the Middle-earth
+	 * map) to the nearest walkable ground. */
+	public void snapToBattlefield( double[] location ) {
+		double x = location[ 0 ];
+		double y = location[ 1 ];
+		if ( x < 0.0 )
+			x = EDGE_OFFSET;
+		else if ( x > width )
+			x = width - EDGE_OFFSET;
+		if ( y < 0.0 )
+			y = EDGE_OFFSET;
+		else if ( y > height )
+			y = height - EDGE_OFFSET;
+		location[ 0 ] = x;
+		location[ 1 ] = y;
+		if ( terrain != null && terrainScale > 0.0 )
+			terrain.project( location, terrainScale );
+	}
+
+	/** Advances the battle by one FIXED_TIMESTEP. */
+	public void step() {
+		tick( FIXED_TIMESTEP );
+	}
+
+	/** Advances every actor of every army by dt seconds. The collision phase runs first, finding every actor in contact with an opponent (an actor
+	 * of a hostile army). Then an
+	 * actor with no current action takes damage from all of its contacts and decides on a new action; a translating actor waits out its delay and
+	 * then moves a share of the way towards its target; a rotating actor just lets time pass.
+	 *
+	 * Only the live set of each army is advanced; actors that died during the tick are evicted from it at the end.
+	 *
+	 * In SEQUENTIAL mode actors are advanced in army then live-set order, each seeing the moves already made earlier in the same tick. In PARALLEL
+	 * mode every decision reads the other actors' locations as they stood at the end of the previous tick, new locations are written to a second
+	 * buffer that is swapped in afterwards, and the outcome is identical whatever the number of cores. In both modes an actor moves and decides from
+	 * where it itself now stands, so each actor traces the same path from the same inputs. */
+	public void tick( double dt ) {
+		for ( ArmyState army : armies )
+			army.savePreviousLocations();
+		contacts.detect( this );
+		updateFlowFields();
+		int decisions = 0;
+		if ( tickMode == TickMode.PARALLEL )
+			decisions = tickInParallel( dt );
+		else {
+			for ( ArmyState army : armies ) {
+				for ( int i = 0, n = army.liveCount; i < n; ++i ) {
+					if ( advance( army, army.liveSlots[ i ], dt, location, false ) )
+						++decisions;
+				}
+			}
+		}
+		decisionsInLastTick = decisions;
+		for ( ArmyState army : armies )
+			army.evictDead();
+		++tickCount;
+		if ( recorder != null )
+			recorder.record( this );
+	}
+
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	void setTickCount( long tickCount ) { // restored by BattleSnapshot
+		this.tickCount = tickCount;
+	}
+
+	/** @return how many actors decided on a new action during the latest tick; each decision made one nearest-opponent query */
+	public int getDecisionsInLastTick() {
+		return decisionsInLastTick;
+	}
+
+	public ReplayRecorder getRecorder() {
+		return recorder;
+	}
+
+	/** @param recorder records the outcome of every tick from now on, or null to stop recording (closing it is up to the caller) */
+	public void setRecorder( ReplayRecorder recorder ) {
+		this.recorder = recorder;
+	}
+
+	public TickMode getTickMode() {
+		return tickMode;
+	}
+
+	public void setTickMode( TickMode tickMode ) {
+		this.tickMode = tickMode;
+	}
+
+	public SearchMode getSearchMode() {
+		return searchMode;
+	}
+
+	public void setSearchMode( SearchMode searchMode ) {
+		this.searchMode = searchMode;
+	}
+
+	/** @param pool pool used by PARALLEL ticks; defaults to the common pool */
+	public void setForkJoinPool( ForkJoinPool pool ) {
+		this.pool = pool;
+	}
+
+	// Only x and y are read across slots (by opponents and the spatial index), so only they are double-buffered; health and the motion columns of a
+	// slot are read and written solely by that slot's own task.
+	private int tickInParallel( double dt ) {
+		for ( ArmyState army : armies )
+			army.beginBufferedTick();
+		parallelDecisions.set( 0 );
+		for ( ArmyState army : armies ) {
+			if ( army.liveCount > 0 )
+				pool.invoke( new AdvanceRange( this, army, 0, army.liveCount, dt ) );
+		}
+		for ( ArmyState army : armies )
+			army.endBufferedTick();
+		return parallelDecisions.get();
+	}
+
+	/** Fork-join task advancing a contiguous range of the live set; splits in half until the range is small enough to do directly. */
+	private static final class AdvanceRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int THRESHOLD = 512;
+
+		private final Battle battle;
+		private final ArmyState army;
+		private final int from;
+		private final int to;
+		private final double dt;
+
+		AdvanceRange( Battle battle, ArmyState army, int from, int to, double dt ) {
+			this.battle = battle;
+			this.army = army;
+			this.from = from;
+			this.to = to;
+			this.dt = dt;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from <= THRESHOLD ) {
+				double[] location = new double[ 2 ]; // one scratch buffer per leaf task
+				int decisions = 0;
+				for ( int i = from; i < to; ++i ) {
+					if ( battle.advance( army, army.liveSlots[ i ], dt, location, true ) )
+						++decisions;
+				}
+				battle.parallelDecisions.addAndGet( decisions );
+				return;
+			}
+			int middle = ( from + to ) >>> 1;
+			invokeAll( new AdvanceRange( battle, army, from, middle, dt ), new AdvanceRange( battle, army, middle, to, dt ) );
+		}
+	}
+
+	// buffered: write the new location into the army's next-location buffer rather than moving the actor in place.
+	// Returns whether the actor decided on a new action.
+	private boolean advance( ArmyState army, int slot, double dt, double[] location, boolean buffered ) {
+		switch ( army.action[ slot ] ) {
+		case ArmyState.ACTION_NONE:
+			startNextAction( army, slot, location );
+			return true;
+		case ArmyState.ACTION_ROTATE:
+			army.actionElapsed[ slot ] += dt;
+			if ( army.actionElapsed[ slot ] < army.actionLength[ slot ] )
+				return false;
+			startNextAction( army, slot, location );
+			return true;
+		case ArmyState.ACTION_TRANSLATE:
+			if ( army.actionDelay[ slot ] > 0.0 ) {
+				army.actionDelay[ slot ] -= dt;
+				return false;
+			}
+			army.actionElapsed[ slot ] += dt;
+			double fraction = Math.min( 1.0, army.actionElapsed[ slot ] / army.actionLength[ slot ] );
+			double newX = army.startX[ slot ] + ( army.targetX[ slot ] - army.startX[ slot ] ) * fraction;
+			double newY = army.startY[ slot ] + ( army.targetY[ slot ] - army.startY[ slot ] ) * fraction;
+			if ( buffered ) {
+				army.nextX[ slot ] = newX;
+				army.nextY[ slot ] = newY;
+			} else
+				army.moveTo( slot, newX, newY );
+			if ( fraction < 1.0 )
+				return false;
+			startNextAction( army, slot, location );
+			return true;
+		}
+		return false;
+	}
+
+	// Applies contact damage and decides the next action; the timings match the Transitions this replaces (rotate 2 x 500/speed, delay 150/health then translate moveDuration/speed).
+	// The new action starts from where the actor now stands: its next-buffer location when buffered, so both TickModes trace the same path.
+	private void startNextAction( ArmyState army, int slot, double[] location ) {
+		ActorRules.applyContactDamage( this, army, slot );
+		boolean hasTarget = decideNewLocation( army, slot, location );
+		army.actionElapsed[ slot ] = 0.0;
+		++army.actionSerial[ slot ];
+		if ( !hasTarget || army.health[ slot ] <= 0.0 ) {
+			army.action[ slot ] = ArmyState.ACTION_ROTATE;
+			army.actionLength[ slot ] = 2.0 * 500.0 / army.speed[ slot ];
+			return;
+		}
+		army.action[ slot ] = ArmyState.ACTION_TRANSLATE;
+		army.actionDelay[ slot ] = 150.0 / army.health[ slot ];
+		army.actionLength[ slot ] = army.moveDuration[ slot ] / army.speed[ slot ];
+		army.startX[ slot ] = army.ownX( slot );
+		army.startY[ slot ] = army.ownY( slot );
+		army.targetX[ slot ] = location[ 0 ];
+		army.targetY[ slot ] = location[ 1 ];
+	}
+
+	/** @return true once no two armies with living actors left are hostile to each other: with two armies, once either is wiped out */
+	public boolean isOver() {
+		int armyCount = armies.size();
+		boolean[] standing = new boolean[ armyCount ];
+		for ( int a = 0; a < armyCount; ++a ) {
+			standing[ a ] = armies.get( a ).countAlive() > 0;
+			for ( int b = 0; b < a; ++b ) {
+				if ( standing[ a ] && standing[ b ] && hostile[ a ][ b ] )
+					return false;
+			}
+		}
+		return true;
+	}
+} // end class Battle
@@ -0,0 +1,286 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/** Compact, versioned binary snapshot of a battle, written and read through a memory-mapped file. Each army is stored column by column, straight
+ * from the <i>ArmyState</i> arrays, so saving or loading is a handful of bulk copies however many actors there are.
+ *
+ * Layout, little-endian, every column starting on an 8-byte boundary:
+ * <pre>
+ * header    int MAGIC, int VERSION, long seed, long tickCount, int armyCount, (pad)
+ * hostility byte hostile[armyCount * armyCount] (1 where army a fights army b, row by row), (pad)
+ * per army  int nameLength, UTF-8 name, (pad), double spawnCentreX, double spawnCentreY, int size, (pad),
+ *           byte kind[size], (pad), double x[size], y[size], health[size], strength[size], speed[size], moveDuration[size]
+ * </pre>
+ * Actors come back with their location and attributes; whatever they were in the middle of doing is dropped, so each one decides afresh on the
+ * first tick after loading. */
+public final class BattleSnapshot {
+
+	public static final int MAGIC = 0x48425346; // "HBSF"
+	public static final int VERSION = 1;
+
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	private static final int DOUBLE_COLUMNS = 6;
+
+	private final long seed;
+	private final long tickCount;
+	private final String[] armyNames;
+	private final boolean[][] hostile;
+	private final double[] spawnCentreX;
+	private final double[] spawnCentreY;
+	private final byte[][] kind;
+	private final double[][] x;
+	private final double[][] y;
+	private final double[][] health;
+	private final double[][] strength;
+	private final double[][] speed;
+	private final double[][] moveDuration;
+
+	private BattleSnapshot( long seed, long tickCount, int armyCount ) {
+		this.seed = seed;
+		this.tickCount = tickCount;
+		armyNames = new String[ armyCount ];
+		hostile = new boolean[ armyCount ][ armyCount ];
+		spawnCentreX = new double[ armyCount ];
+		spawnCentreY = new double[ armyCount ];
+		kind = new byte[ armyCount ][];
+		x = new double[ armyCount ][];
+		y = new double[ armyCount ][];
+		health = new double[ armyCount ][];
+		strength = new double[ armyCount ][];
+		speed = new double[ armyCount ][];
+		moveDuration = new double[ armyCount ][];
+	}
+
+	/*******************************************************/
+	//-------------------------SAVE------------------------//
+
+	/** Writes every army of the battle to file, replacing anything already there. */
+	public static void write( Battle battle, File file ) throws IOException {
+		byte[][] names = new byte[ battle.getArmies().size() ][];
+		long length = align( 4 + 4 + 8 + 8 + 4 ) + align( (long) names.length * names.length );
+		for ( int i = 0; i < names.length; ++i ) {
+			ArmyState army = battle.getArmy( i );
+			names[ i ] = army.getArmyName().getBytes( UTF_8 );
+			length += align( 4 + names[ i ].length ) + 8 + 8 + 8 + align( army.size() ) + 8L * DOUBLE_COLUMNS * army.size();
+		}
+		if ( length > Integer.MAX_VALUE )
+			throw new IOException( "Battle too large for one snapshot: " + length + " bytes" );
+
+		FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING );
+		try {
+			MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, length );
+			buffer.order( ByteOrder.LITTLE_ENDIAN );
+			buffer.putInt( MAGIC ).putInt( VERSION ).putLong( battle.getSeed() ).putLong( battle.getTickCount() ).putInt( names.length );
+			pad( buffer );
+			for ( int a = 0; a < names.length; ++a ) {
+				for ( int b = 0; b < names.length; ++b )
+					buffer.put( (byte) ( battle.isHostile( a, b ) ? 1 : 0 ) );
+			}
+			pad( buffer );
+			for ( int i = 0; i < names.length; ++i ) {
+				ArmyState army = battle.getArmy( i );
+				int size = army.size();
+				buffer.putInt( names[ i ].length ).put( names[ i ] );
+				pad( buffer );
+				buffer.putDouble( army.getSpawnCentreX() ).putDouble( army.getSpawnCentreY() ).putInt( size );
+				pad( buffer );
+				buffer.put( army.kind, 0, size );
+				pad( buffer );
+				putColumn( buffer, army.x, size );
+				putColumn( buffer, army.y, size );
+				putColumn( buffer, army.health, size );
+				putColumn( buffer, army.strength, size );
+				putColumn( buffer, army.speed, size );
+				putColumn( buffer, army.moveDuration, size );
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void putColumn( ByteBuffer buffer, double[] column, int size ) {
+		buffer.asDoubleBuffer().put( column, 0, size );
+		buffer.position( buffer.position() + 8 * size );
+	}
+
+	/*******************************************************/
+	//-------------------------LOAD------------------------//
+
+	/** @throws IOException if the file is not a snapshot, is from an unsupported version, or is truncated */
+	public static BattleSnapshot read( File file ) throws IOException {
+		FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+		try {
+			MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+			buffer.order( ByteOrder.LITTLE_ENDIAN );
+			if ( buffer.remaining() < 4 || buffer.getInt() != MAGIC )
+				throw new IOException( file + " is not a battle snapshot" );
+			int version = buffer.getInt();
+			if ( version != VERSION )
+				throw new IOException( file + " is snapshot version " + version + ", this program reads version " + VERSION );
+			long seed = buffer.getLong();
+			long tickCount = buffer.getLong();
+			int armyCount = buffer.getInt();
+			if ( armyCount < 0 )
+				throw new IOException( file + " is corrupt" );
+			pad( buffer );
+			if ( (long) armyCount * armyCount > buffer.remaining() )
+				throw new IOException( file + " is truncated" );
+			BattleSnapshot snapshot = new BattleSnapshot( seed, tickCount, armyCount );
+			for ( int a = 0; a < armyCount; ++a ) {
+				for ( int b = 0; b < armyCount; ++b )
+					snapshot.hostile[ a ][ b ] = buffer.get() != 0;
+				if ( snapshot.hostile[ a ][ a ] )
+					throw new IOException( file + " is corrupt: army " + a + " is hostile to itself" );
+			}
+			for ( int a = 0; a < armyCount; ++a ) {
+				for ( int b = 0; b < a; ++b ) {
+					if ( snapshot.hostile[ a ][ b ] != snapshot.hostile[ b ][ a ] )
+						throw new IOException( file + " is corrupt: armies " + b + " and " + a + " disagree on their hostility" );
+				}
+			}
+			pad( buffer );
+			for ( int i = 0; i < armyCount; ++i ) {
+				int nameLength = buffer.getInt();
+				if ( nameLength < 0 || nameLength > buffer.remaining() )
+					throw new IOException( file + " is corrupt" );
+				byte[] name = new byte[ nameLength ];
+				buffer.get( name );
+				snapshot.armyNames[ i ] = new String( name, UTF_8 );
+				pad( buffer );
+				snapshot.spawnCentreX[ i ] = buffer.getDouble();
+				snapshot.spawnCentreY[ i ] = buffer.getDouble();
+				int size = buffer.getInt();
+				if ( size < 0 || (long) size * ( 1 + 8 * DOUBLE_COLUMNS ) > buffer.remaining() )
+					throw new IOException( file + " is truncated" );
+				pad( buffer );
+				snapshot.kind[ i ] = new byte[ size ];
+				buffer.get( snapshot.kind[ i ] );
+				for ( byte actorKind : snapshot.kind[ i ] ) {
+					if ( actorKind < 0 || actorKind >= ActorKind.COUNT )
+						throw new IOException( file + " is corrupt: unknown actor kind " + actorKind );
+				}
+				pad( buffer );
+				snapshot.x[ i ] = getColumn( buffer, size );
+				snapshot.y[ i ] = getColumn( buffer, size );
+				snapshot.health[ i ] = getColumn( buffer, size );
+				snapshot.strength[ i ] = getColumn( buffer, size );
+				snapshot.speed[ i ] = getColumn( buffer, size );
+				snapshot.moveDuration[ i ] = getColumn( buffer, size );
+			}
+			return snapshot;
+		} catch ( BufferUnderflowException e ) {
+			throw new IOException( file + " is truncated", e );
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static double[] getColumn( ByteBuffer buffer, int size ) {
+		double[] column = new double[ size ];
+		buffer.asDoubleBuffer().get( column );
+		buffer.position( buffer.position() + 8 * size );
+		return column;
+	}
+
+	public int getArmyCount() {
+		return armyNames.length;
+	}
+
+	public String getArmyName( int armyIndex ) {
+		return armyNames[ armyIndex ];
+	}
+
+	public int getSize( int armyIndex ) {
+		return kind[ armyIndex ].length;
+	}
+
+	/** @return the core.ActorKind code of the actor in the slot */
+	public byte getKind( int armyIndex, int slot ) {
+		return kind[ armyIndex ][ slot ];
+	}
+
+	/** Replaces the contents of every army of a headless battle with the snapshot.
+	 *
+	 * @throws IllegalArgumentException if the battle has a different number of armies */
+	public void restore( Battle battle ) {
+		if ( battle.getArmies().size() != getArmyCount() )
+			throw new IllegalArgumentException( "Snapshot has " + getArmyCount() + " armies, battle has " + battle.getArmies().size() );
+		for ( int i = 0; i < getArmyCount(); ++i ) {
+			ArmyState army = battle.getArmy( i );
+			army.clear();
+			army.ensureCapacity( getSize( i ) );
+			for ( int slot = 0; slot < getSize( i ); ++slot )
+				army.add( kind[ i ][ slot ] );
+			applyTo( i, army );
+		}
+		applyHostility( battle );
+		applySeedAndTickCount( battle );
+	}
+
+	/** Overwrites the location, attributes and spawn centre of every actor in an army that already holds actors of the saved kinds, slot for slot
+	 * (e.g. views built for getKind() of each slot), and resets what they are doing. */
+	public void applyTo( int armyIndex, ArmyState army ) {
+		int size = getSize( armyIndex );
+		if ( army.size() != size )
+			throw new IllegalArgumentException( "Snapshot army " + armyIndex + " has " + size + " actors, state has " + army.size() );
+		army.setSpawnCentre( spawnCentreX[ armyIndex ], spawnCentreY[ armyIndex ] );
+		System.arraycopy( x[ armyIndex ], 0, army.x, 0, size );
+		System.arraycopy( y[ armyIndex ], 0, army.y, 0, size );
+		System.arraycopy( x[ armyIndex ], 0, army.previousX, 0, size );
+		System.arraycopy( y[ armyIndex ], 0, army.previousY, 0, size );
+		System.arraycopy( health[ armyIndex ], 0, army.health, 0, size );
+		System.arraycopy( strength[ armyIndex ], 0, army.strength, 0, size );
+		System.arraycopy( speed[ armyIndex ], 0, army.speed, 0, size );
+		System.arraycopy( moveDuration[ armyIndex ], 0, army.moveDuration, 0, size );
+		for ( int slot = 0; slot < size; ++slot ) {
+			army.alive[ slot ] = army.health[ slot ] > 0.0;
+			army.action[ slot ] = ArmyState.ACTION_NONE;
+			++army.actionSerial[ slot ];
+			army.changedAttributes[ slot ] = ArmyState.CHANGED_ALL;
+		}
+		army.syncLiveSet();
+	}
+
+	/** @return whether the two armies (by index in the snapshot) fought each other when it was saved */
+	public boolean isHostile( int a, int b ) {
+		return hostile[ a ][ b ];
+	}
+
+	/** Makes the saved armies hostile to or allied with each other as they were when saved; any army the battle has beyond them is hostile to every
+	 * other. The battle's first getArmyCount() armies must be the saved ones, in order. */
+	public void applyHostility( Battle battle ) {
+		if ( battle.getArmyCount() < getArmyCount() )
+			throw new IllegalArgumentException( "Snapshot has " + getArmyCount() + " armies, battle has " + battle.getArmyCount() );
+		battle.resetHostility();
+		for ( int a = 0; a < getArmyCount(); ++a ) {
+			for ( int b = a + 1; b < getArmyCount(); ++b ) {
+				if ( !hostile[ a ][ b ] )
+					battle.setHostile( a, b, false );
+			}
+		}
+	}
+
+	/** Restores the seed (so streams derived afterwards match the saved battle's) and the tick count. */
+	public void applySeedAndTickCount( Battle battle ) {
+		battle.setSeed( seed );
+		battle.setTickCount( tickCount );
+	}
+
+	private static long align( long length ) {
+		return ( length + 7 ) & ~7L;
+	}
+
+	private static void pad( ByteBuffer buffer ) {
+		buffer.position( (int) align( buffer.position() ) );
+	}
+} // end class BattleSnapshot
@@ -0,0 +1,244 @@
+package core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** Broad-phase collision detection, run once per tick by <i>Battle</i>. Builds an axis-aligned box for every living actor from its location and
+ * strength-based scale and sorts each army's boxes on their left edge. Then, for every pair of armies hostile to each other whose bounds meet, it
+ * sweeps the two sorted runs together along x (sweep-and-prune), so only boxes of opposing armies already overlapping on x are tested on y; actors
+ * of the same army or of allies are never paired up, however closely packed. Every overlapping pair becomes a contact, recorded against both actors
+ * in per-army contact lists (compressed rows: contacts of a slot are a contiguous run). O(N log N) for the sort plus the number of near hostile
+ * pairs; no allocation once the buffers have grown.
+ *
+ * Contacts are packed into a long: army index (position in the Battle) in the high 32 bits, slot in the low 32 bits. */
+public class ContactDetector {
+
+	// One entry per living actor, rebuilt every detect().
+	private double[] minX = new double[ 256 ];
+	private double[] maxX = new double[ 256 ];
+	private double[] minY = new double[ 256 ];
+	private double[] maxY = new double[ 256 ];
+	private int[] entryArmy = new int[ 256 ];
+	private int[] entrySlot = new int[ 256 ];
+	private long[] order = new long[ 256 ]; // sortable left edge in the high bits, entry index in the low bits; sorted within each army's run
+	private int entryCount;
+
+	// Per army: its entries are order[ armyStart[ army ] .. armyStart[ army + 1 ] ), and all its boxes lie within these bounds.
+	private int[] armyStart = new int[ 1 ];
+	private double[] armyMinX = new double[ 0 ];
+	private double[] armyMaxX = new double[ 0 ];
+	private double[] armyMinY = new double[ 0 ];
+	private double[] armyMaxY = new double[ 0 ];
+
+	// Overlapping pairs found by the sweep, as entry indices.
+	private int[] pairFirst = new int[ 256 ];
+	private int[] pairSecond = new int[ 256 ];
+	private int pairCount;
+	private int candidateCount; // pairs the sweep examined
+
+	// Per army: contactStart[army][slot] .. contactStart[army][slot + 1] indexes contacts[army].
+	private int[][] contactStart = new int[ 0 ][];
+	private long[][] contacts = new long[ 0 ][];
+	private int[] slotsDetected = new int[ 0 ]; // army sizes at the last detect()
+
+	/** Finds every contact between actors of hostile armies of the battle, using their current locations; allies pass through each other. */
+	public void detect( Battle battle ) {
+		List<ArmyState> armies = battle.getArmies();
+		buildEntries( armies );
+		for ( int armyIndex = 0; armyIndex < armies.size(); ++armyIndex )
+			Arrays.sort( order, armyStart[ armyIndex ], armyStart[ armyIndex + 1 ] );
+		sweep( battle, armies.size() );
+		buildContactLists( armies );
+	}
+
+	public int getPairCount() {
+		return pairCount;
+	}
+
+	/** @return how many pairs of boxes the latest detect() had to test for overlap: the cost of the sweep, where getPairCount() is its yield */
+	public int getCandidateCount() {
+		return candidateCount;
+	}
+
+	public int getContactCount( int armyIndex, int slot ) {
+		if ( armyIndex >= slotsDetected.length || slot >= slotsDetected[ armyIndex ] )
+			return 0; // joined the battle after the last detect()
+		return contactStart[ armyIndex ][ slot + 1 ] - contactStart[ armyIndex ][ slot ];
+	}
+
+	/** @return the i-th contact (0 &lt;= i &lt; getContactCount()) of the slot, packed as described above */
+	public long getContact( int armyIndex, int slot, int i ) {
+		return contacts[ armyIndex ][ contactStart[ armyIndex ][ slot ] + i ];
+	}
+
+	public static int contactArmy( long contact ) {
+		return (int) ( contact >>> 32 );
+	}
+
+	public static int contactSlot( long contact ) {
+		return (int) contact;
+	}
+
+	private void buildEntries( List<ArmyState> armies ) {
+		int total = 0;
+		for ( ArmyState army : armies )
+			total += army.liveCount;
+		if ( total > minX.length ) {
+			int capacity = Math.max( total, minX.length * 2 );
+			minX = new double[ capacity ];
+			maxX = new double[ capacity ];
+			minY = new double[ capacity ];
+			maxY = new double[ capacity ];
+			entryArmy = new int[ capacity ];
+			entrySlot = new int[ capacity ];
+			order = new long[ capacity ];
+		}
+		int armyCount = armies.size();
+		if ( armyStart.length < armyCount + 1 ) {
+			armyStart = new int[ armyCount + 1 ];
+			armyMinX = new double[ armyCount ];
+			armyMaxX = new double[ armyCount ];
+			armyMinY = new double[ armyCount ];
+			armyMaxY = new double[ armyCount ];
+		}
+		entryCount = 0;
+		for ( int armyIndex = 0; armyIndex < armyCount; ++armyIndex ) {
+			ArmyState army = armies.get( armyIndex );
+			armyStart[ armyIndex ] = entryCount;
+			double boundsMinX = Double.POSITIVE_INFINITY;
+			double boundsMaxX = Double.NEGATIVE_INFINITY;
+			double boundsMinY = Double.POSITIVE_INFINITY;
+			double boundsMaxY = Double.NEGATIVE_INFINITY;
+			for ( int i = 0, n = army.liveCount; i < n; ++i ) {
+				int slot = army.liveSlots[ i ];
+				if ( !army.alive[ slot ] )
+					continue; // died this tick, not yet evicted
+				byte kind = army.kind[ slot ];
+				double scale = army.strength[ slot ] / ActorKind.STRENGTH_SCALE_DIVISOR;
+				double centreX = army.x[ slot ] + ActorKind.centreOffsetX( kind );
+				double centreY = army.y[ slot ] + ActorKind.centreOffsetY( kind );
+				double halfWidth = ActorKind.halfWidth( kind ) * scale;
+				double halfHeight = ActorKind.halfHeight( kind ) * scale;
+				int entry = entryCount++;
+				minX[ entry ] = centreX - halfWidth;
+				maxX[ entry ] = centreX + halfWidth;
+				minY[ entry ] = centreY - halfHeight;
+				maxY[ entry ] = centreY + halfHeight;
+				entryArmy[ entry ] = armyIndex;
+				entrySlot[ entry ] = slot;
+				order[ entry ] = ( (long) sortableBits( minX[ entry ] ) << 32 ) | entry;
+				boundsMinX = Math.min( boundsMinX, minX[ entry ] );
+				boundsMaxX = Math.max( boundsMaxX, maxX[ entry ] );
+				boundsMinY = Math.min( boundsMinY, minY[ entry ] );
+				boundsMaxY = Math.max( boundsMaxY, maxY[ entry ] );
+			}
+			armyMinX[ armyIndex ] = boundsMinX;
+			armyMaxX[ armyIndex ] = boundsMaxX;
+			armyMinY[ armyIndex ] = boundsMinY;
+			armyMaxY[ armyIndex ] = boundsMaxY;
+		}
+		armyStart[ armyCount ] = entryCount;
+	}
+
+	// Sweeps each pair of hostile armies whose bounds meet; pairs of actors from the same army or from allies are never visited.
+	private void sweep( Battle battle, int armyCount ) {
+		pairCount = 0;
+		candidateCount = 0;
+		for ( int first = 0; first < armyCount; ++first ) {
+			for ( int second = first + 1; second < armyCount; ++second ) {
+				if ( !battle.isHostile( first, second ) || !boundsOverlap( first, second ) )
+					continue;
+				sweep( armyStart[ first ], armyStart[ first + 1 ], armyStart[ second ], armyStart[ second + 1 ] );
+			}
+		}
+	}
+
+	private boolean boundsOverlap( int first, int second ) {
+		return armyMinX[ first ] <= armyMaxX[ second ] && armyMinX[ second ] <= armyMaxX[ first ]
+				&& armyMinY[ first ] <= armyMaxY[ second ] && armyMinY[ second ] <= armyMaxY[ first ];
+	}
+
+	// Merges two runs of order, each sorted on left edge: whichever entry comes next is tested against the entries of the other run still to come,
+	// up to the first whose left edge lies beyond its right edge. So every pair of one entry from each run that overlaps on x is tested exactly once.
+	private void sweep( int i, int iEnd, int j, int jEnd ) {
+		while ( i < iEnd && j < jEnd ) {
+			if ( order[ i ] < order[ j ] )
+				sweepFrom( (int) order[ i++ ], j, jEnd );
+			else
+				sweepFrom( (int) order[ j++ ], i, iEnd );
+		}
+	}
+
+	// The cut-off compares the same float keys that were sorted on, so rounding can only make the candidate run longer, never drop an overlapping pair.
+	private void sweepFrom( int a, int from, int end ) {
+		int rightEdge = sortableBits( maxX[ a ] );
+		for ( int k = from; k < end; ++k ) {
+			long key = order[ k ];
+			if ( (int) ( key >> 32 ) > rightEdge )
+				break;
+			int b = (int) key;
+			++candidateCount;
+			if ( minX[ b ] > maxX[ a ] || maxX[ b ] < minX[ a ] || maxY[ a ] < minY[ b ] || maxY[ b ] < minY[ a ] )
+				continue;
+			addPair( a, b );
+		}
+	}
+
+	private void addPair( int a, int b ) {
+		if ( pairCount == pairFirst.length ) {
+			pairFirst = Arrays.copyOf( pairFirst, pairCount * 2 );
+			pairSecond = Arrays.copyOf( pairSecond, pairCount * 2 );
+		}
+		pairFirst[ pairCount ] = a;
+		pairSecond[ pairCount ] = b;
+		++pairCount;
+	}
+
+	// Counting sort of both ends of every pair into per-army compressed rows.
+	private void buildContactLists( List<ArmyState> armies ) {
+		int armyCount = armies.size();
+		if ( contactStart.length < armyCount ) {
+			contactStart = Arrays.copyOf( contactStart, armyCount );
+			contacts = Arrays.copyOf( contacts, armyCount );
+			slotsDetected = Arrays.copyOf( slotsDetected, armyCount );
+		}
+		for ( int armyIndex = 0; armyIndex < armyCount; ++armyIndex ) {
+			int size = armies.get( armyIndex ).size();
+			if ( contactStart[ armyIndex ] == null || contactStart[ armyIndex ].length < size + 2 )
+				contactStart[ armyIndex ] = new int[ Math.max( size + 2, 64 ) ];
+			Arrays.fill( contactStart[ armyIndex ], 0, size + 2, 0 );
+			slotsDetected[ armyIndex ] = size;
+		}
+		// count: contactStart[army][slot + 2] holds the slot's count, so the prefix sum below leaves [slot + 1] as the slot's start
+		for ( int p = 0; p < pairCount; ++p ) {
+			++contactStart[ entryArmy[ pairFirst[ p ] ] ][ entrySlot[ pairFirst[ p ] ] + 2 ];
+			++contactStart[ entryArmy[ pairSecond[ p ] ] ][ entrySlot[ pairSecond[ p ] ] + 2 ];
+		}
+		for ( int armyIndex = 0; armyIndex < armyCount; ++armyIndex ) {
+			int[] start = contactStart[ armyIndex ];
+			int size = slotsDetected[ armyIndex ];
+			for ( int slot = 2; slot < size + 2; ++slot )
+				start[ slot ] += start[ slot - 1 ];
+			int total = start[ size + 1 ];
+			if ( contacts[ armyIndex ] == null || contacts[ armyIndex ].length < total )
+				contacts[ armyIndex ] = new long[ Math.max( total, 64 ) ];
+		}
+		// fill: advancing [slot + 1] from the slot's start to its end, which is where the next slot starts
+		for ( int p = 0; p < pairCount; ++p ) {
+			int a = pairFirst[ p ];
+			int b = pairSecond[ p ];
+			contacts[ entryArmy[ a ] ][ contactStart[ entryArmy[ a ] ][ entrySlot[ a ] + 1 ]++ ] = pack( entryArmy[ b ], entrySlot[ b ] );
+			contacts[ entryArmy[ b ] ][ contactStart[ entryArmy[ b ] ][ entrySlot[ b ] + 1 ]++ ] = pack( entryArmy[ a ], entrySlot[ a ] );
+		}
+	}
+
+	private static long pack( int armyIndex, int slot ) {
+		return ( (long) armyIndex << 32 ) | ( slot & 0xFFFFFFFFL );
+	}
+
+	// Float bits rearranged so that signed int comparison matches numeric order, negative values included.
+	private static int sortableBits( double value ) {
+		int bits = Float.floatToIntBits( (float) value );
+		return bits ^ ( ( bits >> 31 ) & 0x7FFFFFFF );
+	}
+} // end class ContactDetector
@@ -0,0 +1,206 @@
+package core;
+
+import java.util.Arrays;
+
+/** Shared pathfinding for one army: the walking distance from every cell of a coarse navigation grid to the nearest living opponent, of whichever
+ * hostile army, and the neighbour to step to from each cell to get closer. Built by <i>Battle</i> every FLOW_FIELD_INTERVAL ticks with one Dijkstra
+ * search seeded from every opponent at once, so its cost depends on the size of the battlefield rather than on the number of actors (or armies),
+ * and every actor in the army then reads its way around blocked terrain in a bounded number of steps.
+ *
+ * The grid has one cell per CELL_SIZE square of battlefield, walkable if the terrain is walkable at its centre. Moves go to the 8 neighbours, but
+ * never diagonally past a blocked cell, so paths do not cut corners of the coastline. */
+public class FlowField {
+
+	/** Battlefield units per side of a navigation cell. */
+	public static final double CELL_SIZE = 8.0;
+
+	private static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+	private static final float DIAGONAL = (float) Math.sqrt( 2.0 );
+	private static final int MAX_STEPS = 16; // steer() follows the field at most this many cells
+	private static final double DETOUR_TOLERANCE = 1.1; // a field distance within this factor of the straight line means the way is clear
+	private static final double DETOUR_SLACK = 1.5; // cells, for the rounding of locations to cells
+
+	// Neighbour offsets by direction code (odd codes are diagonals); code NONE means stay put.
+	private static final int[] DX = { 1, 1, 0, -1, -1, -1, 0, 1 };
+	private static final int[] DY = { 0, 1, 1, 1, 0, -1, -1, -1 };
+	private static final byte NONE = -1;
+
+	// The grid is stored with a border of blocked cells all round, so a neighbour is always cell + offset[ code ] with no bounds to check.
+	private int columns;
+	private int rows;
+	private int stride; // columns + 2
+	private final int[] offset = new int[ 8 ];
+	private double builtWidth = -1.0; // battlefield size and terrain the walkable cells were taken from
+	private double builtHeight = -1.0;
+	private TerrainMask builtTerrain;
+	private boolean[] walkable = new boolean[ 0 ];
+	private float[] distance = new float[ 0 ]; // in cells, to the nearest opponent
+	private byte[] direction = new byte[ 0 ]; // code of the neighbour one step closer, or NONE
+	private long[] heap = new long[ 0 ]; // Dijkstra queue: float bits of the distance in the high half, cell in the low half
+	private int heapSize;
+
+	/** Recomputes the field of the army: towards every living actor of every army in the battle hostile to it. */
+	public void build( Battle battle, ArmyState army ) {
+		prepareGrid( battle );
+		Arrays.fill( distance, 0, stride * ( rows + 2 ), UNREACHABLE );
+		Arrays.fill( direction, 0, stride * ( rows + 2 ), NONE );
+		heapSize = 0;
+		for ( int i = 0, n = battle.getArmyCount(); i < n; ++i ) {
+			if ( battle.isHostile( army.getBattleIndex(), i ) )
+				seed( battle.getArmy( i ) );
+		}
+		search();
+	}
+
+	// Makes the cell of every living actor of the army a target, at distance 0.
+	private void seed( ArmyState targets ) {
+		for ( int i = 0, n = targets.liveCount(); i < n; ++i ) {
+			int slot = targets.liveSlot( i );
+			if ( !targets.alive[ slot ] )
+				continue;
+			int cell = cellAt( targets.x[ slot ], targets.y[ slot ] );
+			if ( walkable[ cell ] && distance[ cell ] != 0.0f ) {
+				distance[ cell ] = 0.0f;
+				push( 0.0f, cell );
+			}
+		}
+	}
+
+	// Takes the walkable cells from the battle's terrain, again only when the battlefield or its terrain has changed.
+	private void prepareGrid( Battle battle ) {
+		if ( battle.getWidth() == builtWidth && battle.getHeight() == builtHeight && battle.getTerrain() == builtTerrain )
+			return;
+		builtWidth = battle.getWidth();
+		builtHeight = battle.getHeight();
+		builtTerrain = battle.getTerrain();
+		columns = Math.max( 1, (int) Math.ceil( builtWidth / CELL_SIZE ) );
+		rows = Math.max( 1, (int) Math.ceil( builtHeight / CELL_SIZE ) );
+		stride = columns + 2;
+		for ( int code = 0; code < 8; ++code )
+			offset[ code ] = DY[ code ] * stride + DX[ code ];
+		int cellCount = stride * ( rows + 2 );
+		if ( walkable.length < cellCount ) {
+			walkable = new boolean[ cellCount ];
+			distance = new float[ cellCount ];
+			direction = new byte[ cellCount ];
+			heap = new long[ cellCount * 8 + 1 ]; // every cell can be pushed once per neighbour that improves it
+		}
+		Arrays.fill( walkable, false );
+		for ( int row = 0; row < rows; ++row ) {
+			for ( int column = 0; column < columns; ++column )
+				walkable[ ( row + 1 ) * stride + column + 1 ] = battle.isWalkable( ( column + 0.5 ) * CELL_SIZE, ( row + 0.5 ) * CELL_SIZE );
+		}
+	}
+
+	// Dijkstra from every target cell at once. Each cell remembers which neighbour it was last improved from, so once the search is done that
+	// neighbour is its step along a shortest way to the nearest target.
+	private void search() {
+		while ( heapSize > 0 ) {
+			long top = pop();
+			int cell = (int) top;
+			float cellDistance = Float.intBitsToFloat( (int) ( top >>> 32 ) );
+			if ( cellDistance > distance[ cell ] )
+				continue; // stale entry: the cell was reached more cheaply since
+			for ( int code = 0; code < 8; ++code ) {
+				int neighbour = step( cell, code );
+				if ( neighbour < 0 )
+					continue;
+				float newDistance = cellDistance + ( ( code & 1 ) != 0 ? DIAGONAL : 1.0f );
+				if ( newDistance < distance[ neighbour ] ) {
+					distance[ neighbour ] = newDistance;
+					direction[ neighbour ] = (byte) ( ( code + 4 ) & 7 ); // back the way the search came
+					push( newDistance, neighbour );
+				}
+			}
+		}
+	}
+
+	// The walkable neighbour in direction code, or -1: blocked (the border included), or a diagonal squeezing past a blocked cell.
+	private int step( int cell, int code ) {
+		int neighbour = cell + offset[ code ];
+		if ( !walkable[ neighbour ] )
+			return -1;
+		if ( ( code & 1 ) != 0 && ( !walkable[ cell + DX[ code ] ] || !walkable[ cell + DY[ code ] * stride ] ) )
+			return -1;
+		return neighbour;
+	}
+
+	/*******************************************************/
+	//-------------------------STEER-----------------------//
+
+	/** Adjusts a move from (x, y) towards the opponent at location: if the field shows the straight line is blocked, location becomes a waypoint
+	 * further along the field instead, where the rest of the way is clear or MAX_STEPS cells on. Left alone on open ground, or when the field cannot
+	 * help (blocked start, no reachable opponent).
+	 *
+	 * @param location the opponent's location on entry, the place to move to on return */
+	public void steer( double x, double y, double[] location ) {
+		if ( columns == 0 )
+			return;
+		int cell = cellAt( x, y );
+		if ( distance[ cell ] == UNREACHABLE || isClear( cell, location ) )
+			return;
+		for ( int steps = 0; steps < MAX_STEPS; ++steps ) {
+			byte code = direction[ cell ];
+			if ( code == NONE )
+				break;
+			cell += offset[ code ];
+			if ( distance[ cell ] == 0.0f || isClear( cell, location ) )
+				break;
+		}
+		location[ 0 ] = ( cell % stride - 0.5 ) * CELL_SIZE;
+		location[ 1 ] = ( cell / stride - 0.5 ) * CELL_SIZE;
+	}
+
+	// Whether walking the field from the cell would be no longer than the straight line to the location, i.e. nothing is in the way.
+	private boolean isClear( int cell, double[] location ) {
+		double dx = location[ 0 ] / CELL_SIZE - ( cell % stride - 0.5 );
+		double dy = location[ 1 ] / CELL_SIZE - ( cell / stride - 0.5 );
+		return distance[ cell ] <= Math.sqrt( dx * dx + dy * dy ) * DETOUR_TOLERANCE + DETOUR_SLACK;
+	}
+
+	/** @return walking distance in battlefield units from the location to the nearest opponent, or infinity if none can be reached */
+	public double getDistance( double x, double y ) {
+		return columns == 0 ? Double.POSITIVE_INFINITY : distance[ cellAt( x, y ) ] * CELL_SIZE;
+	}
+
+	private int cellAt( double x, double y ) {
+		int column = Math.min( columns - 1, Math.max( 0, (int) ( x / CELL_SIZE ) ) );
+		int row = Math.min( rows - 1, Math.max( 0, (int) ( y / CELL_SIZE ) ) );
+		return ( row + 1 ) * stride + column + 1;
+	}
+
+	/*******************************************************/
+	//-------------------------HEAP------------------------//
+
+	private void push( float cellDistance, int cell ) {
+		long entry = ( (long) Float.floatToIntBits( cellDistance ) << 32 ) | cell; // non-negative floats order like their bits
+		int i = heapSize++;
+		while ( i > 0 ) {
+			int parent = ( i - 1 ) >>> 1;
+			if ( heap[ parent ] <= entry )
+				break;
+			heap[ i ] = heap[ parent ];
+			i = parent;
+		}
+		heap[ i ] = entry;
+	}
+
+	private long pop() {
+		long top = heap[ 0 ];
+		long last = heap[ --heapSize ];
+		int i = 0;
+		for ( ;; ) {
+			int child = 2 * i + 1;
+			if ( child >= heapSize )
+				break;
+			if ( child + 1 < heapSize && heap[ child + 1 ] < heap[ child ] )
+				++child;
+			if ( heap[ child ] >= last )
+				break;
+			heap[ i ] = heap[ child ];
+			i = child;
+		}
+		heap[ i ] = last;
+		return top;
+	}
+} // end class FlowField
@@ -0,0 +1,416 @@
+package core;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Plays back a file written by <i>ReplayRecorder</i>: next() decodes one frame at a time into the reader's own copy of every army, and applyTo()
+ * copies that into an <i>ArmyState</i> for the renderers. No actor logic runs, so frames can be read as fast as they decode and several frames can
+ * be read between two applyTo() calls to play at any speed. seek() jumps to the keyframe at or before a tick, found through an index of keyframe
+ * offsets built when the file is opened. The armies are those named in the header followed by any named in army frames; an army has no actors
+ * before the first keyframe that includes it.
+ *
+ * A recording that was never closed (the program stopped mid-battle) plays up to its last complete frame. */
+public class ReplayReader {
+
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+	private final FileChannel channel;
+	private final ByteBuffer input = ByteBuffer.allocateDirect( 64 * 1024 ).order( ByteOrder.LITTLE_ENDIAN );
+	private long inputStart; // file offset of input's first byte
+	private long end; // file offset just past the last complete frame
+	private final long seed;
+	private String[] armyNames; // from the header, then from the army frames as the index finds them
+
+	// Keyframe index: tick and file offset of every keyframe, in file order.
+	private long[] keyframeTick = new long[ 64 ];
+	private long[] keyframeOffset = new long[ 64 ];
+	private int keyframeCount;
+	private long lastTick = -1L;
+
+	// The battle as of the latest frame, per army, in the recorder's fixed point.
+	private final int[] size;
+	private final byte[][] kind;
+	private final int[][] x;
+	private final int[][] y;
+	private final int[][] health;
+	private final int[][] strength;
+	private final boolean[][] alive;
+	private int keyframeArmies; // armies in the latest keyframe, and so in the deltas after it
+	private long tick = -1L;
+	private boolean keyframe;
+	private boolean haveBase; // a keyframe has been decoded since the last seek, so deltas have something to apply to
+	private boolean jumped; // the latest frame does not follow on from the one applied before it
+
+	/** Opens a replay and indexes its keyframes.
+	 *
+	 * @throws IOException if the file is not a replay or is from an unsupported version */
+	public ReplayReader( File file ) throws IOException {
+		channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+		try {
+			end = channel.size();
+			fill( 0L );
+			if ( readInt() != ReplayRecorder.MAGIC )
+				throw new IOException( file + " is not a battle replay" );
+			int version = readInt();
+			if ( version != ReplayRecorder.VERSION )
+				throw new IOException( file + " is replay version " + version + ", this program reads version " + ReplayRecorder.VERSION );
+			seed = readLong();
+			int armyCount = readInt();
+			if ( armyCount < 0 || armyCount > 1024 )
+				throw new IOException( file + " is corrupt" );
+			armyNames = new String[ armyCount ];
+			for ( int i = 0; i < armyCount; ++i ) {
+				armyNames[ i ] = readName( readInt() );
+				if ( armyNames[ i ] == null )
+					throw new IOException( file + " is corrupt" );
+			}
+			indexFrames();
+			armyCount = armyNames.length;
+			size = new int[ armyCount ];
+			kind = new byte[ armyCount ][ 0 ];
+			x = new int[ armyCount ][ 0 ];
+			y = new int[ armyCount ][ 0 ];
+			health = new int[ armyCount ][ 0 ];
+			strength = new int[ armyCount ][ 0 ];
+			alive = new boolean[ armyCount ][ 0 ];
+		} catch ( EOFException e ) {
+			channel.close();
+			throw new IOException( file + " is truncated", e );
+		} catch ( IOException e ) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	// Walks the frame headers, skipping the payloads, to find every keyframe, the names in the army frames and the end of the last complete frame.
+	private void indexFrames() throws IOException {
+		long fileSize = end;
+		long frameStart = position();
+		try {
+			while ( frameStart < fileSize ) {
+				byte type = readByte();
+				long frameTick = readVarLong();
+				long payloadLength = readVarLong();
+				long frameEnd = position() + payloadLength;
+				if ( frameEnd > fileSize || ( type != ReplayRecorder.FRAME_KEY && type != ReplayRecorder.FRAME_DELTA && type != ReplayRecorder.FRAME_ARMY ) )
+					break;
+				if ( type == ReplayRecorder.FRAME_ARMY ) {
+					String name = readName( readVarInt() );
+					if ( name == null || armyNames.length == 1024 )
+						throw new IOException( "Replay army frame at tick " + frameTick + " is corrupt" );
+					armyNames = Arrays.copyOf( armyNames, armyNames.length + 1 );
+					armyNames[ armyNames.length - 1 ] = name;
+				}
+				if ( type == ReplayRecorder.FRAME_KEY ) {
+					if ( keyframeCount == keyframeTick.length ) {
+						keyframeTick = Arrays.copyOf( keyframeTick, keyframeCount * 2 );
+						keyframeOffset = Arrays.copyOf( keyframeOffset, keyframeCount * 2 );
+					}
+					keyframeTick[ keyframeCount ] = frameTick;
+					keyframeOffset[ keyframeCount ] = frameStart;
+					++keyframeCount;
+				}
+				lastTick = frameTick;
+				frameStart = frameEnd;
+				skipTo( frameStart );
+			}
+		} catch ( EOFException e ) {
+			// the recording was cut short in the middle of a frame header
+		}
+		end = frameStart;
+		fill( keyframeCount > 0 ? keyframeOffset[ 0 ] : end );
+	}
+
+	// Reads a UTF-8 name of the given length, or returns null if the length is implausible.
+	private String readName( int nameLength ) throws IOException {
+		if ( nameLength < 0 || nameLength > 64 * 1024 )
+			return null;
+		byte[] name = new byte[ nameLength ];
+		for ( int i = 0; i < nameLength; ++i )
+			name[ i ] = readByte();
+		return new String( name, UTF_8 );
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/** @return armies in the whole replay, including any that join part way through */
+	public int getArmyCount() {
+		return armyNames.length;
+	}
+
+	public String getArmyName( int armyIndex ) {
+		return armyNames[ armyIndex ];
+	}
+
+	/** @return tick of the first keyframe, where playback starts, or -1 if the replay holds none */
+	public long getFirstTick() {
+		return keyframeCount > 0 ? keyframeTick[ 0 ] : -1L;
+	}
+
+	/** @return tick of the last complete frame, or -1 if there is none */
+	public long getLastTick() {
+		return lastTick;
+	}
+
+	/*******************************************************/
+	//-------------------------PLAY------------------------//
+
+	/** Decodes the next frame. Deltas read before the first keyframe after a seek are skipped, as are army frames (the armies are known once the
+	 * replay is opened).
+	 *
+	 * @return false at the end of the replay */
+	public boolean next() throws IOException {
+		for ( ;; ) {
+			long frameStart = position();
+			if ( frameStart >= end )
+				return false;
+			byte type = readByte();
+			long frameTick = readVarLong();
+			long payloadLength = readVarLong();
+			long frameEnd = position() + payloadLength;
+			if ( type == ReplayRecorder.FRAME_ARMY || ( type == ReplayRecorder.FRAME_DELTA && !haveBase ) ) {
+				skipTo( frameEnd );
+				continue;
+			}
+			if ( tick < 0L || frameTick != tick + 1 )
+				jumped = true; // first frame, or frames were dropped while recording
+			tick = frameTick;
+			keyframe = type == ReplayRecorder.FRAME_KEY;
+			if ( keyframe ) {
+				decodeKey();
+				haveBase = true;
+			} else
+				decodeDelta();
+			if ( position() != frameEnd )
+				throw new IOException( "Replay frame at tick " + frameTick + " is corrupt" );
+			return true;
+		}
+	}
+
+	/** Positions the replay so that next() reads the last keyframe at or before the tick; the caller reads on from there until getTick() reaches it. */
+	public void seek( long targetTick ) throws IOException {
+		int found = 0;
+		while ( found + 1 < keyframeCount && keyframeTick[ found + 1 ] <= targetTick )
+			++found;
+		fill( keyframeCount > 0 ? keyframeOffset[ found ] : end );
+		haveBase = false;
+		tick = -1L;
+	}
+
+	/** @return tick of the latest frame read, or -1 before the first */
+	public long getTick() {
+		return tick;
+	}
+
+	public boolean isKeyframe() {
+		return keyframe;
+	}
+
+	/** @return number of actors in the army as of the latest frame */
+	public int getSize( int armyIndex ) {
+		return size[ armyIndex ];
+	}
+
+	/** @return the core.ActorKind code of the actor in the slot */
+	public byte getKind( int armyIndex, int slot ) {
+		return kind[ armyIndex ][ slot ];
+	}
+
+	/** @return whether the state holds actors of the same kinds, slot for slot, as the army in the latest frame, so that applyTo() can be used */
+	public boolean matches( int armyIndex, ArmyState army ) {
+		int armySize = size[ armyIndex ];
+		if ( army.size() != armySize )
+			return false;
+		for ( int slot = 0; slot < armySize; ++slot ) {
+			if ( army.kind[ slot ] != kind[ armyIndex ][ slot ] )
+				return false;
+		}
+		return true;
+	}
+
+	/** Moves every actor of the state to where the latest frame has it, with its health and strength, keeping its old location as the previous one
+	 * so that renderers interpolate between the two (unless the replay jumped, e.g. after a seek). The state must match() the frame. */
+	public void applyTo( int armyIndex, ArmyState army ) {
+		if ( !matches( armyIndex, army ) )
+			throw new IllegalArgumentException( "Replay army " + armyIndex + " does not match " + army.getArmyName() );
+		int[] fixedX = x[ armyIndex ];
+		int[] fixedY = y[ armyIndex ];
+		int[] fixedHealth = health[ armyIndex ];
+		int[] fixedStrength = strength[ armyIndex ];
+		boolean[] isAlive = alive[ armyIndex ];
+		for ( int slot = 0, n = size[ armyIndex ]; slot < n; ++slot ) {
+			double newX = fixedX[ slot ] / ReplayRecorder.POSITION_SCALE;
+			double newY = fixedY[ slot ] / ReplayRecorder.POSITION_SCALE;
+			army.previousX[ slot ] = jumped ? newX : army.x[ slot ];
+			army.previousY[ slot ] = jumped ? newY : army.y[ slot ];
+			army.moveTo( slot, newX, newY );
+			double newHealth = fixedHealth[ slot ] / ReplayRecorder.ATTRIBUTE_SCALE;
+			double newStrength = fixedStrength[ slot ] / ReplayRecorder.ATTRIBUTE_SCALE;
+			if ( newHealth != army.health[ slot ] || isAlive[ slot ] != army.alive[ slot ] ) {
+				army.health[ slot ] = newHealth;
+				army.alive[ slot ] = isAlive[ slot ];
+				army.changedAttributes[ slot ] |= ArmyState.CHANGED_HEALTH;
+				army.syncLiveSlot( slot );
+			}
+			if ( newStrength != army.strength[ slot ] ) {
+				army.strength[ slot ] = newStrength;
+				army.changedAttributes[ slot ] |= ArmyState.CHANGED_STRENGTH;
+			}
+			army.action[ slot ] = ArmyState.ACTION_NONE; // not recorded: nothing rotates during playback
+		}
+	}
+
+	/** Call once every army has been given the latest frame: the next applyTo() interpolates from here. */
+	public void applied() {
+		jumped = false;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/*******************************************************/
+	//------------------------DECODE-----------------------//
+
+	private void decodeKey() throws IOException {
+		keyframeArmies = readVarInt();
+		if ( keyframeArmies < 0 || keyframeArmies > size.length )
+			throw new IOException( "Replay keyframe at tick " + tick + " is corrupt" );
+		for ( int armyIndex = 0; armyIndex < size.length; ++armyIndex ) {
+			if ( armyIndex >= keyframeArmies ) {
+				size[ armyIndex ] = 0; // not yet in the battle
+				continue;
+			}
+			int armySize = readVarInt();
+			if ( armySize < 0 || armySize * 6L > end - position() ) // a slot takes at least 6 bytes
+				throw new IOException( "Replay keyframe at tick " + tick + " is corrupt" );
+			ensureSlots( armyIndex, armySize );
+			size[ armyIndex ] = armySize;
+			for ( int slot = 0; slot < armySize; ++slot ) {
+				byte actorKind = readByte();
+				if ( actorKind < 0 || actorKind >= ActorKind.COUNT )
+					throw new IOException( "Replay keyframe at tick " + tick + " has unknown actor kind " + actorKind );
+				kind[ armyIndex ][ slot ] = actorKind;
+				alive[ armyIndex ][ slot ] = readByte() != 0;
+				x[ armyIndex ][ slot ] = ReplayRecorder.unzigzag( readVarInt() );
+				y[ armyIndex ][ slot ] = ReplayRecorder.unzigzag( readVarInt() );
+				health[ armyIndex ][ slot ] = readVarInt();
+				strength[ armyIndex ][ slot ] = readVarInt();
+			}
+		}
+		jumped = true; // sizes or kinds may have changed under the views
+	}
+
+	private void decodeDelta() throws IOException {
+		for ( int armyIndex = 0; armyIndex < keyframeArmies; ++armyIndex ) {
+			int slot = -1;
+			for ( int step = readVarInt(); step != 0; step = readVarInt() ) {
+				slot += step;
+				if ( step < 0 || slot >= size[ armyIndex ] )
+					throw new IOException( "Replay frame at tick " + tick + " is corrupt" );
+				int flags = readByte();
+				if ( ( flags & ReplayRecorder.CHANGED_X ) != 0 )
+					x[ armyIndex ][ slot ] += ReplayRecorder.unzigzag( readVarInt() );
+				if ( ( flags & ReplayRecorder.CHANGED_Y ) != 0 )
+					y[ armyIndex ][ slot ] += ReplayRecorder.unzigzag( readVarInt() );
+				if ( ( flags & ReplayRecorder.CHANGED_HEALTH ) != 0 )
+					health[ armyIndex ][ slot ] += ReplayRecorder.unzigzag( readVarInt() );
+				if ( ( flags & ReplayRecorder.CHANGED_STRENGTH ) != 0 )
+					strength[ armyIndex ][ slot ] += ReplayRecorder.unzigzag( readVarInt() );
+				if ( ( flags & ReplayRecorder.CHANGED_ALIVE ) != 0 )
+					alive[ armyIndex ][ slot ] = !alive[ armyIndex ][ slot ];
+			}
+		}
+	}
+
+	private void ensureSlots( int armyIndex, int armySize ) {
+		if ( kind[ armyIndex ].length >= armySize )
+			return;
+		int capacity = Math.max( armySize, 64 );
+		kind[ armyIndex ] = new byte[ capacity ];
+		x[ armyIndex ] = new int[ capacity ];
+		y[ armyIndex ] = new int[ capacity ];
+		health[ armyIndex ] = new int[ capacity ];
+		strength[ armyIndex ] = new int[ capacity ];
+		alive[ armyIndex ] = new boolean[ capacity ];
+	}
+
+	/*******************************************************/
+	//-------------------------INPUT-----------------------//
+
+	private long position() {
+		return inputStart + input.position();
+	}
+
+	// Refills the input buffer from the given file offset.
+	private void fill( long offset ) throws IOException {
+		input.clear();
+		inputStart = offset;
+		while ( input.hasRemaining() && channel.read( input, offset + input.position() ) > 0 ) {
+			// read until the buffer is full or the file ends
+		}
+		input.flip();
+	}
+
+	// Moves on to a later file offset, reading from the file only if it lies beyond the buffer.
+	private void skipTo( long offset ) throws IOException {
+		if ( offset >= inputStart && offset <= inputStart + input.limit() )
+			input.position( (int) ( offset - inputStart ) );
+		else
+			fill( offset );
+	}
+
+	private void require( int count ) throws IOException {
+		if ( input.remaining() < count ) {
+			fill( position() );
+			if ( input.remaining() < count )
+				throw new EOFException();
+		}
+	}
+
+	private byte readByte() throws IOException {
+		require( 1 );
+		return input.get();
+	}
+
+	private int readInt() throws IOException {
+		require( 4 );
+		return input.getInt();
+	}
+
+	private long readLong() throws IOException {
+		require( 8 );
+		return input.getLong();
+	}
+
+	private int readVarInt() throws IOException {
+		int value = 0;
+		for ( int shift = 0; shift < 35; shift += 7 ) {
+			byte b = readByte();
+			value |= ( b & 0x7F ) << shift;
+			if ( b >= 0 )
+				return value;
+		}
+		throw new IOException( "Replay varint is too long" );
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0L;
+		for ( int shift = 0; shift < 70; shift += 7 ) {
+			byte b = readByte();
+			value |= (long) ( b & 0x7F ) << shift;
+			if ( b >= 0 )
+				return value;
+		}
+		throw new IOException( "Replay varint is too long" );
+	}
+} // end class ReplayReader
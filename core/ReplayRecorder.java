@@ -0,0 +1,427 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/** Records a battle, tick by tick, to an append-only replay file that <i>ReplayReader</i> can play back without running any actor logic. Attach it
+ * with Battle.setRecorder(): every tick then appends one frame holding what changed since the frame before, and every KEYFRAME_INTERVAL ticks (or
+ * whenever an army changes size) a keyframe holding everything, so playback can start or seek from any keyframe. The header names the armies the
+ * battle had when recording began; an army that joins later is named in an army frame, and recorded from the keyframe that follows it.
+ *
+ * Frames are encoded on the ticking thread into a reused buffer and copied into a fixed pool of blocks; a background thread writes full blocks to
+ * the file and hands them back. Encoding allocates nothing per tick once the buffers have grown to the battle, and the ticking thread never waits for the
+ * disk: if the writer falls so far behind that the pool has no room for a frame, the frame is dropped and the next one is a keyframe.
+ *
+ * File layout, little-endian header then varint-packed frames:
+ * <pre>
+ * header    int MAGIC, int VERSION, long seed, int armyCount, per army (int nameLength, UTF-8 name)
+ * frame     byte FRAME_KEY, FRAME_DELTA or FRAME_ARMY, varint tick, varint payloadLength, payload
+ * army      varint nameLength, UTF-8 name
+ * key       varint armyCount, per army: varint size, per slot (byte kind, byte alive, zigzag x, zigzag y, varint health, varint strength)
+ * delta     per army in the last keyframe: per changed slot (varint gap + 1, byte CHANGED_ flags, zigzag change of each flagged value), varint 0
+ * </pre>
+ * Locations and attributes are stored in fixed point, 1/POSITION_SCALE and 1/ATTRIBUTE_SCALE units; gap is the number of unchanged slots skipped. */
+public class ReplayRecorder {
+
+	public static final int MAGIC = 0x48425250; // "HBRP"
+	public static final int VERSION = 1;
+
+	/** Ticks between keyframes: 5 seconds of battle. */
+	public static final int KEYFRAME_INTERVAL = 300;
+	public static final int DEFAULT_BUFFER_SIZE = 16 * 1024 * 1024;
+
+	static final byte FRAME_KEY = 1;
+	static final byte FRAME_DELTA = 2;
+	static final byte FRAME_ARMY = 3;
+	static final double POSITION_SCALE = 16.0;
+	static final double ATTRIBUTE_SCALE = 16.0;
+	static final int CHANGED_X = 1;
+	static final int CHANGED_Y = 2;
+	static final int CHANGED_HEALTH = 4;
+	static final int CHANGED_STRENGTH = 8;
+	static final int CHANGED_ALIVE = 16;
+
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final Block END = new Block( 0 ); // queued by close(): the writer stops once it reaches it
+
+	private final FileChannel channel;
+	private final ArrayBlockingQueue<Block> free; // empty blocks, ready for the ticking thread
+	private final ArrayBlockingQueue<Block> filled; // blocks waiting for the writer, in file order
+	private final Thread writer;
+	private int armyCount; // armies named so far, in the header or an army frame; each frame records this many
+	private volatile IOException failure;
+	private Block current; // block being filled by the ticking thread, or null
+	private boolean closed;
+
+	// Encoding, on the ticking thread only.
+	private byte[] frame = new byte[ 4096 ];
+	private int frameLength;
+	private final byte[] frameHeader = new byte[ 1 + 10 + 5 ];
+	private int[] lastSize = new int[ 0 ]; // per army: the values in the last frame written, to take the changes from
+	private int[][] lastX = new int[ 0 ][];
+	private int[][] lastY = new int[ 0 ][];
+	private int[][] lastHealth = new int[ 0 ][];
+	private int[][] lastStrength = new int[ 0 ][];
+	private boolean[][] lastAlive = new boolean[ 0 ][];
+	private boolean keyframeDue = true;
+	private long lastKeyframeTick;
+	private long framesWritten;
+	private long framesDropped;
+
+	/** Opens the file, replacing anything already there, writes the header for the battle's armies and starts the writer thread. */
+	public ReplayRecorder( File file, Battle battle ) throws IOException {
+		this( file, battle, DEFAULT_BUFFER_SIZE );
+	}
+
+	/** @param bufferSize bytes of frames that may wait for the disk; must comfortably hold a keyframe (about 12 bytes an actor) */
+	public ReplayRecorder( File file, Battle battle, int bufferSize ) throws IOException {
+		int blockCount = Math.max( 2, bufferSize / BLOCK_SIZE );
+		free = new ArrayBlockingQueue<Block>( blockCount );
+		filled = new ArrayBlockingQueue<Block>( blockCount + 1 );
+		for ( int i = 0; i < blockCount; ++i )
+			free.add( new Block( BLOCK_SIZE ) );
+		armyCount = battle.getArmyCount();
+		channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+		try {
+			writeHeader( battle );
+		} catch ( IOException e ) {
+			channel.close();
+			throw e;
+		}
+		writer = new Thread( new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "Replay writer" );
+		writer.setDaemon( true );
+		writer.start();
+	}
+
+	private void writeHeader( Battle battle ) throws IOException {
+		byte[][] names = new byte[ armyCount ][];
+		int length = 4 + 4 + 8 + 4;
+		for ( int i = 0; i < armyCount; ++i ) {
+			names[ i ] = battle.getArmy( i ).getArmyName().getBytes( UTF_8 );
+			length += 4 + names[ i ].length;
+		}
+		ByteBuffer header = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+		header.putInt( MAGIC ).putInt( VERSION ).putLong( battle.getSeed() ).putInt( armyCount );
+		for ( byte[] name : names )
+			header.putInt( name.length ).put( name );
+		header.flip();
+		while ( header.hasRemaining() )
+			channel.write( header );
+	}
+
+	/*******************************************************/
+	//------------------------RECORD-----------------------//
+
+	/** Appends every army as it stands after the battle's latest tick, naming first any that has joined since the last frame. Called by
+	 * Battle.tick(). */
+	public void record( Battle battle ) {
+		if ( closed )
+			return;
+		long tick = battle.getTickCount();
+		while ( armyCount < battle.getArmyCount() ) {
+			if ( !enqueueArmy( tick, battle.getArmy( armyCount ).getArmyName() ) ) {
+				++framesDropped;
+				keyframeDue = true;
+				return;
+			}
+			++armyCount;
+			keyframeDue = true; // deltas only cover the armies of the keyframe before them
+		}
+		ensureArmies( armyCount );
+		boolean keyframe = keyframeDue || tick - lastKeyframeTick >= KEYFRAME_INTERVAL;
+		for ( int i = 0; i < armyCount && !keyframe; ++i )
+			keyframe = battle.getArmy( i ).size() != lastSize[ i ];
+		frameLength = 0;
+		if ( keyframe ) {
+			ensureFrame( 5 );
+			putVarInt( armyCount );
+		}
+		for ( int i = 0; i < armyCount; ++i ) {
+			if ( keyframe )
+				encodeKey( i, battle.getArmy( i ) );
+			else
+				encodeDelta( i, battle.getArmy( i ) );
+		}
+		if ( !enqueue( keyframe ? FRAME_KEY : FRAME_DELTA, tick ) ) {
+			++framesDropped;
+			keyframeDue = true; // the readers lost the base the next delta would build on
+			return;
+		}
+		++framesWritten;
+		if ( keyframe ) {
+			keyframeDue = false;
+			lastKeyframeTick = tick;
+			handOver(); // so that a recording cut short still ends on a recent keyframe
+		}
+	}
+
+	// Names an army that has joined the battle since the last frame.
+	private boolean enqueueArmy( long tick, String name ) {
+		byte[] bytes = name.getBytes( UTF_8 );
+		frameLength = 0;
+		ensureFrame( 5 + bytes.length );
+		putVarInt( bytes.length );
+		System.arraycopy( bytes, 0, frame, frameLength, bytes.length );
+		frameLength += bytes.length;
+		return enqueue( FRAME_ARMY, tick );
+	}
+
+	private void encodeKey( int armyIndex, ArmyState army ) {
+		int size = army.size();
+		ensureSlots( armyIndex, size );
+		lastSize[ armyIndex ] = size;
+		ensureFrame( 10 + 32 * size );
+		putVarInt( size );
+		int[] x = lastX[ armyIndex ];
+		int[] y = lastY[ armyIndex ];
+		int[] health = lastHealth[ armyIndex ];
+		int[] strength = lastStrength[ armyIndex ];
+		boolean[] alive = lastAlive[ armyIndex ];
+		for ( int slot = 0; slot < size; ++slot ) {
+			x[ slot ] = toFixed( army.x[ slot ], POSITION_SCALE );
+			y[ slot ] = toFixed( army.y[ slot ], POSITION_SCALE );
+			health[ slot ] = toFixed( army.health[ slot ], ATTRIBUTE_SCALE );
+			strength[ slot ] = toFixed( army.strength[ slot ], ATTRIBUTE_SCALE );
+			alive[ slot ] = army.alive[ slot ];
+			frame[ frameLength++ ] = army.kind[ slot ];
+			frame[ frameLength++ ] = (byte) ( alive[ slot ] ? 1 : 0 );
+			putVarInt( zigzag( x[ slot ] ) );
+			putVarInt( zigzag( y[ slot ] ) );
+			putVarInt( health[ slot ] );
+			putVarInt( strength[ slot ] );
+		}
+	}
+
+	// Writes only the slots that changed; the gap before each one is counted from the previous changed slot.
+	private void encodeDelta( int armyIndex, ArmyState army ) {
+		int[] x = lastX[ armyIndex ];
+		int[] y = lastY[ armyIndex ];
+		int[] health = lastHealth[ armyIndex ];
+		int[] strength = lastStrength[ armyIndex ];
+		boolean[] alive = lastAlive[ armyIndex ];
+		int previousChanged = -1;
+		for ( int slot = 0, n = army.size(); slot < n; ++slot ) {
+			int newX = toFixed( army.x[ slot ], POSITION_SCALE );
+			int newY = toFixed( army.y[ slot ], POSITION_SCALE );
+			int newHealth = toFixed( army.health[ slot ], ATTRIBUTE_SCALE );
+			int newStrength = toFixed( army.strength[ slot ], ATTRIBUTE_SCALE );
+			int flags = 0;
+			if ( newX != x[ slot ] )
+				flags |= CHANGED_X;
+			if ( newY != y[ slot ] )
+				flags |= CHANGED_Y;
+			if ( newHealth != health[ slot ] )
+				flags |= CHANGED_HEALTH;
+			if ( newStrength != strength[ slot ] )
+				flags |= CHANGED_STRENGTH;
+			if ( army.alive[ slot ] != alive[ slot ] )
+				flags |= CHANGED_ALIVE;
+			if ( flags == 0 )
+				continue;
+			ensureFrame( 5 + 1 + 4 * 5 + 5 );
+			putVarInt( slot - previousChanged ); // gap + 1, so that 0 can end the list
+			previousChanged = slot;
+			frame[ frameLength++ ] = (byte) flags;
+			if ( ( flags & CHANGED_X ) != 0 )
+				putVarInt( zigzag( newX - x[ slot ] ) );
+			if ( ( flags & CHANGED_Y ) != 0 )
+				putVarInt( zigzag( newY - y[ slot ] ) );
+			if ( ( flags & CHANGED_HEALTH ) != 0 )
+				putVarInt( zigzag( newHealth - health[ slot ] ) );
+			if ( ( flags & CHANGED_STRENGTH ) != 0 )
+				putVarInt( zigzag( newStrength - strength[ slot ] ) );
+			x[ slot ] = newX;
+			y[ slot ] = newY;
+			health[ slot ] = newHealth;
+			strength[ slot ] = newStrength;
+			alive[ slot ] = army.alive[ slot ];
+		}
+		ensureFrame( 5 );
+		putVarInt( 0 );
+	}
+
+	/** @return frames appended so far */
+	public long getFramesWritten() {
+		return framesWritten;
+	}
+
+	/** @return frames lost because the writer had fallen behind (each one is followed by a keyframe) */
+	public long getFramesDropped() {
+		return framesDropped;
+	}
+
+	/*******************************************************/
+	//-------------------------BUFFER----------------------//
+
+	// Copies the frame header and the encoded payload into blocks, if they all fit in the space not yet claimed by the writer.
+	private boolean enqueue( byte type, long tick ) {
+		int headerLength = 0;
+		frameHeader[ headerLength++ ] = type;
+		headerLength = putVarLong( frameHeader, headerLength, tick );
+		headerLength = putVarLong( frameHeader, headerLength, frameLength );
+		long needed = headerLength + frameLength;
+		long available = ( current == null ? 0 : BLOCK_SIZE - current.length ) + (long) free.size() * BLOCK_SIZE; // only this thread takes from free
+		if ( needed > available )
+			return false;
+		append( frameHeader, headerLength );
+		append( frame, frameLength );
+		return true;
+	}
+
+	private void append( byte[] bytes, int length ) {
+		int offset = 0;
+		while ( offset < length ) {
+			if ( current == null )
+				current = free.poll();
+			int count = Math.min( length - offset, BLOCK_SIZE - current.length );
+			System.arraycopy( bytes, offset, current.data, current.length, count );
+			current.length += count;
+			offset += count;
+			if ( current.length == BLOCK_SIZE )
+				handOver();
+		}
+	}
+
+	private void handOver() {
+		if ( current != null && current.length > 0 ) {
+			filled.add( current ); // never full: it can hold every block there is
+			current = null;
+		}
+	}
+
+	// Writer thread: writes blocks in order and returns them to the pool, until it reaches END.
+	private void drain() {
+		try {
+			for ( ;; ) {
+				Block block = filled.take();
+				if ( block == END )
+					break;
+				if ( failure == null ) { // after a failure, keep recycling so that the ticking thread merely drops frames
+					try {
+						block.buffer.clear().limit( block.length );
+						while ( block.buffer.hasRemaining() )
+							channel.write( block.buffer );
+					} catch ( IOException e ) {
+						failure = e;
+					}
+				}
+				block.length = 0;
+				free.add( block );
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				channel.close();
+			} catch ( IOException e ) {
+				if ( failure == null )
+					failure = e;
+			}
+		}
+	}
+
+	/** Stops recording: waits for every frame appended so far to reach the file, then closes it. Call on the ticking thread (or once it has stopped).
+	 *
+	 * @throws IOException if any block could not be written */
+	public void close() throws IOException {
+		if ( closed )
+			return;
+		closed = true;
+		handOver();
+		filled.add( END );
+		try {
+			writer.join();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IOException( "Interrupted while closing the replay file", e );
+		}
+		if ( failure != null )
+			throw failure;
+	}
+
+	/** One fixed-size chunk of the file, filled by the ticking thread and written by the writer. */
+	private static final class Block {
+		final byte[] data;
+		final ByteBuffer buffer;
+		int length;
+
+		Block( int size ) {
+			data = new byte[ size ];
+			buffer = ByteBuffer.wrap( data );
+		}
+	}
+
+	/*******************************************************/
+	//-----------------------ENCODING----------------------//
+
+	private void ensureArmies( int armyCount ) {
+		if ( lastSize.length >= armyCount )
+			return;
+		lastSize = Arrays.copyOf( lastSize, armyCount );
+		lastX = Arrays.copyOf( lastX, armyCount );
+		lastY = Arrays.copyOf( lastY, armyCount );
+		lastHealth = Arrays.copyOf( lastHealth, armyCount );
+		lastStrength = Arrays.copyOf( lastStrength, armyCount );
+		lastAlive = Arrays.copyOf( lastAlive, armyCount );
+		keyframeDue = true;
+	}
+
+	private void ensureSlots( int armyIndex, int size ) {
+		if ( lastX[ armyIndex ] != null && lastX[ armyIndex ].length >= size )
+			return;
+		int capacity = Math.max( size, 64 );
+		lastX[ armyIndex ] = new int[ capacity ];
+		lastY[ armyIndex ] = new int[ capacity ];
+		lastHealth[ armyIndex ] = new int[ capacity ];
+		lastStrength[ armyIndex ] = new int[ capacity ];
+		lastAlive[ armyIndex ] = new boolean[ capacity ];
+	}
+
+	private void ensureFrame( int extra ) {
+		if ( frameLength + extra > frame.length )
+			frame = Arrays.copyOf( frame, Math.max( frameLength + extra, frame.length * 2 ) );
+	}
+
+	private void putVarInt( int value ) {
+		while ( ( value & ~0x7F ) != 0 ) {
+			frame[ frameLength++ ] = (byte) ( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		frame[ frameLength++ ] = (byte) value;
+	}
+
+	private static int putVarLong( byte[] bytes, int offset, long value ) {
+		while ( ( value & ~0x7FL ) != 0 ) {
+			bytes[ offset++ ] = (byte) ( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		bytes[ offset++ ] = (byte) value;
+		return offset;
+	}
+
+	static int toFixed( double value, double scale ) {
+		return (int) Math.round( value * scale );
+	}
+
+	// Small changes of either sign become small unsigned values: 0, -1, 1, -2, ... map to 0, 1, 2, 3, ...
+	static int zigzag( int value ) {
+		return ( value << 1 ) ^ ( value >> 31 );
+	}
+
+	static int unzigzag( int value ) {
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+} // end class ReplayRecorder
@@ -0,0 +1,82 @@
+package core;
+
+import java.util.Arrays;
+
+/** A copy of one army's actors as they stood at one moment, for writing out with <i>RosterWriter</i> while the battle carries on. capture() is a
+ * handful of bulk array copies, so it is cheap enough for the thread that ticks the battle; everything slow (formatting, the disk) is left to
+ * whichever thread writes the copy. */
+public final class Roster {
+
+	private final String armyName;
+	private final int size;
+	private final byte[] kind;
+	private final boolean[] alive;
+	private final double[] x;
+	private final double[] y;
+	private final double[] health;
+	private final double[] strength;
+	private final double[] speed;
+	private final String[] names; // by slot, or null to name actors after their kind and slot
+
+	private Roster( ArmyState army, String[] names ) {
+		armyName = army.getArmyName();
+		size = army.size();
+		kind = Arrays.copyOf( army.kind, size );
+		alive = Arrays.copyOf( army.alive, size );
+		x = Arrays.copyOf( army.x, size );
+		y = Arrays.copyOf( army.y, size );
+		health = Arrays.copyOf( army.health, size );
+		strength = Arrays.copyOf( army.strength, size );
+		speed = Arrays.copyOf( army.speed, size );
+		this.names = names;
+	}
+
+	/** Call on the thread that ticks the battle (or while it is not ticking).
+	 *
+	 * @param names display name of each slot (e.g. taken from the Actor views), or null for names made up from the kind and slot */
+	public static Roster capture( ArmyState army, String[] names ) {
+		if ( names != null && names.length < army.size() )
+			throw new IllegalArgumentException( names.length + " names for " + army.size() + " actors of " + army.getArmyName() );
+		return new Roster( army, names );
+	}
+
+	public String getArmyName() {
+		return armyName;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String getName( int slot ) {
+		return names != null ? names[ slot ] : ActorKind.name( kind[ slot ] ) + " " + slot;
+	}
+
+	public byte getKind( int slot ) {
+		return kind[ slot ];
+	}
+
+	public boolean isAlive( int slot ) {
+		return alive[ slot ];
+	}
+
+	public double getX( int slot ) {
+		return x[ slot ];
+	}
+
+	public double getY( int slot ) {
+		return y[ slot ];
+	}
+
+	public double getHealth( int slot ) {
+		return health[ slot ];
+	}
+
+	public double getStrength( int slot ) {
+		return strength[ slot ];
+	}
+
+	public double getSpeed( int slot ) {
+		return speed[ slot ];
+	}
+} // end class Roster
@@ -0,0 +1,235 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/** Streams the actors of one or more <i>Roster</i> copies to a file, as CSV or as a compact binary table, through a single reused buffer: nothing is
+ * built up in memory however large the armies are, and rows are numbered by their position in the output, so writing N actors costs O(N). Meant to
+ * run on a background thread; setKindMask() and setLiveness() choose which actors are written.
+ *
+ * CSV: a header line, then one line per actor: army, index, name, type, alive, health, strength, speed, x, y (numbers to two decimal places).
+ *
+ * Binary, little-endian:
+ * <pre>
+ * header    int MAGIC, int VERSION, int armyCount
+ * per army  int nameLength, UTF-8 name, int rowCount,
+ *           per row (int index, byte kind, byte alive, short nameLength, UTF-8 name, double health, strength, speed, x, y)
+ * </pre> */
+public final class RosterWriter {
+
+	public enum Format {
+		CSV, BINARY
+	}
+
+	/** Which actors to write, by whether they are alive. */
+	public enum Liveness {
+		ANY, ALIVE, DEAD
+	}
+
+	public static final int MAGIC = 0x48425253; // "HBRS"
+	public static final int VERSION = 1;
+
+	/** Kind mask with a bit for every core.ActorKind code. */
+	public static final int ALL_KINDS = ( 1 << ActorKind.COUNT ) - 1;
+
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_ROW_SIZE = 4 * 1024; // more than any row needs, names being capped well below this
+	private static final byte[] CSV_HEADER = "army,index,name,type,alive,health,strength,speed,x,y\n".getBytes( UTF_8 );
+
+	private final Format format;
+	private int kindMask = ALL_KINDS;
+	private Liveness liveness = Liveness.ANY;
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long flushed; // bytes written to the channel so far
+
+	public RosterWriter( Format format ) {
+		this.format = format;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/** @param kindMask bit (1 << kind) set for every core.ActorKind code to write */
+	public void setKindMask( int kindMask ) {
+		this.kindMask = kindMask;
+	}
+
+	public void setLiveness( Liveness liveness ) {
+		this.liveness = liveness;
+	}
+
+	/** @return whether the actor in the slot passes the kind and liveness filters */
+	public boolean accepts( Roster roster, int slot ) {
+		if ( ( kindMask & ( 1 << roster.getKind( slot ) ) ) == 0 )
+			return false;
+		switch ( liveness ) {
+		case ALIVE:
+			return roster.isAlive( slot );
+		case DEAD:
+			return !roster.isAlive( slot );
+		default:
+			return true;
+		}
+	}
+
+	/** Writes every accepted actor of the rosters, army after army, replacing the file.
+	 *
+	 * @return number of actors written */
+	public long write( File file, List<Roster> rosters ) throws IOException {
+		channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+		buffer = ByteBuffer.allocateDirect( BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+		flushed = 0L;
+		long written = 0L;
+		try {
+			if ( format == Format.CSV )
+				buffer.put( CSV_HEADER );
+			else
+				buffer.putInt( MAGIC ).putInt( VERSION ).putInt( rosters.size() );
+			for ( Roster roster : rosters )
+				written += ( format == Format.CSV ) ? writeCsv( roster ) : writeBinary( roster );
+			flush();
+		} finally {
+			channel.close();
+			channel = null;
+			buffer = null;
+		}
+		return written;
+	}
+
+	/*******************************************************/
+	//-------------------------CSV-------------------------//
+
+	private int writeCsv( Roster roster ) throws IOException {
+		int index = 0;
+		for ( int slot = 0, n = roster.size(); slot < n; ++slot ) {
+			if ( !accepts( roster, slot ) )
+				continue;
+			ensureRoom( MAX_ROW_SIZE );
+			putCsvText( roster.getArmyName() );
+			buffer.put( (byte) ',' );
+			putDigits( ++index );
+			buffer.put( (byte) ',' );
+			putCsvText( roster.getName( slot ) );
+			buffer.put( (byte) ',' );
+			putAscii( ActorKind.name( roster.getKind( slot ) ) );
+			buffer.put( (byte) ',' );
+			putAscii( roster.isAlive( slot ) ? "true" : "false" );
+			putCsvNumber( roster.getHealth( slot ) );
+			putCsvNumber( roster.getStrength( slot ) );
+			putCsvNumber( roster.getSpeed( slot ) );
+			putCsvNumber( roster.getX( slot ) );
+			putCsvNumber( roster.getY( slot ) );
+			buffer.put( (byte) '\n' );
+		}
+		return index;
+	}
+
+	// Quoted, with quotes doubled, only if the text holds a comma, a quote or a line break.
+	private void putCsvText( String text ) {
+		boolean quote = false;
+		for ( int i = 0; i < text.length() && !quote; ++i ) {
+			char c = text.charAt( i );
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if ( !quote ) {
+			putText( text );
+			return;
+		}
+		buffer.put( (byte) '"' );
+		putText( text.replace( "\"", "\"\"" ) );
+		buffer.put( (byte) '"' );
+	}
+
+	// ',' then the value rounded to two decimal places, without going through a String.
+	private void putCsvNumber( double value ) {
+		buffer.put( (byte) ',' );
+		long hundredths = Math.round( value * 100.0 );
+		if ( hundredths < 0 ) {
+			buffer.put( (byte) '-' );
+			hundredths = -hundredths;
+		}
+		putDigits( hundredths / 100 );
+		buffer.put( (byte) '.' );
+		buffer.put( (byte) ( '0' + hundredths / 10 % 10 ) );
+		buffer.put( (byte) ( '0' + hundredths % 10 ) );
+	}
+
+	private void putDigits( long value ) {
+		if ( value >= 10 )
+			putDigits( value / 10 );
+		buffer.put( (byte) ( '0' + value % 10 ) );
+	}
+
+	/*******************************************************/
+	//-----------------------BINARY------------------------//
+
+	private int writeBinary( Roster roster ) throws IOException {
+		byte[] armyName = roster.getArmyName().getBytes( UTF_8 );
+		ensureRoom( 8 + armyName.length );
+		buffer.putInt( armyName.length ).put( armyName );
+		long rowCountAt = flushed + buffer.position();
+		buffer.putInt( 0 ); // patched below, once the rows are counted
+		int index = 0;
+		for ( int slot = 0, n = roster.size(); slot < n; ++slot ) {
+			if ( !accepts( roster, slot ) )
+				continue;
+			ensureRoom( MAX_ROW_SIZE );
+			buffer.putInt( ++index ).put( roster.getKind( slot ) ).put( (byte) ( roster.isAlive( slot ) ? 1 : 0 ) );
+			int lengthAt = buffer.position();
+			buffer.putShort( (short) 0 );
+			putText( roster.getName( slot ) );
+			buffer.putShort( lengthAt, (short) ( buffer.position() - lengthAt - 2 ) );
+			buffer.putDouble( roster.getHealth( slot ) ).putDouble( roster.getStrength( slot ) ).putDouble( roster.getSpeed( slot ) );
+			buffer.putDouble( roster.getX( slot ) ).putDouble( roster.getY( slot ) );
+		}
+		if ( rowCountAt >= flushed )
+			buffer.putInt( (int) ( rowCountAt - flushed ), index );
+		else {
+			ByteBuffer count = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN ).putInt( 0, index );
+			while ( count.hasRemaining() )
+				channel.write( count, rowCountAt + count.position() );
+		}
+		return index;
+	}
+
+	/*******************************************************/
+	//------------------------BUFFER-----------------------//
+
+	// UTF-8, straight into the buffer when the text is ASCII (actor names nearly always are).
+	private void putText( String text ) {
+		for ( int i = 0; i < text.length(); ++i ) {
+			if ( text.charAt( i ) >= 0x80 ) {
+				buffer.put( text.getBytes( UTF_8 ) );
+				return;
+			}
+		}
+		putAscii( text );
+	}
+
+	private void putAscii( String text ) {
+		for ( int i = 0; i < text.length(); ++i )
+			buffer.put( (byte) text.charAt( i ) );
+	}
+
+	private void ensureRoom( int bytes ) throws IOException {
+		if ( buffer.remaining() < bytes )
+			flush();
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while ( buffer.hasRemaining() )
+			flushed += channel.write( buffer );
+		buffer.clear();
+	}
+} // end class RosterWriter
@@ -0,0 +1,323 @@
+package core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** Reads a scenario (the factions of a battle, the types of actor they field and what spawns where) one line at a time, handing each faction and
+ * spawn to a <i>Handler</i> as soon as its line has been read. Nothing is kept per actor, or per spawn: only the faction and type names seen so
+ * far, so a scenario of a million actors is read in the same memory as one of ten, and the handler can start building the first spawn before
+ * the rest of the file has been read.
+ *
+ * A scenario is plain text, one directive per line; blank lines and lines starting with # are skipped. A directive is a keyword and a name,
+ * followed by |-separated fields:
+ * <pre>
+ * battlefield 1000 594                                          width and height, used by headless battles; before any faction
+ * faction Forces of Light | centre 452 150 | colour SPRINGGREEN  centre required, colour optional (a JavaFX colour name or #rrggbb)
+ * type Ranger | base Elf | speed 60 100                          a new type built as a built-in kind; health, strength and speed ranges
+ *                                                               are optional, and default to the full ranges
+ * spawn Forces of Light | Ranger 250 | centre 300 200 | range 40 TYPE COUNT required; centre defaults to the faction's, range to 50
+ * allies Forces of Light | Elves of Lorien                      two or more factions declared above, who fight on the same side
+ * </pre>
+ * Type names are the built-in kinds (Hobbit, Wizard, Orc, Elf), RANDOM for a built-in kind drawn for each actor, or any type defined above the
+ * spawn; names are not case-sensitive. A scenario may declare any number of factions; every faction is hostile to every other unless an allies
+ * line says otherwise. */
+public final class ScenarioReader {
+
+	/** Battlefield of a headless battle whose scenario does not give one: the size of the FXLauncher window's battlefield. */
+	public static final double DEFAULT_WIDTH = 1000.0;
+	public static final double DEFAULT_HEIGHT = 594.0;
+
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	private static final String RANDOM = "random";
+
+	/** Told about each directive, in file order. A handler may throw to stop the reading, e.g. for a faction it cannot field. */
+	public interface Handler {
+		void battlefield( double width, double height ) throws IOException;
+
+		/** @param faction the faction's number, counting from 0 in file order
+		 * @param colour as written in the scenario, or null if it gives none */
+		void faction( int faction, String name, String colour, double centreX, double centreY ) throws IOException;
+
+		void spawn( int faction, SpawnGroup group ) throws IOException;
+
+		/** Called for each pair of factions an allies line names, first the lower number. */
+		void allies( int faction, int other ) throws IOException;
+	}
+
+	private final String source; // named in error messages
+	private final Handler handler;
+	private final List<String> factionNames = new ArrayList<String>();
+	private final List<double[]> factionCentres = new ArrayList<double[]>();
+	private final Map<String, ActorTemplate> types = new HashMap<String, ActorTemplate>(); // by lower-case name, built-in kinds included
+	private int lineNumber;
+
+	private ScenarioReader( String source, Handler handler ) {
+		this.source = source;
+		this.handler = handler;
+		for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+			types.put( key( ActorKind.name( kind ) ), ActorTemplate.forKind( kind ) );
+		}
+	}
+
+	public static void read( File file, Handler handler ) throws IOException {
+		Reader in = new InputStreamReader( new FileInputStream( file ), UTF_8 );
+		try {
+			read( in, file.getPath(), handler );
+		} finally {
+			in.close();
+		}
+	}
+
+	/** @param source what to call the scenario in error messages, e.g. its file name */
+	public static void read( Reader in, String source, Handler handler ) throws IOException {
+		new ScenarioReader( source, handler ).readAll( in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader( in ) );
+	}
+
+	private void readAll( BufferedReader in ) throws IOException {
+		String line;
+		while ( ( line = in.readLine() ) != null ) {
+			++lineNumber;
+			line = line.trim();
+			if ( line.isEmpty() || line.startsWith( "#" ) )
+				continue;
+			try {
+				readDirective( line );
+			} catch ( IllegalArgumentException e ) { // NumberFormatException included
+				throw error( e.getMessage() );
+			}
+		}
+		if ( factionNames.isEmpty() )
+			throw new IOException( source + " declares no faction" );
+	}
+
+	private void readDirective( String line ) throws IOException {
+		int space = indexOfWhitespace( line );
+		String keyword = key( space < 0 ? line : line.substring( 0, space ) );
+		String[] parts = ( space < 0 ? "" : line.substring( space + 1 ) ).split( "\\|" );
+		String name = parts[ 0 ].trim();
+		if ( name.isEmpty() )
+			throw error( "Expected a name after " + keyword );
+		Map<String, String[]> fields = new HashMap<String, String[]>();
+		// a spawn's first field is its TYPE COUNT; allies have no fields, only names
+		int firstField = keyword.equals( "spawn" ) ? 2 : keyword.equals( "allies" ) ? parts.length : 1;
+		for ( int i = firstField; i < parts.length; ++i ) {
+			String[] words = parts[ i ].trim().split( "\\s+" );
+			String[] values = new String[ words.length - 1 ];
+			System.arraycopy( words, 1, values, 0, values.length );
+			if ( fields.put( key( words[ 0 ] ), values ) != null )
+				throw error( "Field " + words[ 0 ] + " given twice" );
+		}
+
+		if ( keyword.equals( "battlefield" ) )
+			readBattlefield( name );
+		else if ( keyword.equals( "faction" ) )
+			readFaction( name, fields );
+		else if ( keyword.equals( "type" ) )
+			readType( name, fields );
+		else if ( keyword.equals( "spawn" ) )
+			readSpawn( name, parts.length > 1 ? parts[ 1 ].trim() : "", fields );
+		else if ( keyword.equals( "allies" ) )
+			readAllies( parts );
+		else
+			throw error( "Unknown directive " + keyword );
+	}
+
+	private void readBattlefield( String size ) throws IOException {
+		if ( !factionNames.isEmpty() )
+			throw error( "The battlefield must come before the factions" );
+		String[] values = size.split( "\\s+" );
+		if ( values.length != 2 )
+			throw error( "Expected battlefield WIDTH HEIGHT" );
+		double width = Double.parseDouble( values[ 0 ] );
+		double height = Double.parseDouble( values[ 1 ] );
+		if ( !( width > 0.0 && height > 0.0 ) )
+			throw error( "The battlefield must have a positive width and height" );
+		handler.battlefield( width, height );
+	}
+
+	private void readFaction( String name, Map<String, String[]> fields ) throws IOException {
+		if ( indexOfFaction( name ) >= 0 )
+			throw error( "Faction " + name + " declared twice" );
+		double[] centre = numbers( fields.remove( "centre" ), "centre", 2 );
+		if ( centre == null )
+			throw error( "Faction " + name + " needs a centre" );
+		String[] colour = fields.remove( "colour" );
+		if ( colour != null && colour.length != 1 )
+			throw error( "Expected colour NAME" );
+		checkAllRead( fields );
+		factionNames.add( name );
+		factionCentres.add( centre );
+		handler.faction( factionNames.size() - 1, name, colour != null ? colour[ 0 ] : null, centre[ 0 ], centre[ 1 ] );
+	}
+
+	private void readType( String name, Map<String, String[]> fields ) throws IOException {
+		if ( types.containsKey( key( name ) ) || key( name ).equals( RANDOM ) )
+			throw error( "Type " + name + " is already defined" );
+		String[] base = fields.remove( "base" );
+		if ( base == null || base.length != 1 || !types.containsKey( key( base[ 0 ] ) ) )
+			throw error( "Type " + name + " needs a base kind: Hobbit, Wizard, Orc or Elf" );
+		ActorTemplate baseTemplate = ActorTemplate.forKind( types.get( key( base[ 0 ] ) ).getKind() );
+		double[] health = numbers( fields.remove( "health" ), "health", 2 );
+		double[] strength = numbers( fields.remove( "strength" ), "strength", 2 );
+		double[] speed = numbers( fields.remove( "speed" ), "speed", 2 );
+		checkAllRead( fields );
+		types.put( key( name ), new ActorTemplate( name, baseTemplate.getKind(), //
+				health != null ? health[ 0 ] : baseTemplate.getHealthMin(), health != null ? health[ 1 ] : baseTemplate.getHealthMax(), //
+				strength != null ? strength[ 0 ] : baseTemplate.getStrengthMin(), strength != null ? strength[ 1 ] : baseTemplate.getStrengthMax(), //
+				speed != null ? speed[ 0 ] : baseTemplate.getSpeedMin(), speed != null ? speed[ 1 ] : baseTemplate.getSpeedMax() ) );
+	}
+
+	private void readSpawn( String factionName, String typeAndCount, Map<String, String[]> fields ) throws IOException {
+		int faction = indexOfFaction( factionName );
+		if ( faction < 0 )
+			throw error( "Unknown faction " + factionName );
+		String[] words = typeAndCount.split( "\\s+" );
+		if ( words.length != 2 )
+			throw error( "Expected spawn FACTION | TYPE COUNT" );
+		ActorTemplate template = null;
+		if ( !key( words[ 0 ] ).equals( RANDOM ) ) {
+			template = types.get( key( words[ 0 ] ) );
+			if ( template == null )
+				throw error( "Unknown type " + words[ 0 ] );
+		}
+		int count = Integer.parseInt( words[ 1 ] );
+		double[] centre = numbers( fields.remove( "centre" ), "centre", 2 );
+		if ( centre == null )
+			centre = factionCentres.get( faction );
+		double[] range = numbers( fields.remove( "range" ), "range", 1 );
+		checkAllRead( fields );
+		handler.spawn( faction, new SpawnGroup( template, count, centre[ 0 ], centre[ 1 ], range != null ? range[ 0 ] : SpawnGroup.DEFAULT_RANGE ) );
+	}
+
+	private void readAllies( String[] names ) throws IOException {
+		if ( names.length < 2 )
+			throw error( "Expected allies FACTION | FACTION ..." );
+		int[] factions = new int[ names.length ];
+		for ( int i = 0; i < names.length; ++i ) {
+			factions[ i ] = indexOfFaction( names[ i ].trim() );
+			if ( factions[ i ] < 0 )
+				throw error( "Unknown faction " + names[ i ].trim() );
+			for ( int j = 0; j < i; ++j ) {
+				if ( factions[ j ] == factions[ i ] )
+					throw error( "Faction " + names[ i ].trim() + " named twice" );
+			}
+		}
+		for ( int i = 0; i < factions.length; ++i ) {
+			for ( int j = i + 1; j < factions.length; ++j )
+				handler.allies( Math.min( factions[ i ], factions[ j ] ), Math.max( factions[ i ], factions[ j ] ) );
+		}
+	}
+
+	private int indexOfFaction( String name ) {
+		for ( int i = 0; i < factionNames.size(); ++i ) {
+			if ( factionNames.get( i ).equalsIgnoreCase( name ) )
+				return i;
+		}
+		return -1;
+	}
+
+	// The values of a field, or null if the field was not given.
+	private double[] numbers( String[] values, String field, int count ) throws IOException {
+		if ( values == null )
+			return null;
+		if ( values.length != count )
+			throw error( "Expected " + count + " number" + ( count == 1 ? "" : "s" ) + " after " + field );
+		double[] numbers = new double[ count ];
+		for ( int i = 0; i < count; ++i ) {
+			numbers[ i ] = Double.parseDouble( values[ i ] );
+		}
+		return numbers;
+	}
+
+	private void checkAllRead( Map<String, String[]> fields ) throws IOException {
+		if ( !fields.isEmpty() )
+			throw error( "Unknown field " + fields.keySet().iterator().next() );
+	}
+
+	private IOException error( String message ) {
+		return new IOException( source + ":" + lineNumber + ": " + message );
+	}
+
+	private static String key( String name ) {
+		return name.toLowerCase( Locale.ROOT );
+	}
+
+	private static int indexOfWhitespace( String text ) {
+		for ( int i = 0; i < text.length(); ++i ) {
+			if ( Character.isWhitespace( text.charAt( i ) ) )
+				return i;
+		}
+		return -1;
+	}
+
+	/*******************************************************/
+	//-------------------HEADLESS BATTLE-------------------//
+
+	/** Builds and populates a headless battle from a scenario, one ArmyState per faction in file order, each spawn added as it is read, and the
+	 * factions' alliances as hostility between their armies.
+	 *
+	 * @param terrain where actors may stand, or null for open ground */
+	public static Battle buildBattle( File file, long seed, TerrainMask terrain ) throws IOException {
+		BattleBuilder builder = new BattleBuilder( seed, terrain );
+		read( file, builder );
+		if ( builder.battle.getArmyCount() < 2 )
+			throw new IOException( file + " declares a single faction; a battle needs at least two" );
+		return builder.battle;
+	}
+
+	private static final class BattleBuilder implements Handler {
+		private final long seed;
+		private final TerrainMask terrain;
+		private double width = DEFAULT_WIDTH;
+		private double height = DEFAULT_HEIGHT;
+		private Battle battle;
+
+		BattleBuilder( long seed, TerrainMask terrain ) {
+			this.seed = seed;
+			this.terrain = terrain;
+		}
+
+		@Override
+		public void battlefield( double width, double height ) {
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public void faction( int faction, String name, String colour, double centreX, double centreY ) throws IOException {
+			if ( battle == null ) {
+				battle = new Battle( width, height );
+				battle.setSeed( seed );
+				battle.setTerrain( terrain );
+			}
+			ArmyState army = new ArmyState( name );
+			army.setSpawnCentre( centreX, centreY );
+			battle.addArmy( army );
+		}
+
+		@Override
+		public void spawn( int faction, SpawnGroup group ) {
+			ArmyState army = battle.getArmy( faction );
+			army.ensureCapacity( army.size() + group.getCount() );
+			for ( int i = 0; i < group.getCount(); ++i ) {
+				ActorTemplate template = group.isRandom() ? ActorTemplate.forKind( (byte) army.getRandom().nextInt( ActorKind.COUNT ) ) : group.getTemplate();
+				ActorRules.spawn( army, template, group.getCentreX(), group.getCentreY(), group.getRange() );
+			}
+		}
+
+		@Override
+		public void allies( int faction, int other ) {
+			battle.setHostile( faction, other, false );
+		}
+	}
+} // end class ScenarioReader
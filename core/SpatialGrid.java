@@ -0,0 +1,260 @@
+package core;
+
+import java.util.Arrays;
+
+/** Uniform grid (a.k.a. cell hash) over the battlefield, keyed on the x/y columns of one <i>ArmyState</i>. A hostile army finds its nearest
+ * target by searching outwards, ring by ring, from the cell containing the query point rather than measuring the distance to every actor. With
+ * several hostile armies, each one's grid is searched within the distance of the best target found so far (see Battle.findNearestOpponent()).
+ *
+ * Cells live in an open-addressing table keyed on the packed cell coordinates, so neither updates nor queries allocate. Queries only read the
+ * table and may run concurrently with each other, but not with insert() or update(). */
+public class SpatialGrid {
+
+	public static final double DEFAULT_CELL_SIZE = 32.0; // a little larger than the biggest avatar at full strength
+
+	private static final long EMPTY_KEY = Long.MIN_VALUE; // never produced by key(), since that would need cellX == Integer.MIN_VALUE and cellY == 0
+
+	private final ArmyState state;
+	private final double cellSize;
+
+	private long[] cellKeys = new long[ 256 ];
+	private Cell[] cellValues = new Cell[ 256 ];
+	private int cellCount;
+
+	private long[] cellKeyOfSlot = new long[ 64 ]; // cell each slot is currently filed under, or EMPTY_KEY if it is not filed
+	private int[] positionInCell = new int[ 64 ]; // where in that cell's slots, so that removal need not search the cell
+
+	// Bounding box (in cell coordinates) of every cell that has ever been occupied; limits how far a ring search has to expand.
+	private int minCellX = Integer.MAX_VALUE;
+	private int minCellY = Integer.MAX_VALUE;
+	private int maxCellX = Integer.MIN_VALUE;
+	private int maxCellY = Integer.MIN_VALUE;
+	private int indexedCount;
+
+	public SpatialGrid( ArmyState state ) {
+		this( state, DEFAULT_CELL_SIZE );
+	}
+
+	public SpatialGrid( ArmyState state, double cellSize ) {
+		if ( cellSize <= 0.0 )
+			throw new IllegalArgumentException( "cellSize must be positive: " + cellSize );
+		this.state = state;
+		this.cellSize = cellSize;
+		Arrays.fill( cellKeys, EMPTY_KEY );
+		Arrays.fill( cellKeyOfSlot, EMPTY_KEY );
+	}
+
+	public int size() {
+		return indexedCount;
+	}
+
+	/** Forgets every slot, e.g. before the army is reloaded. */
+	public void clear() {
+		Arrays.fill( cellKeys, EMPTY_KEY );
+		Arrays.fill( cellValues, null );
+		Arrays.fill( cellKeyOfSlot, EMPTY_KEY );
+		cellCount = 0;
+		minCellX = Integer.MAX_VALUE;
+		minCellY = Integer.MAX_VALUE;
+		maxCellX = Integer.MIN_VALUE;
+		maxCellY = Integer.MIN_VALUE;
+		indexedCount = 0;
+	}
+
+	/** Files the slot under the cell that contains its current location. */
+	public void insert( int slot ) {
+		if ( slot >= cellKeyOfSlot.length ) {
+			int oldLength = cellKeyOfSlot.length;
+			cellKeyOfSlot = Arrays.copyOf( cellKeyOfSlot, Math.max( slot + 1, oldLength * 2 ) );
+			Arrays.fill( cellKeyOfSlot, oldLength, cellKeyOfSlot.length, EMPTY_KEY ); // not filed, rather than filed under cell (0, 0)
+			positionInCell = Arrays.copyOf( positionInCell, cellKeyOfSlot.length );
+		}
+		int cellX = cellCoordinate( state.x[ slot ] );
+		int cellY = cellCoordinate( state.y[ slot ] );
+		addToCell( slot, cellX, cellY );
+		++indexedCount;
+	}
+
+	/** Forgets the slot, e.g. when its actor dies; until it is inserted again, updates to it are ignored and queries never return it. */
+	public void remove( int slot ) {
+		long currentKey = slot < cellKeyOfSlot.length ? cellKeyOfSlot[ slot ] : EMPTY_KEY;
+		if ( currentKey == EMPTY_KEY )
+			return;
+		removeFromCell( cellFor( currentKey ), slot );
+		cellKeyOfSlot[ slot ] = EMPTY_KEY;
+		--indexedCount;
+	}
+
+	/** Re-files the slot if it has crossed into a different cell since it was last inserted or updated. */
+	public void update( int slot ) {
+		long currentKey = slot < cellKeyOfSlot.length ? cellKeyOfSlot[ slot ] : EMPTY_KEY;
+		if ( currentKey == EMPTY_KEY )
+			return; // removed
+		int cellX = cellCoordinate( state.x[ slot ] );
+		int cellY = cellCoordinate( state.y[ slot ] );
+		long key = key( cellX, cellY );
+		if ( currentKey == key )
+			return;
+		removeFromCell( cellFor( currentKey ), slot );
+		addToCell( slot, cellX, cellY );
+	}
+
+	/** Expanding ring search: visits the cell containing (x, y), then the ring of cells around it, and so on, stopping as soon as no unvisited cell can
+	 * hold anything closer than the best candidate found so far.
+	 *
+	 * @return slot of the actor closest to (x, y), or -1 if the grid is empty */
+	public int findNearest( double x, double y ) {
+		return findNearest( x, y, Double.MAX_VALUE );
+	}
+
+	/** findNearest() bounded by a distance: the search stops as soon as no unvisited cell can hold anything closer than withinDistanceSquared,
+	 * so a grid whose actors are all further away than that costs a few rings at most.
+	 *
+	 * @return slot of the actor closest to (x, y) if it is strictly closer than the square root of withinDistanceSquared, otherwise -1 */
+	public int findNearest( double x, double y, double withinDistanceSquared ) {
+		if ( indexedCount == 0 )
+			return -1;
+		int centreX = cellCoordinate( x );
+		int centreY = cellCoordinate( y );
+		int lastRing = Math.max( Math.max( centreX - minCellX, maxCellX - centreX ), Math.max( centreY - minCellY, maxCellY - centreY ) );
+		int closest = -1;
+
+		for ( int ring = 0; ring <= lastRing; ++ring ) {
+			for ( int cellX = centreX - ring; cellX <= centreX + ring; ++cellX ) { // top and bottom rows of the ring
+				closest = searchCell( cellX, centreY - ring, x, y, closest, withinDistanceSquared );
+				if ( ring > 0 )
+					closest = searchCell( cellX, centreY + ring, x, y, closest, withinDistanceSquared );
+			}
+			for ( int cellY = centreY - ring + 1; cellY <= centreY + ring - 1; ++cellY ) { // left and right columns, corners already visited
+				closest = searchCell( centreX - ring, cellY, x, y, closest, withinDistanceSquared );
+				closest = searchCell( centreX + ring, cellY, x, y, closest, withinDistanceSquared );
+			}
+			// Every cell in the next ring is at least (ring * cellSize) away from any point inside the centre cell.
+			double reach = ring * cellSize;
+			double bound = closest >= 0 ? distanceSquared( closest, x, y ) : withinDistanceSquared;
+			if ( bound <= reach * reach )
+				break;
+		}
+		return closest;
+	}
+
+	// Returns whichever of closestSoFar and the occupants of the cell is nearest to (x, y), counting only those closer than the limit.
+	private int searchCell( int cellX, int cellY, double x, double y, int closestSoFar, double withinDistanceSquared ) {
+		Cell cell = cellFor( key( cellX, cellY ) );
+		if ( cell == null )
+			return closestSoFar;
+		double distanceSquaredToClosestSoFar = closestSoFar < 0 ? withinDistanceSquared : distanceSquared( closestSoFar, x, y );
+		int[] slots = cell.slots;
+		for ( int i = 0, n = cell.count; i < n; ++i ) {
+			int candidate = slots[ i ];
+			double distanceSquared = distanceSquared( candidate, x, y );
+			if ( distanceSquared < distanceSquaredToClosestSoFar ) {
+				distanceSquaredToClosestSoFar = distanceSquared;
+				closestSoFar = candidate;
+			}
+		}
+		return closestSoFar;
+	}
+
+	private double distanceSquared( int slot, double x, double y ) {
+		double dx = state.x[ slot ] - x;
+		double dy = state.y[ slot ] - y;
+		return dx * dx + dy * dy;
+	}
+
+	private void addToCell( int slot, int cellX, int cellY ) {
+		long key = key( cellX, cellY );
+		Cell cell = cellFor( key );
+		if ( cell == null )
+			cell = putCell( key );
+		positionInCell[ slot ] = cell.count;
+		cell.add( slot );
+		cellKeyOfSlot[ slot ] = key;
+		if ( cellX < minCellX )
+			minCellX = cellX;
+		if ( cellY < minCellY )
+			minCellY = cellY;
+		if ( cellX > maxCellX )
+			maxCellX = cellX;
+		if ( cellY > maxCellY )
+			maxCellY = cellY;
+	}
+
+	// Swaps the cell's last slot into the gap: O(1) however crowded the cell.
+	private void removeFromCell( Cell cell, int slot ) {
+		int position = positionInCell[ slot ];
+		int last = cell.slots[ --cell.count ];
+		cell.slots[ position ] = last;
+		positionInCell[ last ] = position;
+	}
+
+	/*******************************************************/
+	//-----------------OPEN-ADDRESSING TABLE---------------//
+	// Cells are never removed once created (an emptied cell simply has count 0), which keeps probing simple.
+
+	private Cell cellFor( long key ) {
+		int mask = cellKeys.length - 1;
+		for ( int i = hash( key ) & mask;; i = ( i + 1 ) & mask ) {
+			long probe = cellKeys[ i ];
+			if ( probe == key )
+				return cellValues[ i ];
+			if ( probe == EMPTY_KEY )
+				return null;
+		}
+	}
+
+	private Cell putCell( long key ) {
+		if ( ( cellCount + 1 ) * 2 > cellKeys.length )
+			rehash( cellKeys.length * 2 );
+		Cell cell = new Cell();
+		insertIntoTable( cellKeys, cellValues, key, cell );
+		++cellCount;
+		return cell;
+	}
+
+	private void rehash( int capacity ) {
+		long[] newKeys = new long[ capacity ];
+		Cell[] newValues = new Cell[ capacity ];
+		Arrays.fill( newKeys, EMPTY_KEY );
+		for ( int i = 0; i < cellKeys.length; ++i ) {
+			if ( cellKeys[ i ] != EMPTY_KEY )
+				insertIntoTable( newKeys, newValues, cellKeys[ i ], cellValues[ i ] );
+		}
+		cellKeys = newKeys;
+		cellValues = newValues;
+	}
+
+	private static void insertIntoTable( long[] keys, Cell[] values, long key, Cell cell ) {
+		int mask = keys.length - 1;
+		int i = hash( key ) & mask;
+		while ( keys[ i ] != EMPTY_KEY )
+			i = ( i + 1 ) & mask;
+		keys[ i ] = key;
+		values[ i ] = cell;
+	}
+
+	private static int hash( long key ) {
+		long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads neighbouring cells across the table
+		return (int) ( h ^ ( h >>> 32 ) );
+	}
+
+	private int cellCoordinate( double coordinate ) {
+		return (int) Math.floor( coordinate / cellSize );
+	}
+
+	private static long key( int cellX, int cellY ) {
+		return ( (long) cellX << 32 ) | ( cellY & 0xFFFFFFFFL );
+	}
+
+	/** Unordered bag of slots; removal (removeFromCell()) swaps the last entry into the gap. */
+	private static final class Cell {
+		int[] slots = new int[ 4 ];
+		int count;
+
+		void add( int slot ) {
+			if ( count == slots.length )
+				slots = Arrays.copyOf( slots, count * 2 );
+			slots[ count++ ] = slot;
+		}
+	}
+} // end class SpatialGrid
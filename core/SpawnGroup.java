@@ -0,0 +1,65 @@
+package core;
+
+/** One spawn order of a scenario: how many actors of which type join an army, and the region they are placed in (a normal distribution around a
+ * centre, as ActorRules.spawn() does). A group stands for all of its actors however many there are, so a million-actor spawn is one small object.
+ * Immutable. */
+public final class SpawnGroup {
+
+	/** Half the width of the square most of a group lands in, unless the scenario says otherwise. */
+	public static final double DEFAULT_RANGE = 100.0 / 2.0;
+
+	private final ActorTemplate template; // null for a kind drawn at random for each actor
+	private final int count;
+	private final double centreX;
+	private final double centreY;
+	private final double range;
+
+	/** @param template the type of every actor in the group, or null for a built-in kind drawn at random for each one */
+	public SpawnGroup( ActorTemplate template, int count, double centreX, double centreY, double range ) {
+		if ( count < 0 )
+			throw new IllegalArgumentException( "Negative number of actors: " + count );
+		if ( !( range >= 0.0 ) )
+			throw new IllegalArgumentException( "Not a spawn range: " + range );
+		this.template = template;
+		this.count = count;
+		this.centreX = centreX;
+		this.centreY = centreY;
+		this.range = range;
+	}
+
+	/** @return a group of the built-in types placed around the army's spawn centre, for actors made outside any scenario */
+	public static SpawnGroup around( ArmyState army ) {
+		return new SpawnGroup( null, 0, army.getSpawnCentreX(), army.getSpawnCentreY(), DEFAULT_RANGE );
+	}
+
+	/** @return whether each actor's kind is drawn at random */
+	public boolean isRandom() {
+		return template == null;
+	}
+
+	/** @return the group's template, or null if it is random */
+	public ActorTemplate getTemplate() {
+		return template;
+	}
+
+	/** @return the template an actor of the given kind in this group is rolled from: the group's own, or the kind's built-in one if it is random */
+	public ActorTemplate getTemplate( byte kind ) {
+		return template != null ? template : ActorTemplate.forKind( kind );
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public double getCentreX() {
+		return centreX;
+	}
+
+	public double getCentreY() {
+		return centreY;
+	}
+
+	public double getRange() {
+		return range;
+	}
+} // end class SpawnGroup
@@ -0,0 +1,152 @@
+package core;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/** Which parts of the battlefield actors may stand on, as a bit-packed grid of cells taken from an image: one bit per pixel, set where the ground is
+ * walkable. Built once when the map is loaded, along with the nearest walkable cell of every blocked cell, so that testing a location and moving it
+ * out of blocked ground are both a couple of array reads, whatever the resolution of the map.
+ *
+ * The grid is laid over the battlefield the way the map is drawn: fitted to the battlefield width with its aspect ratio kept, so cellsPerUnit is
+ * the grid width over the battlefield width. Locations past the edge of the grid are looked up in the nearest edge cell. */
+public final class TerrainMask {
+
+	/** Suffix of the companion mask image load() looks for next to a map: MiddleEarth-3.jpg has its mask in MiddleEarth-3-walkable.png. */
+	public static final String MASK_SUFFIX = "-walkable.png";
+
+	private static final int MASK_THRESHOLD = 128; // mask images: pixels at least this bright are walkable
+
+	private final int width;
+	private final int height;
+	private final long[] walkable; // bit (cy * width + cx)
+	private final int[] nearestWalkable; // per cell: the cell itself if walkable, else the closest walkable cell, or -1 if there is none
+
+	private TerrainMask( int width, int height, long[] walkable ) {
+		this.width = width;
+		this.height = height;
+		this.walkable = walkable;
+		nearestWalkable = findNearestWalkable();
+	}
+
+	/** Builds the terrain for a map image: from its companion mask (MASK_SUFFIX) if there is one, otherwise from the map itself. */
+	public static TerrainMask load( File mapImage ) throws IOException {
+		String name = mapImage.getName();
+		int dot = name.lastIndexOf( '.' );
+		File mask = new File( mapImage.getParentFile(), ( dot < 0 ? name : name.substring( 0, dot ) ) + MASK_SUFFIX );
+		boolean isMask = mask.isFile();
+		BufferedImage image = ImageIO.read( isMask ? mask : mapImage );
+		if ( image == null )
+			throw new IOException( "Cannot read " + ( isMask ? mask : mapImage ) + " as an image" );
+		return fromImage( image, isMask );
+	}
+
+	/** @param isMask true for a mask image (bright is walkable, dark is blocked); false for a map, where water (blue outweighing red) is blocked */
+	public static TerrainMask fromImage( BufferedImage image, boolean isMask ) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		long[] walkable = new long[ ( width * height + 63 ) >>> 6 ];
+		int[] row = new int[ width ];
+		for ( int cy = 0; cy < height; ++cy ) {
+			image.getRGB( 0, cy, width, 1, row, 0, width );
+			for ( int cx = 0; cx < width; ++cx ) {
+				int red = ( row[ cx ] >> 16 ) & 0xFF;
+				int green = ( row[ cx ] >> 8 ) & 0xFF;
+				int blue = row[ cx ] & 0xFF;
+				boolean isWalkable = isMask ? ( red + green + blue ) / 3 >= MASK_THRESHOLD : blue <= red;
+				if ( isWalkable ) {
+					int cell = cy * width + cx;
+					walkable[ cell >>> 6 ] |= 1L << cell;
+				}
+			}
+		}
+		return new TerrainMask( width, height, walkable );
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public boolean isWalkableCell( int cx, int cy ) {
+		int cell = cy * width + cx;
+		return ( walkable[ cell >>> 6 ] & ( 1L << cell ) ) != 0;
+	}
+
+	/** @param cellsPerUnit grid cells per battlefield unit */
+	public boolean isWalkable( double x, double y, double cellsPerUnit ) {
+		int cell = cellAt( x, y, cellsPerUnit );
+		return ( walkable[ cell >>> 6 ] & ( 1L << cell ) ) != 0;
+	}
+
+	/** Moves a location on blocked ground to the centre of the nearest walkable cell; a walkable location is left alone.
+	 *
+	 * @param location x and y, updated in place
+	 * @param cellsPerUnit grid cells per battlefield unit */
+	public void project( double[] location, double cellsPerUnit ) {
+		int cell = cellAt( location[ 0 ], location[ 1 ], cellsPerUnit );
+		if ( ( walkable[ cell >>> 6 ] & ( 1L << cell ) ) != 0 )
+			return;
+		int target = nearestWalkable[ cell ];
+		if ( target < 0 )
+			return; // nothing is walkable: nowhere better to go
+		location[ 0 ] = ( target % width + 0.5 ) / cellsPerUnit;
+		location[ 1 ] = ( target / width + 0.5 ) / cellsPerUnit;
+	}
+
+	private int cellAt( double x, double y, double cellsPerUnit ) {
+		int cx = (int) ( x * cellsPerUnit );
+		int cy = (int) ( y * cellsPerUnit );
+		if ( cx < 0 )
+			cx = 0;
+		else if ( cx >= width )
+			cx = width - 1;
+		if ( cy < 0 )
+			cy = 0;
+		else if ( cy >= height )
+			cy = height - 1;
+		return cy * width + cx;
+	}
+
+	// Breadth-first search outwards from every walkable cell at once, over the 8 neighbours: each blocked cell inherits the source that reached it
+	// first, which is its nearest walkable cell in steps (a close match to straight-line distance at these scales).
+	private int[] findNearestWalkable() {
+		int cellCount = width * height;
+		int[] nearest = new int[ cellCount ];
+		int[] queue = new int[ cellCount ];
+		int tail = 0;
+		for ( int cell = 0; cell < cellCount; ++cell ) {
+			if ( ( walkable[ cell >>> 6 ] & ( 1L << cell ) ) != 0 ) {
+				nearest[ cell ] = cell;
+				queue[ tail++ ] = cell;
+			} else
+				nearest[ cell ] = -1;
+		}
+		for ( int head = 0; head < tail; ++head ) {
+			int cell = queue[ head ];
+			int cx = cell % width;
+			int cy = cell / width;
+			for ( int dy = -1; dy <= 1; ++dy ) {
+				int ny = cy + dy;
+				if ( ny < 0 || ny >= height )
+					continue;
+				for ( int dx = -1; dx <= 1; ++dx ) {
+					int nx = cx + dx;
+					if ( nx < 0 || nx >= width )
+						continue;
+					int neighbour = ny * width + nx;
+					if ( nearest[ neighbour ] < 0 ) {
+						nearest[ neighbour ] = nearest[ cell ];
+						queue[ tail++ ] = neighbour;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+} // end class TerrainMask
@@ -0,0 +1,87 @@
+package simulator;
+
+import javafx.animation.AnimationTimer;
+import core.Battle;
+
+/** The single master loop behind a running battle. Once per JavaFX pulse it advances the headless <i>Battle</i> in whole fixed timesteps to catch up
+ * with wall-clock time, then asks the <i>Simulator</i> to render, blending each avatar between the last two ticks by the leftover fraction of a
+ * step. Frame cost therefore depends only on how many actors there are, not on how many animations have been created.
+ *
+ * The time scale sets how many simulated seconds pass per second of wall-clock time. At high scales a pulse runs many ticks and renders only the
+ * state after the last of them; ticking stops once TICK_BUDGET of the pulse is used, and whatever simulated time is still owed is dropped, so a
+ * scale the machine cannot keep up with just runs the battle as fast as it can while the UI stays responsive.
+ *
+ * Every pulse, tick and render is timed into the <i>Metrics</i>. */
+public class BattleClock extends AnimationTimer {
+
+	private static final double MAX_FRAME_TIME = 0.25; // seconds; after a stall, drop time rather than spiral trying to catch up
+	private static final long TICK_BUDGET = 12000000L; // nanoseconds of each pulse (16.7 ms at 60 Hz) the battle may spend ticking
+
+	private final Battle battle;
+	private final Simulator simulator;
+	private final Metrics metrics;
+	private long previousPulse; // nanoseconds, 0 until the first pulse after start()
+	private double accumulator; // simulated seconds owed to the battle
+	private double timeScale = 1.0;
+	private boolean running;
+
+	public BattleClock( Battle battle, Simulator simulator, Metrics metrics ) {
+		this.battle = battle;
+		this.simulator = simulator;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void start() {
+		previousPulse = 0L;
+		accumulator = 0.0;
+		running = true;
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		super.stop();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public double getTimeScale() {
+		return timeScale;
+	}
+
+	/** @param timeScale simulated seconds per wall-clock second, e.g. 8.0 to fast-forward at eight times normal speed */
+	public void setTimeScale( double timeScale ) {
+		this.timeScale = timeScale;
+	}
+
+	@Override
+	public void handle( long now ) {
+		if ( previousPulse == 0L ) { // first pulse: nothing has elapsed yet
+			previousPulse = now;
+			simulator.render( 1.0 );
+			return;
+		}
+		metrics.recordPulse( now - previousPulse );
+		double frameTime = Math.min( ( now - previousPulse ) / 1.0e9, MAX_FRAME_TIME );
+		previousPulse = now;
+		accumulator += frameTime * timeScale;
+		long pulseStart = System.nanoTime();
+		while ( accumulator >= Battle.FIXED_TIMESTEP ) {
+			long tickStart = System.nanoTime();
+			if ( tickStart - pulseStart >= TICK_BUDGET ) {
+				accumulator %= Battle.FIXED_TIMESTEP; // out of time this pulse: drop the rest rather than owe it
+				break;
+			}
+			battle.tick( Battle.FIXED_TIMESTEP );
+			metrics.recordTick( battle, System.nanoTime() - tickStart );
+			accumulator -= Battle.FIXED_TIMESTEP;
+		}
+		long renderStart = System.nanoTime();
+		simulator.render( accumulator / Battle.FIXED_TIMESTEP );
+		metrics.recordRender( System.nanoTime() - renderStart );
+	}
+} // end class BattleClock
@@ -0,0 +1,142 @@
+package simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import core.ActorKind;
+import core.ActorRules;
+import core.ArmyState;
+import core.Battle;
+import core.TerrainMask;
+
+/** What a headless battle is made of: the battlefield, and how many actors of each kind every army starts with. The same composition and seed
+ * always build the same battle. DEFAULT is the battle Run > Populate sets up on screen, from scenarios/default.scenario; for types, spawn regions
+ * or more of a say in the line-up, use a scenario (see core.ScenarioReader) instead.
+ *
+ * A composition is written one army at a time as comma-separated KIND:COUNT entries, e.g. "HOBBIT:4,ELF:10,WIZARD:5"; KIND is any core.ActorKind
+ * name, or RANDOM for a kind drawn from the army's random stream, as in the GUI. */
+public class BattleSpec {
+
+	/** The composition of scenarios/default.scenario. */
+	public static final String DEFAULT_LIGHT = "HOBBIT:4,ELF:10,WIZARD:5";
+	public static final String DEFAULT_DARK = "ORC:17,WIZARD:2";
+
+	// Battlefield and spawn centres as the FXLauncher window first lays them out.
+	private static final double WIDTH = 1000.0;
+	private static final double HEIGHT = 594.0;
+	private static final double LIGHT_CENTRE_X = 452.0;
+	private static final double LIGHT_CENTRE_Y = 150.0;
+	private static final double DARK_CENTRE_X = 690.0;
+	private static final double DARK_CENTRE_Y = 400.0;
+
+	private static final byte RANDOM = -1; // kind code standing for a kind drawn at random
+
+	private final byte[] lightKinds;
+	private final int[] lightCounts;
+	private final byte[] darkKinds;
+	private final int[] darkCounts;
+	private TerrainMask terrain; // shared read-only by every battle built, or null for open ground
+
+	/** @throws IllegalArgumentException if either composition cannot be read */
+	public BattleSpec( String light, String dark ) {
+		List<byte[]> kinds = new ArrayList<byte[]>( 2 );
+		List<int[]> counts = new ArrayList<int[]>( 2 );
+		for ( String composition : new String[] { light, dark } ) {
+			String[] entries = composition.split( "," );
+			byte[] entryKinds = new byte[ entries.length ];
+			int[] entryCounts = new int[ entries.length ];
+			for ( int i = 0; i < entries.length; ++i ) {
+				String[] parts = entries[ i ].trim().split( ":" );
+				if ( parts.length != 2 )
+					throw new IllegalArgumentException( "Expected KIND:COUNT, found \"" + entries[ i ].trim() + "\"" );
+				entryKinds[ i ] = parseKind( parts[ 0 ].trim() );
+				try {
+					entryCounts[ i ] = Integer.parseInt( parts[ 1 ].trim() );
+				} catch ( NumberFormatException e ) {
+					throw new IllegalArgumentException( "Not a number of actors: \"" + parts[ 1 ].trim() + "\"" );
+				}
+				if ( entryCounts[ i ] < 0 )
+					throw new IllegalArgumentException( "Negative number of actors: " + entryCounts[ i ] );
+			}
+			kinds.add( entryKinds );
+			counts.add( entryCounts );
+		}
+		lightKinds = kinds.get( 0 );
+		lightCounts = counts.get( 0 );
+		darkKinds = kinds.get( 1 );
+		darkCounts = counts.get( 1 );
+	}
+
+	public static BattleSpec createDefault() {
+		return new BattleSpec( DEFAULT_LIGHT, DEFAULT_DARK );
+	}
+
+	private static byte parseKind( String name ) {
+		if ( name.equalsIgnoreCase( "RANDOM" ) )
+			return RANDOM;
+		for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+			if ( ActorKind.name( kind ).equalsIgnoreCase( name ) )
+				return kind;
+		}
+		throw new IllegalArgumentException( "Unknown actor kind: \"" + name + "\"" );
+	}
+
+	/** @param terrain where actors may stand in every battle built from now on, or null for open ground */
+	public void setTerrain( TerrainMask terrain ) {
+		this.terrain = terrain;
+	}
+
+	public int getLightCount() {
+		return total( lightCounts );
+	}
+
+	public int getDarkCount() {
+		return total( darkCounts );
+	}
+
+	private static int total( int[] counts ) {
+		int total = 0;
+		for ( int count : counts )
+			total += count;
+		return total;
+	}
+
+	/** Builds and populates a new battle: army 0 is the Forces of Light, army 1 the Forces of Darkness. */
+	public Battle build( long seed ) {
+		Battle battle = new Battle( WIDTH, HEIGHT );
+		battle.setSeed( seed );
+		battle.setTerrain( terrain );
+		ArmyState light = new ArmyState( "Forces of Light" );
+		ArmyState dark = new ArmyState( "Forces of Darkness" );
+		light.setSpawnCentre( LIGHT_CENTRE_X, LIGHT_CENTRE_Y );
+		dark.setSpawnCentre( DARK_CENTRE_X, DARK_CENTRE_Y );
+		battle.addArmy( light );
+		battle.addArmy( dark );
+		populate( light, lightKinds, lightCounts );
+		populate( dark, darkKinds, darkCounts );
+		return battle;
+	}
+
+	private static void populate( ArmyState army, byte[] kinds, int[] counts ) {
+		army.ensureCapacity( total( counts ) );
+		for ( int i = 0; i < kinds.length; ++i ) {
+			for ( int n = 0; n < counts[ i ]; ++n )
+				ActorRules.spawn( army, kinds[ i ] == RANDOM ? (byte) army.getRandom().nextInt( ActorKind.COUNT ) : kinds[ i ] );
+		}
+	}
+
+	@Override
+	public String toString() {
+		return describe( lightKinds, lightCounts ) + " vs " + describe( darkKinds, darkCounts );
+	}
+
+	private static String describe( byte[] kinds, int[] counts ) {
+		StringBuilder text = new StringBuilder();
+		for ( int i = 0; i < kinds.length; ++i ) {
+			if ( i > 0 )
+				text.append( ", " );
+			text.append( counts[ i ] ).append( ' ' ).append( kinds[ i ] == RANDOM ? "Random" : ActorKind.name( kinds[ i ] ) );
+		}
+		return text.toString();
+	}
+} // end class BattleSpec
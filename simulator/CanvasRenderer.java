@@ -0,0 +1,110 @@
+package simulator;
+
+import java.util.List;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import actor.Actor;
+import army.Army;
+import core.ActorKind;
+import core.ArmyState;
+
+/** Draws every actor of every army into one <i>Canvas</i> per frame, straight from the simulation state. Used instead of one scene-graph Node per
+ * actor when battles are too large for the scene graph: work is batched so the fill colour changes once per army (outline) and once per actor kind
+ * (body), not once per actor. Picking is done by hit-testing the simulation state through each army's spatial index. */
+public class CanvasRenderer {
+
+	private static final double OUTLINE_WIDTH = 2.0; // drawn in the army colour, standing in for the DropShadow used on Node avatars
+
+	// Body colour per core.ActorKind code: HOBBIT, WIZARD, ORC, ELF.
+	private static final Color[] KIND_FILL = { Color.BLUE, Color.LIGHTGREY, Color.OLIVEDRAB, Color.GOLD };
+
+	private final Canvas canvas;
+	private final double[] polygonX = new double[ 3 ]; // reused for every wizard
+	private final double[] polygonY = new double[ 3 ];
+
+	public CanvasRenderer( double width, double height ) {
+		canvas = new Canvas( width, height );
+	}
+
+	public Canvas getCanvas() {
+		return canvas;
+	}
+
+	public void setSize( double width, double height ) {
+		canvas.setWidth( width );
+		canvas.setHeight( height );
+	}
+
+	/** @param alpha fraction of a timestep since the latest tick, used to interpolate locations */
+	public void render( double alpha, List<Army> armies ) {
+		GraphicsContext graphics = canvas.getGraphicsContext2D();
+		graphics.clearRect( 0.0, 0.0, canvas.getWidth(), canvas.getHeight() );
+		for ( Army army : armies ) {
+			ArmyState state = army.getState();
+			graphics.setFill( army.getColor() );
+			for ( byte kind = 0; kind < ActorKind.COUNT; ++kind )
+				drawKind( graphics, state, kind, alpha, OUTLINE_WIDTH );
+		}
+		for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+			graphics.setFill( KIND_FILL[ kind ] );
+			for ( Army army : armies )
+				drawKind( graphics, army.getState(), kind, alpha, 0.0 );
+		}
+	}
+
+	// Draws every living actor of one kind, enlarged on each side by grow.
+	private void drawKind( GraphicsContext graphics, ArmyState state, byte kind, double alpha, double grow ) {
+		double offsetX = ActorKind.centreOffsetX( kind );
+		double offsetY = ActorKind.centreOffsetY( kind );
+		double halfWidth = ActorKind.halfWidth( kind );
+		double halfHeight = ActorKind.halfHeight( kind );
+		for ( int i = 0, n = state.liveCount(); i < n; ++i ) {
+			int slot = state.liveSlot( i );
+			if ( state.getKind( slot ) != kind || !state.isAlive( slot ) )
+				continue;
+			double scale = state.getStrength( slot ) / ActorKind.STRENGTH_SCALE_DIVISOR;
+			double centreX = state.getInterpolatedX( slot, alpha ) + offsetX;
+			double centreY = state.getInterpolatedY( slot, alpha ) + offsetY;
+			double width = halfWidth * scale + grow;
+			double height = halfHeight * scale + grow;
+			switch ( kind ) {
+			case ActorKind.ORC:
+				graphics.fillOval( centreX - width, centreY - height, width * 2.0, height * 2.0 );
+				break;
+			case ActorKind.WIZARD:
+				polygonX[ 0 ] = centreX - width;
+				polygonY[ 0 ] = centreY + height;
+				polygonX[ 1 ] = centreX + width;
+				polygonY[ 1 ] = centreY + height;
+				polygonX[ 2 ] = centreX;
+				polygonY[ 2 ] = centreY - height;
+				graphics.fillPolygon( polygonX, polygonY, 3 );
+				break;
+			default:
+				graphics.fillRect( centreX - width, centreY - height, width * 2.0, height * 2.0 );
+				break;
+			}
+		}
+	}
+
+	/** Hit-tests the simulation state: finds the nearest actor of each army to the point and keeps it if the point lies inside its scaled bounds.
+	 *
+	 * @return the living Actor drawn under (x, y), or null */
+	public Actor pick( double x, double y, List<Army> armies ) {
+		for ( Army army : armies ) {
+			ArmyState state = army.getState();
+			int slot = state.findNearest( x, y );
+			if ( slot < 0 || !state.isAlive( slot ) )
+				continue;
+			byte kind = state.getKind( slot );
+			double scale = state.getStrength( slot ) / ActorKind.STRENGTH_SCALE_DIVISOR;
+			double dx = Math.abs( x - ( state.getX( slot ) + ActorKind.centreOffsetX( kind ) ) );
+			double dy = Math.abs( y - ( state.getY( slot ) + ActorKind.centreOffsetY( kind ) ) );
+			if ( dx <= ActorKind.halfWidth( kind ) * scale && dy <= ActorKind.halfHeight( kind ) * scale )
+				return army.getActor( slot );
+		}
+		return null;
+	}
+} // end class CanvasRenderer
@@ -1,19 +1,35 @@
 package simulator;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.*;
 import javafx.scene.*;
 import javafx.scene.control.*;
 import javafx.scene.image.*;
 import javafx.scene.layout.*;
-import javafx.scene.media.AudioClip;
 import javafx.stage.*;
+import core.ActorKind;
+import core.Battle;
+import core.RosterWriter;
+import core.TerrainMask;
+import util.InputGUI;
 
 /** Entry point to program execution for the JavaFX enabled version of the <i>Hobbit Battlefield Simulator</i>. Adds the scenegraph to the Stage
  * (a.k.a. window). The scenegraph will have a VBox to organize the menu at the top and the battleFieldDisplaySurface below. The
  * battleFieldDisplaySurface will have an ImageView object in the background and the simulator on top (and the simulator is setup as a StackPane).
+ *
+ * The window is shown as soon as the scene graph exists: the background image, the terrain and the music are decoded on background threads and
+ * appear when they are ready, and the army list and table windows are only built when first opened. The time from JVM start to the first frame is
+ * kept in the Metrics, which the overlay shows.
  * 
  * @author woollar */
 public class FXLauncher extends Application {
@@ -21,8 +37,17 @@ public class FXLauncher extends Application {
     private Scene mainScene;
     private VBox sceneGraphRoot;
     private Stage mainStage;
-	final String audioFile = new File("src/snd/guiletheme.m4a").toURI().toString();
-	AudioClip myClip = new AudioClip( audioFile );
+    private ProgressBar populateProgressBar; // shown over the battlefield while a populate is publishing Actors
+    private MetricsOverlay metricsOverlay; // shown over the battlefield from the Run menu
+    private static final FileChooser.ExtensionFilter SNAPSHOT_FILES = new FileChooser.ExtensionFilter( "Battle Snapshot", "*.battle" );
+    private static final FileChooser.ExtensionFilter REPLAY_FILES = new FileChooser.ExtensionFilter( "Battle Replay", "*.replay" );
+    private static final FileChooser.ExtensionFilter SCENARIO_FILES = new FileChooser.ExtensionFilter( "Battle Scenario", "*.scenario" );
+    private static final FileChooser.ExtensionFilter ROSTER_CSV_FILES = new FileChooser.ExtensionFilter( "Roster (CSV)", "*.csv" );
+    private static final FileChooser.ExtensionFilter ROSTER_BINARY_FILES = new FileChooser.ExtensionFilter( "Roster (Binary)", "*.roster" );
+    private static final String AUDIO_FILE = "src/snd/guiletheme.m4a";
+    private static final String BACKGROUND_FILE = "src/img/MiddleEarth-3.jpg";
+    private static final String SCENARIO_FILE = "src/scenarios/default.scenario"; // what Run > Populate adds
+	MusicClip myClip = new MusicClip( AUDIO_FILE ); // loaded in the background by start()
 
     /** Called before the window is shown. The method is used to construct all visual elements before revealing the window.
      * 
@@ -34,8 +59,21 @@ public class FXLauncher extends Application {
 	sceneGraphRoot = new VBox();
 	mainScene = new Scene( sceneGraphRoot, sceneWidth, sceneHeight );
 	simulator = new Simulator( primaryStage );
+	simulator.setBattlefieldSize( sceneWidth, sceneHeight );
+	InvalidationListener resizeBattlefield = new InvalidationListener() {
+	    @Override
+	    public void invalidated( Observable observable ) {
+		simulator.setBattlefieldSize( mainScene.getWidth(), mainScene.getHeight() );
+	    }
+	};
+	mainScene.widthProperty().addListener( resizeBattlefield );
+	mainScene.heightProperty().addListener( resizeBattlefield );
 	mainStage = primaryStage;
-	Group battleFieldDisplaySurface = new Group( buildBackground(),  simulator );
+	populateProgressBar = ProgressBarBuilder.create().layoutX( 10.0 ).layoutY( 10.0 ).prefWidth( 200.0 ).visible( false ).build();
+	metricsOverlay = new MetricsOverlay( simulator.getMetrics() );
+	metricsOverlay.setLayoutX( 10.0 );
+	metricsOverlay.setLayoutY( 40.0 );
+	Group battleFieldDisplaySurface = new Group( buildBackground(),  simulator, populateProgressBar, metricsOverlay );
 	sceneGraphRoot.getChildren().addAll( buildMenus(), battleFieldDisplaySurface );
 
 	primaryStage.setScene( mainScene );
@@ -49,17 +87,95 @@ public class FXLauncher extends Application {
 					 // object.
 
 		/* File menu */
-		// MenuItem saveSerialize = MenuItemBuilder.create().text("Save").build();
-		// MenuItem loadDeserialize = MenuItemBuilder.create().text("Load").build();
+		MenuItem saveSnapshot = MenuItemBuilder.create().text( "Save" ).build();
+		MenuItem loadSnapshot = MenuItemBuilder.create().text( "Load" ).build();
+		MenuItem openScenario = MenuItemBuilder.create().text( "Populate from Scenario" ).build();
 		MenuItem close = MenuItemBuilder.create().text( "Close" ).build();
 		MenuItem resetSpeed = MenuItemBuilder.create().text( "Reset Speed" ).build();
 		MenuItem stopMusic = MenuItemBuilder.create().text( "Stop Music" ).build();
+		final CheckMenuItem recordReplay = CheckMenuItemBuilder.create().text( "Record Replay" ).selected( false ).build();
+		MenuItem playReplay = MenuItemBuilder.create().text( "Play Replay" ).build();
+		MenuItem stopReplay = MenuItemBuilder.create().text( "Stop Replay" ).build();
 
-		// saveSerialize.setOnAction( new EventHandler<ActionEvent>() {@Override public void handle(ActionEvent t) {}} );
-		// loadDeserialize.setOnAction( new EventHandler<ActionEvent>() {@Override public void handle(ActionEvent t) {}} );
+		saveSnapshot.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				File file = buildFileChooser( "Save Battle", SNAPSHOT_FILES ).showSaveDialog( mainStage );
+				if ( file == null )
+					return;
+				try {
+					simulator.save( file );
+				} catch ( IOException e ) {
+					InputGUI.showMessageGUI( "Could not save " + file + ": " + e.getMessage() );
+				}
+			}
+		} );
+		loadSnapshot.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				File file = buildFileChooser( "Load Battle", SNAPSHOT_FILES ).showOpenDialog( mainStage );
+				if ( file == null )
+					return;
+				try {
+					simulator.load( file );
+					myClip.stop(); // the loaded battle starts suspended
+				} catch ( IOException e ) {
+					InputGUI.showMessageGUI( "Could not load " + file + ": " + e.getMessage() );
+				}
+			}
+		} );
+		openScenario.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				File file = buildFileChooser( "Populate from Scenario", SCENARIO_FILES ).showOpenDialog( mainStage );
+				if ( file != null )
+					populate( file );
+			}
+		} );
+		recordReplay.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				try {
+					if ( !recordReplay.isSelected() ) {
+						simulator.stopRecording();
+						return;
+					}
+					File file = buildFileChooser( "Record Replay", REPLAY_FILES ).showSaveDialog( mainStage );
+					if ( file != null )
+						simulator.startRecording( file );
+				} catch ( IOException e ) {
+					InputGUI.showMessageGUI( "Could not record the replay: " + e.getMessage() );
+				}
+				recordReplay.setSelected( simulator.isRecording() );
+			}
+		} );
+		playReplay.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				File file = buildFileChooser( "Play Replay", REPLAY_FILES ).showOpenDialog( mainStage );
+				if ( file == null )
+					return;
+				try {
+					simulator.replay( file );
+				} catch ( IOException e ) {
+					InputGUI.showMessageGUI( "Could not play " + file + ": " + e.getMessage() );
+				}
+			}
+		} );
+		stopReplay.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				simulator.stopReplay();
+			}
+		} );
 		close.setOnAction( new EventHandler<ActionEvent>() {
 			@Override
 			public void handle( ActionEvent t ) {
+				try {
+					simulator.stopRecording(); // flush the frames still waiting for the disk
+				} catch ( IOException e ) {
+					System.err.println( "Could not finish the replay: " + e.getMessage() );
+				}
 				mainStage.close();
 			}
 		} );
@@ -73,7 +189,7 @@ public class FXLauncher extends Application {
 					myClip.play( 30.0 );
 				}
 				simulator.resetSpeed();
-				;
+				showSpeed();
 			}
 		} );
 
@@ -86,7 +202,7 @@ public class FXLauncher extends Application {
 			}
 		} );
 
-		Menu fileMenu = MenuBuilder.create().text( "File" ).items( resetSpeed, stopMusic, close ).build();
+		Menu fileMenu = MenuBuilder.create().text( "File" ).items( saveSnapshot, loadSnapshot, openScenario, recordReplay, playReplay, stopReplay, resetSpeed, stopMusic, close ).build();
 
 		// **********************************************************************************************************
 		// START BUILD RUN MENU
@@ -96,11 +212,15 @@ public class FXLauncher extends Application {
 		MenuItem runSuspendMenuItem = MenuItemBuilder.create().text( "Suspend" ).build();
 		MenuItem runIncreaseSpeedMenuItem = MenuItemBuilder.create().text( "Increase Speed" ).build();
 		MenuItem runDecreaseSpeedMenuItem = MenuItemBuilder.create().text( "Decrease Speed" ).build();
+		final CheckMenuItem runCanvasRenderingMenuItem = CheckMenuItemBuilder.create().text( "Canvas Rendering (Large Battles)" ).selected( false ).build();
+		final CheckMenuItem runParallelTickMenuItem = CheckMenuItemBuilder.create().text( "Parallel Tick" ).selected( false ).build();
+		final CheckMenuItem runLinearSearchMenuItem = CheckMenuItemBuilder.create().text( "Linear Nearest Search (Reference)" ).selected( false ).build();
+		final CheckMenuItem runShowMetricsMenuItem = CheckMenuItemBuilder.create().text( "Show Metrics" ).selected( false ).build();
 
 		runPopulateMenuItem.setOnAction( new EventHandler<ActionEvent>() {
 			@Override
 			public void handle( ActionEvent t ) {
-				simulator.populate();
+				populate( new File( SCENARIO_FILE ) );
 			}
 		} );
 		runStartMenuItem.setOnAction( new EventHandler<ActionEvent>() {
@@ -121,8 +241,10 @@ public class FXLauncher extends Application {
 		runIncreaseSpeedMenuItem.setOnAction( new EventHandler<ActionEvent>() {
 			@Override
 			public void handle( ActionEvent t ) {
-				if ( simulator.isPopulated() )
+				if ( simulator.isPopulated() ) {
 					simulator.speedUp();
+					showSpeed();
+				}
 				if ( myClip.isPlaying() ) {
 					myClip.stop();
 					myClip.setRate( myClip.getRate() * 1.10 );
@@ -133,8 +255,10 @@ public class FXLauncher extends Application {
 		runDecreaseSpeedMenuItem.setOnAction( new EventHandler<ActionEvent>() {
 			@Override
 			public void handle( ActionEvent t ) {
-				if ( simulator.isPopulated() )
+				if ( simulator.isPopulated() ) {
 					simulator.slowDown();
+					showSpeed();
+				}
 				if ( myClip.isPlaying() ) {
 					myClip.stop();
 					myClip.setRate( myClip.getRate() * 0.90 );
@@ -142,42 +266,46 @@ public class FXLauncher extends Application {
 				}
 			}
 		} );
-		Menu runMenu = MenuBuilder.create().text( "Run" ).items( runPopulateMenuItem, runStartMenuItem, runSuspendMenuItem, runIncreaseSpeedMenuItem, runDecreaseSpeedMenuItem ).build();
+		runCanvasRenderingMenuItem.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				simulator.setRenderMode( runCanvasRenderingMenuItem.isSelected() ? Simulator.RenderMode.CANVAS : Simulator.RenderMode.NODES );
+			}
+		} );
+		runParallelTickMenuItem.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				simulator.setTickMode( runParallelTickMenuItem.isSelected() ? Battle.TickMode.PARALLEL : Battle.TickMode.SEQUENTIAL );
+			}
+		} );
+		runLinearSearchMenuItem.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				simulator.setSearchMode( runLinearSearchMenuItem.isSelected() ? Battle.SearchMode.LINEAR_SCAN : Battle.SearchMode.SPATIAL_GRID );
+			}
+		} );
+		runShowMetricsMenuItem.setOnAction( new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent t ) {
+				metricsOverlay.setShowing( runShowMetricsMenuItem.isSelected() );
+			}
+		} );
+		Menu runMenu = MenuBuilder.create().text( "Run" ).items( runPopulateMenuItem, runStartMenuItem, runSuspendMenuItem, runIncreaseSpeedMenuItem, runDecreaseSpeedMenuItem, runCanvasRenderingMenuItem, runParallelTickMenuItem, runLinearSearchMenuItem, runShowMetricsMenuItem ).build();
 	// END BUILD RUN MENU
 	// **********************************************************************************************************
 
 	// **********************************************************************************************************
 	// START BUILD PROPERTIES MENU
 	// Involves creating MenuItem objects: specify 1) Name 2) Action when selected
-	MenuItem propertiesDisplayLightArmyMenuItem = MenuItemBuilder.create().text( "Display Light Army (Console)" ).build();
-	propertiesDisplayLightArmyMenuItem.setOnAction( new EventHandler<ActionEvent>() {
-	    @Override
-	    public void handle( ActionEvent arg0 ) {
-		simulator.displayLightArmyToConsole();
-	    }
-	} );
+	// One item per army, filled in each time the Properties menu opens (see fillArmyMenu()).
+	final Menu propertiesDisplayArmyMenu = MenuBuilder.create().text( "Display Army (Console)" ).build();
+	final Menu propertiesEditArmyMenu = MenuBuilder.create().text( "Edit Army" ).build();
 
-	MenuItem propertiesEditLightArmyMenuItem = MenuItemBuilder.create().text( "Edit Light Army" ).build();
-	propertiesEditLightArmyMenuItem.setOnAction( new EventHandler<ActionEvent>() {
+	MenuItem propertiesDisplayFootprintMenuItem = MenuItemBuilder.create().text( "Display Memory Footprint (Console)" ).build();
+	propertiesDisplayFootprintMenuItem.setOnAction( new EventHandler<ActionEvent>() {
 	    @Override
 	    public void handle( ActionEvent arg0 ) {
-		simulator.editLightArmy();
-	    }
-	} );
-
-	MenuItem propertiesDisplayDarkArmyMenuItem = MenuItemBuilder.create().text( "Display Dark Army (Console)" ).build();
-	propertiesDisplayDarkArmyMenuItem.setOnAction( new EventHandler<ActionEvent>() {
-	    @Override
-	    public void handle( ActionEvent arg0 ) {
-		simulator.displayDarkArmyToConsole();
-	    }
-	} );
-
-	MenuItem propertiesEditDarkArmyMenuItem = MenuItemBuilder.create().text( "Edit Dark Army" ).build();
-	propertiesEditDarkArmyMenuItem.setOnAction( new EventHandler<ActionEvent>() {
-	    @Override
-	    public void handle( ActionEvent arg0 ) {
-		simulator.editDarkArmy();
+		simulator.displayMemoryFootprintToConsole();
 	    }
 	} );
 
@@ -213,11 +341,17 @@ public class FXLauncher extends Application {
 	    }
 	} );
 
-	Menu propertiesMenu = MenuBuilder
-			.create()
-			.text( "Properties" )
-			.items( propertiesDisplayLightArmyMenuItem, propertiesDisplayDarkArmyMenuItem, propertiesEditLightArmyMenuItem, propertiesEditDarkArmyMenuItem,
-					propertiesOpenArmyListsMenuItem, propertiesCloseArmyListsMenuItem, propertiesOpenArmyTablesMenuItem, propertiesCloseArmyTablesMenuItem ).build();
+	Menu propertiesMenu = MenuBuilder.create().text( "Properties" ).build();
+	propertiesMenu.getItems().addAll( propertiesDisplayArmyMenu, propertiesDisplayFootprintMenuItem, buildExportRosterMenu( propertiesMenu ), propertiesEditArmyMenu,
+			propertiesOpenArmyListsMenuItem, propertiesCloseArmyListsMenuItem, propertiesOpenArmyTablesMenuItem, propertiesCloseArmyTablesMenuItem );
+	propertiesMenu.addEventHandler( Menu.ON_SHOWING, new EventHandler<Event>() {
+	    @Override
+	    public void handle( Event event ) {
+		List<String> armyNames = simulator.getArmyNames();
+		fillArmyMenu( propertiesDisplayArmyMenu, armyNames, false );
+		fillArmyMenu( propertiesEditArmyMenu, armyNames, true );
+	    }
+	} );
 	// END BUILD PROPERTIES MENU
 	// **********************************************************************************************************
 
@@ -225,34 +359,201 @@ public class FXLauncher extends Application {
 	return menuBar;
     } // end buildMenus()
 
+    /** Replaces the items of a Display Army or Edit Army submenu with one for each army of the battle, which scenarios, snapshots and replays can
+     * add to at any time. */
+    private void fillArmyMenu( Menu menu, List<String> armyNames, final boolean edit ) {
+	menu.getItems().clear();
+	for ( int i = 0; i < armyNames.size(); ++i ) {
+	    final int index = i;
+	    MenuItem item = MenuItemBuilder.create().text( armyNames.get( i ) ).build();
+	    item.setOnAction( new EventHandler<ActionEvent>() {
+		@Override
+		public void handle( ActionEvent arg0 ) {
+		    if ( edit )
+			simulator.editArmy( index );
+		    else
+			simulator.displayArmyToConsole( index );
+		}
+	    } );
+	    menu.getItems().add( item );
+	}
+    } // end fillArmyMenu()
+
+    /** Export Roster submenu: which armies, kinds and actors to export, then the format to write them in (see core.RosterWriter). The army items
+     * are brought up to date whenever parent opens; an army keeps its choice, and one fielded since is included.
+     * 
+     * @return newly created Menu */
+    private Menu buildExportRosterMenu( Menu parent ) {
+	final List<CheckMenuItem> armies = new ArrayList<CheckMenuItem>(); // by battle index, the first items of the menu
+	final CheckMenuItem[] kinds = new CheckMenuItem[ ActorKind.COUNT ];
+	for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+	    kinds[ kind ] = CheckMenuItemBuilder.create().text( ActorKind.name( kind ) + "s" ).selected( true ).build();
+	}
+	final CheckMenuItem livingOnly = CheckMenuItemBuilder.create().text( "Living Only" ).selected( false ).build();
+	MenuItem exportCsv = MenuItemBuilder.create().text( "Export CSV..." ).build();
+	MenuItem exportBinary = MenuItemBuilder.create().text( "Export Binary..." ).build();
+
+	exportCsv.setOnAction( new EventHandler<ActionEvent>() {
+	    @Override
+	    public void handle( ActionEvent t ) {
+		exportRoster( RosterWriter.Format.CSV, armies, kinds, livingOnly.isSelected() );
+	    }
+	} );
+	exportBinary.setOnAction( new EventHandler<ActionEvent>() {
+	    @Override
+	    public void handle( ActionEvent t ) {
+		exportRoster( RosterWriter.Format.BINARY, armies, kinds, livingOnly.isSelected() );
+	    }
+	} );
+
+	final Menu exportRosterMenu = MenuBuilder.create().text( "Export Roster" ).items( new SeparatorMenuItem() ).build();
+	exportRosterMenu.getItems().addAll( kinds );
+	exportRosterMenu.getItems().addAll( livingOnly, new SeparatorMenuItem(), exportCsv, exportBinary );
+	parent.addEventHandler( Menu.ON_SHOWING, new EventHandler<Event>() {
+	    @Override
+	    public void handle( Event event ) {
+		List<String> armyNames = simulator.getArmyNames();
+		for ( int i = 0; i < armyNames.size(); ++i ) {
+		    if ( i < armies.size() )
+			armies.get( i ).setText( armyNames.get( i ) );
+		    else {
+			CheckMenuItem army = CheckMenuItemBuilder.create().text( armyNames.get( i ) ).selected( true ).build();
+			armies.add( army );
+			exportRosterMenu.getItems().add( i, army );
+		    }
+		}
+	    }
+	} );
+	return exportRosterMenu;
+    } // end buildExportRosterMenu()
+
+    /** Asks where to, then exports in the background; failures are reported once the task ends. */
+    private void exportRoster( RosterWriter.Format format, List<CheckMenuItem> armies, CheckMenuItem[] kinds, boolean livingOnly ) {
+	final File file = buildFileChooser( "Export Roster", format == RosterWriter.Format.CSV ? ROSTER_CSV_FILES : ROSTER_BINARY_FILES ).showSaveDialog( mainStage );
+	if ( file == null )
+	    return;
+	RosterWriter writer = new RosterWriter( format );
+	int kindMask = 0;
+	for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+	    if ( kinds[ kind ].isSelected() )
+		kindMask |= 1 << kind;
+	}
+	writer.setKindMask( kindMask );
+	writer.setLiveness( livingOnly ? RosterWriter.Liveness.ALIVE : RosterWriter.Liveness.ANY );
+	boolean[] included = new boolean[ armies.size() ];
+	for ( int i = 0; i < included.length; ++i )
+	    included[ i ] = armies.get( i ).isSelected();
+	final RosterExportTask task = simulator.exportRoster( file, writer, included );
+	task.setOnFailed( new EventHandler<WorkerStateEvent>() {
+	    @Override
+	    public void handle( WorkerStateEvent event ) {
+		InputGUI.showMessageGUI( "Could not export the roster to " + file + ": " + task.getException().getMessage() );
+	    }
+	} );
+    } // end exportRoster()
+
+    /** Shows the speed in the window title while it differs from real time, e.g. "Speed x64" while fast-forwarding. */
+    private void showSpeed() {
+	double speed = simulator.getSpeed();
+	if ( speed == 1.0 )
+	    mainStage.setTitle( "" );
+	else
+	    mainStage.setTitle( "Speed x" + ( speed > 1.0 ? String.valueOf( Math.round( speed ) ) : "1/" + Math.round( 1.0 / speed ) ) );
+    } // end showSpeed()
+
+    /** Populates from the scenario, showing its progress over the battlefield. */
+    private void populate( File scenario ) {
+	try {
+	    PopulateTask populateTask = simulator.populate( scenario );
+	    if ( populateTask != null ) {
+		populateProgressBar.progressProperty().bind( populateTask.progressProperty() );
+		populateProgressBar.visibleProperty().bind( populateTask.runningProperty() );
+	    }
+	} catch ( IOException e ) {
+	    InputGUI.showMessageGUI( "Could not populate from " + scenario + ": " + e.getMessage() );
+	}
+    } // end populate()
+
+    /** @return a FileChooser showing only the given kind of file */
+    private FileChooser buildFileChooser( String title, FileChooser.ExtensionFilter extensionFilter ) {
+	FileChooser fileChooser = new FileChooser();
+	fileChooser.setTitle( title );
+	fileChooser.getExtensionFilters().add( extensionFilter );
+	return fileChooser;
+    } // end buildFileChooser()
+
     /** Loads an image file from disk, then formats it for display in a JavaFX scenegraph
      * 
      * @return newly created ImageView object */
     private ImageView buildBackground() {
-	Image imageBackground = null;
-	final String filename = "src/img/MiddleEarth-3.jpg";
-	try {
-	    imageBackground = new Image( new FileInputStream( filename ) );
-	}
-	catch ( FileNotFoundException e1 ) {
-	    e1.printStackTrace();
-	    System.err.println( "Cannot find " + filename );
+	final File file = new File( BACKGROUND_FILE );
+	if ( !file.isFile() ) {
+	    System.err.println( "Cannot find " + BACKGROUND_FILE );
 	    System.exit( 0 );
 	}
+	// Decoded on JavaFX's own background thread, straight to the width of the scene rather than the full size of the map.
+	final Image imageBackground = new Image( file.toURI().toString(), mainScene.getWidth(), 0.0, true, true, true );
+	imageBackground.errorProperty().addListener( new InvalidationListener() {
+	    @Override
+	    public void invalidated( Observable observable ) {
+		System.err.println( "Cannot load " + BACKGROUND_FILE + ": " + imageBackground.getException() );
+	    }
+	} );
 
 	ImageView backgroundImageView = ImageViewBuilder.create().image( imageBackground ).preserveRatio( true ).build();
 	backgroundImageView.fitWidthProperty().bind( mainScene.widthProperty() );// resize automatically, based on the Simulator sizing
+	buildTerrain( file );
 	return backgroundImageView;
     } // end buildBackground()
-    
+
+    /** Keeps the actors on the walkable ground of the map: the terrain is laid over the battlefield the same way as the background image. Built
+     * on a background thread; until it is in, the whole battlefield is walkable. */
+    private void buildTerrain( final File file ) {
+	final Task<TerrainMask> task = new Task<TerrainMask>() {
+	    @Override
+	    protected TerrainMask call() throws Exception {
+		return TerrainMask.load( file );
+	    }
+	};
+	task.setOnSucceeded( new EventHandler<WorkerStateEvent>() {
+	    @Override
+	    public void handle( WorkerStateEvent event ) {
+		simulator.setTerrain( task.getValue() );
+	    }
+	} );
+	task.setOnFailed( new EventHandler<WorkerStateEvent>() {
+	    @Override
+	    public void handle( WorkerStateEvent event ) {
+		System.err.println( "Cannot build the terrain from " + file + ", the whole battlefield is walkable: " + task.getException().getMessage() );
+	    }
+	} );
+	Thread loader = new Thread( task, "Terrain loader" );
+	loader.setDaemon( true );
+	loader.start();
+    } // end buildTerrain()
+
     /** Effective entry point to a JavaFX program. */
     @Override
     public void start( Stage primaryStage ) throws Exception {
 	init( primaryStage ); // construct the elements of the JavaFX application.
-	primaryStage.show();// delay showing the window until all elements have been constructed.
+	myClip.load();
+	primaryStage.show();
+	reportFirstFrame();
     } // end start()
 
+    /** Times the first pulse after the window is shown, the one that draws its first frame, from the start of the JVM, into the Metrics. */
+    private void reportFirstFrame() {
+	new AnimationTimer() {
+	    @Override
+	    public void handle( long now ) {
+		stop();
+		long millis = ManagementFactory.getRuntimeMXBean().getUptime();
+		simulator.getMetrics().recordFirstFrame( millis );
+	    }
+	}.start();
+    } // end reportFirstFrame()
+
     public static void main( String[] args ) {
 	launch( args );
     }
-} // end class FXLauncher
\ No newline at end of file
+} // end class FXLauncher
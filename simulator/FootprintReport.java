@@ -0,0 +1,91 @@
+package simulator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+
+import javafx.scene.paint.Color;
+import actor.Actor;
+import army.Army;
+import core.ActorKind;
+import core.ActorTemplate;
+import core.ArmyState;
+import core.SpawnGroup;
+
+/** Memory footprint per actor type, printed to the console: what one Actor costs on its own, and what its avatar (Node rendering) and its table
+ * properties (an open Army table) add, next to the state columns every actor needs. The per-actor figures are measured by building a sample of
+ * each type in a throwaway Army and counting the bytes the thread allocated meanwhile, so they include short-lived garbage and are an upper bound
+ * on what each actor keeps. Building the sample advances the actor name counters. Application Thread only. */
+public class FootprintReport {
+
+	private static final int SAMPLE_SIZE = 500; // actors of each type, enough to amortize list growth and class loading
+	private static final int PROJECTED_ACTORS = 1000000;
+
+	private final Army[] armies;
+
+	public FootprintReport( Army... armies ) {
+		this.armies = armies;
+	}
+
+	public void print() {
+		StringBuilder text = new StringBuilder( "Memory footprint (bytes allocated per actor, an upper bound on what each keeps)\n" );
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if ( !( threads instanceof com.sun.management.ThreadMXBean ) || !( (com.sun.management.ThreadMXBean) threads ).isThreadAllocatedMemorySupported() ) {
+			text.append( "  per-actor figures unavailable: this JVM does not count allocated bytes per thread\n" );
+		} else {
+			com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+			ArmyState columns = new ArmyState( "Footprint columns" );
+			columns.ensureCapacity( SAMPLE_SIZE );
+			double bytesPerSlot = (double) columns.getColumnBytes() / columns.capacity();
+			text.append( String.format( Locale.ROOT, "  %-8s %10s %10s %12s%n", "Type", "Actor", "+avatar", "+properties" ) );
+			double largestActor = 0.0;
+			for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+				long[] perActor = sample( allocations, kind );
+				largestActor = Math.max( largestActor, perActor[ 0 ] );
+				text.append( String.format( Locale.ROOT, "  %-8s %10d %10d %12d%n", ActorKind.name( kind ), perActor[ 0 ], perActor[ 1 ], perActor[ 2 ] ) );
+			}
+			text.append( String.format( Locale.ROOT, "  state columns: %.0f bytes per slot%n", bytesPerSlot ) );
+			text.append( String.format( Locale.ROOT, "  %,d actors drawn on the Canvas, tables closed: at most %.0f MB%n", PROJECTED_ACTORS, PROJECTED_ACTORS
+					* ( largestActor + bytesPerSlot ) / ( 1024.0 * 1024.0 ) ) );
+		}
+		for ( Army army : armies ) {
+			int avatars = 0;
+			for ( int slot = 0, n = army.getState().size(); slot < n; ++slot ) {
+				if ( army.getActor( slot ).hasBattleFieldAvatar() )
+					++avatars;
+			}
+			ArmyState state = army.getState();
+			text.append( String.format( Locale.ROOT, "  %-18s %7d actors, %7d avatars, state columns %.1f KB for %d slots%n", army.getArmyName(), state.size(),
+					avatars, state.getColumnBytes() / 1024.0, state.capacity() ) );
+		}
+		Runtime runtime = Runtime.getRuntime();
+		text.append( String.format( Locale.ROOT, "  heap: %.1f MB used of %.1f MB (max %.1f MB)", ( runtime.totalMemory() - runtime.freeMemory() ) / ( 1024.0 * 1024.0 ),
+				runtime.totalMemory() / ( 1024.0 * 1024.0 ), runtime.maxMemory() / ( 1024.0 * 1024.0 ) ) );
+		System.out.println( text );
+	}
+
+	// Bytes per actor of the given kind for { the Actor, its avatar, its four properties }.
+	private static long[] sample( com.sun.management.ThreadMXBean allocations, byte kind ) {
+		long thread = Thread.currentThread().getId();
+		Army army = new Army( "Footprint sample", Color.GRAY );
+		SpawnGroup group = new SpawnGroup( ActorTemplate.forKind( kind ), SAMPLE_SIZE, 0.0, 0.0, SpawnGroup.DEFAULT_RANGE );
+		int firstSlot = army.getState().reserve( SAMPLE_SIZE ); // the columns are grown here, outside the measurement
+
+		long before = allocations.getThreadAllocatedBytes( thread );
+		List<Actor> actors = army.build( group, null, 0, SAMPLE_SIZE, firstSlot );
+		long built = allocations.getThreadAllocatedBytes( thread );
+		for ( Actor actor : actors ) {
+			actor.getBattleFieldAvatar();
+		}
+		long drawn = allocations.getThreadAllocatedBytes( thread );
+		for ( Actor actor : actors ) {
+			actor.nameProperty();
+			actor.healthProperty();
+			actor.strengthProperty();
+			actor.speedProperty();
+		}
+		long bound = allocations.getThreadAllocatedBytes( thread );
+		return new long[] { ( built - before ) / SAMPLE_SIZE, ( drawn - built ) / SAMPLE_SIZE, ( bound - drawn ) / SAMPLE_SIZE };
+	}
+} // end class FootprintReport
@@ -0,0 +1,243 @@
+package simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import core.ActorKind;
+import core.ArmyState;
+import core.Battle;
+import core.ScenarioReader;
+import core.TerrainMask;
+import util.RandomSource;
+
+/** Runs one battle from the command line with no display: builds both armies from a <i>BattleSpec</i> (or any number from a scenario), ticks the
+ * battle as fast as the CPU allows until no hostile armies are left facing each other or the tick limit is reached, then prints the outcome and the throughput. Uses only the headless core, so it runs
+ * without JavaFX on the classpath:
+ *
+ * <pre>
+ * java -cp &lt;classes&gt; simulator.HeadlessRunner [--light HOBBIT:4,ELF:10,WIZARD:5] [--dark ORC:17,WIZARD:2] [--ticks 216000] [--seed n]
+ *                                             [--parallel [--threads n]] [--map img/MiddleEarth-3.jpg]
+ * java -cp &lt;classes&gt; simulator.HeadlessRunner --scenario scenarios/skirmish.scenario [--ticks 216000] [--seed n] ...
+ * </pre> */
+public class HeadlessRunner {
+
+	/** An hour of battle time. */
+	public static final long DEFAULT_MAX_TICKS = Math.round( 3600.0 / Battle.FIXED_TIMESTEP );
+
+	/** How a battle ended. */
+	public static final class Outcome {
+		private final int winner;
+		private final boolean decided;
+		private final long ticks;
+		private final long actorUpdates;
+		private final int[] survivors;
+
+		private Outcome( int winner, boolean decided, long ticks, long actorUpdates, int[] survivors ) {
+			this.winner = winner;
+			this.decided = decided;
+			this.ticks = ticks;
+			this.actorUpdates = actorUpdates;
+			this.survivors = survivors;
+		}
+
+		/** @return index of the only army left standing, or -1 if the tick limit came first, the last actors fell together or allies stand together */
+		public int getWinner() {
+			return winner;
+		}
+
+		/** @return whether the battle was over (see Battle.isOver()) before the tick limit */
+		public boolean isDecided() {
+			return decided;
+		}
+
+		public long getTicks() {
+			return ticks;
+		}
+
+		/** @return actors advanced, summed over every tick */
+		public long getActorUpdates() {
+			return actorUpdates;
+		}
+
+		public int getSurvivors( int armyIndex ) {
+			return survivors[ armyIndex ];
+		}
+	}
+
+	/** Ticks the battle until it is over or maxTicks ticks have run. */
+	public static Outcome fight( Battle battle, long maxTicks ) {
+		long ticks = 0L;
+		long actorUpdates = 0L;
+		while ( ticks < maxTicks && !battle.isOver() ) {
+			for ( int i = 0; i < battle.getArmyCount(); ++i )
+				actorUpdates += battle.getArmy( i ).liveCount();
+			battle.step();
+			++ticks;
+		}
+		int[] survivors = new int[ battle.getArmyCount() ];
+		int standing = 0;
+		int winner = -1;
+		for ( int i = 0; i < survivors.length; ++i ) {
+			survivors[ i ] = battle.getArmy( i ).countAlive();
+			if ( survivors[ i ] > 0 ) {
+				++standing;
+				winner = i;
+			}
+		}
+		boolean decided = battle.isOver();
+		return new Outcome( decided && standing == 1 ? winner : -1, decided, ticks, actorUpdates, survivors );
+	}
+
+	public static void main( String[] args ) {
+		String light = BattleSpec.DEFAULT_LIGHT;
+		String dark = BattleSpec.DEFAULT_DARK;
+		long maxTicks = DEFAULT_MAX_TICKS;
+		long seed = RandomSource.nextSeed();
+		boolean parallel = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String map = null;
+		String scenario = null;
+		boolean composed = false; // --light or --dark given
+		BattleSpec spec;
+		try {
+			for ( int i = 0; i < args.length; ++i ) {
+				String option = args[ i ];
+				if ( option.equals( "--help" ) ) {
+					usage( null );
+					return;
+				}
+				if ( option.equals( "--parallel" ) ) {
+					parallel = true;
+					continue;
+				}
+				if ( i + 1 >= args.length )
+					throw new IllegalArgumentException( "Missing value after " + option );
+				String value = args[ ++i ];
+				if ( option.equals( "--light" ) )
+					light = value;
+				else if ( option.equals( "--dark" ) )
+					dark = value;
+				else if ( option.equals( "--ticks" ) )
+					maxTicks = Long.parseLong( value );
+				else if ( option.equals( "--seed" ) )
+					seed = Long.parseLong( value );
+				else if ( option.equals( "--threads" ) )
+					threads = Integer.parseInt( value );
+				else if ( option.equals( "--map" ) )
+					map = value;
+				else if ( option.equals( "--scenario" ) )
+					scenario = value;
+				else
+					throw new IllegalArgumentException( "Unknown option " + option );
+				if ( option.equals( "--light" ) || option.equals( "--dark" ) )
+					composed = true;
+			}
+			if ( scenario != null && composed )
+				throw new IllegalArgumentException( "--scenario replaces --light and --dark" );
+			spec = new BattleSpec( light, dark );
+		} catch ( IllegalArgumentException e ) { // NumberFormatException included
+			usage( e.getMessage() );
+			System.exit( 2 );
+			return;
+		}
+		TerrainMask terrain = null;
+		if ( map != null ) {
+			try {
+				terrain = TerrainMask.load( new File( map ) );
+			} catch ( IOException e ) {
+				System.err.println( "Cannot build the terrain from " + map + ": " + e.getMessage() );
+				System.exit( 1 );
+				return;
+			}
+			spec.setTerrain( terrain );
+		}
+
+		System.out.println( "Battle:  " + ( scenario != null ? scenario : spec.toString() ) + "  (seed " + seed + ", "
+				+ ( parallel ? "parallel on " + threads + " threads" : "sequential" ) + ( map != null ? ", terrain from " + map : "" ) + ")" );
+		long start = System.nanoTime();
+		Battle battle;
+		if ( scenario != null ) {
+			try {
+				battle = ScenarioReader.buildBattle( new File( scenario ), seed, terrain );
+			} catch ( IOException e ) {
+				System.err.println( "Cannot build the battle: " + e.getMessage() );
+				System.exit( 1 );
+				return;
+			}
+		} else
+			battle = spec.build( seed );
+		if ( parallel ) {
+			battle.setTickMode( Battle.TickMode.PARALLEL );
+			battle.setForkJoinPool( new ForkJoinPool( threads ) );
+		}
+		long built = System.nanoTime();
+		int actors = 0;
+		for ( int i = 0; i < battle.getArmyCount(); ++i )
+			actors += battle.getArmy( i ).size();
+		System.out.println( String.format( Locale.ROOT, "Built:   %d actors in %.1f ms", actors, ( built - start ) / 1.0e6 ) );
+		Outcome outcome = fight( battle, maxTicks );
+		double seconds = ( System.nanoTime() - built ) / 1.0e9;
+
+		String battleTime = String.format( Locale.ROOT, "%d ticks (%.1f s of battle time)", outcome.getTicks(), outcome.getTicks() * Battle.FIXED_TIMESTEP );
+		if ( outcome.getWinner() >= 0 )
+			System.out.println( "Result:  " + battle.getArmy( outcome.getWinner() ).getArmyName() + " win after " + battleTime );
+		else if ( outcome.isDecided() )
+			System.out.println( "Result:  " + describeStanding( battle, outcome ) + " after " + battleTime );
+		else
+			System.out.println( "Result:  undecided, tick limit reached after " + battleTime );
+		for ( int i = 0; i < battle.getArmyCount(); ++i )
+			System.out.println( "         " + describeSurvivors( battle.getArmy( i ) ) );
+		System.out.println( String.format( Locale.ROOT, "Speed:   %.3f s, %.0f ticks/s, %.0f actor-updates/s", seconds, outcome.getTicks() / seconds,
+				outcome.getActorUpdates() / seconds ) );
+	}
+
+	// Armies left standing together at the end of a battle with no single winner: "Forces of Light and Elves of Lorien win", or none.
+	private static String describeStanding( Battle battle, Outcome outcome ) {
+		StringBuilder text = new StringBuilder();
+		int standing = 0;
+		for ( int i = 0; i < battle.getArmyCount(); ++i ) {
+			if ( outcome.getSurvivors( i ) == 0 )
+				continue;
+			if ( standing++ > 0 )
+				text.append( " and " );
+			text.append( battle.getArmy( i ).getArmyName() );
+		}
+		if ( standing == 0 )
+			return battle.getArmyCount() == 2 ? "both armies destroyed" : "every army destroyed";
+		return text.append( " win" ).toString();
+	}
+
+	// "Forces of Light: 7 of 19 alive (3 Hobbit, 2 Elf, 2 Wizard)"
+	private static String describeSurvivors( ArmyState army ) {
+		int[] byKind = new int[ ActorKind.COUNT ];
+		for ( int i = 0, n = army.liveCount(); i < n; ++i ) {
+			int slot = army.liveSlot( i );
+			if ( army.isAlive( slot ) )
+				++byKind[ army.getKind( slot ) ];
+		}
+		StringBuilder text = new StringBuilder( army.getArmyName() ).append( ": " ).append( army.countAlive() ).append( " of " ).append( army.size() )
+				.append( " alive" );
+		String separator = " (";
+		for ( byte kind = 0; kind < ActorKind.COUNT; ++kind ) {
+			if ( byKind[ kind ] > 0 ) {
+				text.append( separator ).append( byKind[ kind ] ).append( ' ' ).append( ActorKind.name( kind ) );
+				separator = ", ";
+			}
+		}
+		return separator.equals( ", " ) ? text.append( ')' ).toString() : text.toString();
+	}
+
+	private static void usage( String problem ) {
+		if ( problem != null )
+			System.err.println( problem );
+		System.err.println( "Usage: simulator.HeadlessRunner [--light KIND:COUNT,...] [--dark KIND:COUNT,...] [--ticks n] [--seed n]" );
+		System.err.println( "                                [--parallel [--threads n]] [--map image]" );
+		System.err.println( "       simulator.HeadlessRunner --scenario file [--ticks n] [--seed n] [--parallel [--threads n]] [--map image]" );
+		System.err.println( "  KIND is Hobbit, Wizard, Orc, Elf or Random; defaults: --light " + BattleSpec.DEFAULT_LIGHT + " --dark " + BattleSpec.DEFAULT_DARK );
+		System.err.println( "  --ticks  stop after this many ticks if no army has been wiped out (default " + DEFAULT_MAX_TICKS + ", an hour of battle time)" );
+		System.err.println( "  --map    keep actors to the walkable ground of a map image (or its -walkable.png mask)" );
+		System.err.println( "  --scenario  build the battle from a scenario file (see core.ScenarioReader) instead of --light and --dark" );
+	}
+} // end class HeadlessRunner
@@ -0,0 +1,338 @@
+package simulator;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import core.ArmyState;
+import core.Battle;
+
+/** Where the frame time of a running battle goes: tick duration, nearest-opponent queries and contact checks per tick, actions started, living actors
+ * per army, render duration and how late each JavaFX pulse arrives. The <i>BattleClock</i> records into it as it runs; it is read by the JMX MBean
+ * (register()) and by the on-screen <i>MetricsOverlay</i>.
+ *
+ * Recording only ever increments or compares-and-sets atomics in arrays sized up front, so it takes no lock, allocates nothing and can stay on under
+ * full load. Readers see each value exactly, but values read together may be a record or two apart. */
+public class Metrics implements MetricsMBean {
+
+	public static final String OBJECT_NAME = "simulator:type=Metrics";
+
+	/** Armies beyond this many are not given an alive gauge. */
+	public static final int MAX_ARMIES = 16;
+
+	/** Milliseconds from the start of the JVM within which the window should have drawn its first frame. */
+	public static final long FIRST_FRAME_BUDGET = 2000L;
+
+	private static final long PULSE_PERIOD = 1000000000L / 60; // nanoseconds between JavaFX pulses at their nominal 60 Hz
+	private static final double NANOS_PER_MILLI = 1.0e6;
+
+	private final Histogram tickDuration = new Histogram(); // nanoseconds
+	private final Histogram nearestQueries = new Histogram(); // per tick
+	private final Histogram contactChecks = new Histogram(); // per tick
+	private final Histogram pulseLag = new Histogram(); // nanoseconds past PULSE_PERIOD
+	private final Histogram renderDuration = new Histogram(); // nanoseconds
+	private final Counter actionsStarted = new Counter();
+	private final AtomicLongArray alive = new AtomicLongArray( MAX_ARMIES );
+	private final AtomicReferenceArray<String> armyNames = new AtomicReferenceArray<String>( MAX_ARMIES );
+	private volatile int armyCount;
+	private volatile long timeToFirstFrame = -1L; // milliseconds, -1 until recorded
+
+	/** Publishes these metrics on the platform MBean server, replacing any published earlier; failure is reported but not fatal. */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName( OBJECT_NAME );
+			if ( server.isRegistered( name ) )
+				server.unregisterMBean( name );
+			server.registerMBean( this, name );
+		} catch ( JMException e ) {
+			System.err.println( "Cannot publish the metrics over JMX: " + e.getMessage() );
+		}
+	}
+
+	/*******************************************************/
+	//-----------------------RECORDING---------------------//
+
+	/** Called after each tick of the battle with how long it took. */
+	public void recordTick( Battle battle, long nanos ) {
+		tickDuration.record( nanos );
+		int decisions = battle.getDecisionsInLastTick();
+		nearestQueries.record( decisions );
+		actionsStarted.add( decisions );
+		contactChecks.record( battle.getContacts().getCandidateCount() );
+		int count = Math.min( battle.getArmyCount(), MAX_ARMIES );
+		for ( int i = 0; i < count; ++i ) {
+			ArmyState army = battle.getArmy( i );
+			alive.set( i, army.liveCount() );
+			if ( armyNames.get( i ) != army.getArmyName() )
+				armyNames.set( i, army.getArmyName() );
+		}
+		armyCount = count;
+	}
+
+	/** @param interval nanoseconds since the previous pulse */
+	public void recordPulse( long interval ) {
+		pulseLag.record( interval - PULSE_PERIOD );
+	}
+
+	public void recordRender( long nanos ) {
+		renderDuration.record( nanos );
+	}
+
+	/** @param millis from the start of the JVM to the first frame of the window */
+	public void recordFirstFrame( long millis ) {
+		timeToFirstFrame = millis;
+	}
+
+	/*******************************************************/
+	//-------------------------READING---------------------//
+
+	public Histogram getTickDuration() {
+		return tickDuration;
+	}
+
+	public Histogram getNearestQueries() {
+		return nearestQueries;
+	}
+
+	public Histogram getContactChecks() {
+		return contactChecks;
+	}
+
+	public Histogram getPulseLag() {
+		return pulseLag;
+	}
+
+	public Histogram getRenderDuration() {
+		return renderDuration;
+	}
+
+	@Override
+	public long getTickCount() {
+		return tickDuration.getCount();
+	}
+
+	@Override
+	public double getTickMeanMillis() {
+		return tickDuration.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getTickP50Millis() {
+		return tickDuration.getPercentile( 0.50 ) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getTickP99Millis() {
+		return tickDuration.getPercentile( 0.99 ) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getTickMaxMillis() {
+		return tickDuration.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getNearestQueriesPerTickMean() {
+		return nearestQueries.getMean();
+	}
+
+	@Override
+	public long getNearestQueriesPerTickP99() {
+		return nearestQueries.getPercentile( 0.99 );
+	}
+
+	@Override
+	public long getNearestQueriesPerTickMax() {
+		return nearestQueries.getMax();
+	}
+
+	@Override
+	public double getContactChecksPerTickMean() {
+		return contactChecks.getMean();
+	}
+
+	@Override
+	public long getContactChecksPerTickP99() {
+		return contactChecks.getPercentile( 0.99 );
+	}
+
+	@Override
+	public long getContactChecksPerTickMax() {
+		return contactChecks.getMax();
+	}
+
+	@Override
+	public long getActionsStarted() {
+		return actionsStarted.get();
+	}
+
+	@Override
+	public String[] getArmyNames() {
+		String[] names = new String[ armyCount ];
+		for ( int i = 0; i < names.length; ++i )
+			names[ i ] = armyNames.get( i );
+		return names;
+	}
+
+	@Override
+	public long[] getAliveByArmy() {
+		long[] counts = new long[ armyCount ];
+		for ( int i = 0; i < counts.length; ++i )
+			counts[ i ] = alive.get( i );
+		return counts;
+	}
+
+	@Override
+	public long getPulseCount() {
+		return pulseLag.getCount();
+	}
+
+	@Override
+	public double getPulseLagMeanMillis() {
+		return pulseLag.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getPulseLagP99Millis() {
+		return pulseLag.getPercentile( 0.99 ) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getPulseLagMaxMillis() {
+		return pulseLag.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getRenderMeanMillis() {
+		return renderDuration.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getRenderP99Millis() {
+		return renderDuration.getPercentile( 0.99 ) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getTimeToFirstFrameMillis() {
+		return timeToFirstFrame;
+	}
+
+	/** Starts every counter and histogram afresh; the alive gauges keep their latest values. */
+	@Override
+	public void reset() {
+		tickDuration.reset();
+		nearestQueries.reset();
+		contactChecks.reset();
+		pulseLag.reset();
+		renderDuration.reset();
+		actionsStarted.reset();
+	}
+
+	/*******************************************************/
+	//------------------------COUNTER----------------------//
+
+	/** A running total. */
+	public static final class Counter {
+		private final AtomicLong total = new AtomicLong();
+
+		public void add( long amount ) {
+			total.addAndGet( amount );
+		}
+
+		public long get() {
+			return total.get();
+		}
+
+		public void reset() {
+			total.set( 0L );
+		}
+	}
+
+	/*******************************************************/
+	//-----------------------HISTOGRAM---------------------//
+
+	/** Distribution of non-negative values (negative ones count as 0) in log-linear buckets: 8 per power of two, so any value is placed within
+	 * 12.5% of itself whatever its magnitude, in a fixed 488 buckets. Keeps the count, sum and maximum exactly. */
+	public static final class Histogram {
+		private static final int SUB_BUCKET_BITS = 3;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		private static final int BUCKET_COUNT = ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKETS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_COUNT );
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		public void record( long value ) {
+			if ( value < 0L )
+				value = 0L;
+			buckets.incrementAndGet( bucketOf( value ) );
+			count.incrementAndGet();
+			sum.addAndGet( value );
+			long previous = max.get();
+			while ( value > previous && !max.compareAndSet( previous, value ) )
+				previous = max.get();
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public double getMean() {
+			long n = count.get();
+			return n == 0L ? 0.0 : (double) sum.get() / n;
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		/** @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+		 * @return upper bound of the bucket holding that percentile (never above the maximum), or 0 if nothing has been recorded */
+		public long getPercentile( double fraction ) {
+			long n = count.get();
+			if ( n == 0L )
+				return 0L;
+			long rank = Math.max( 1L, (long) Math.ceil( fraction * n ) );
+			long seen = 0L;
+			for ( int bucket = 0; bucket < BUCKET_COUNT; ++bucket ) {
+				seen += buckets.get( bucket );
+				if ( seen >= rank )
+					return Math.min( upperBound( bucket ), max.get() );
+			}
+			return max.get(); // records arrived while the buckets were being read
+		}
+
+		public void reset() {
+			for ( int bucket = 0; bucket < BUCKET_COUNT; ++bucket )
+				buckets.set( bucket, 0L );
+			count.set( 0L );
+			sum.set( 0L );
+			max.set( 0L );
+		}
+
+		// Values below SUB_BUCKETS have a bucket each; above that, the leading bit picks the power of two and the next SUB_BUCKET_BITS bits the
+		// sub-bucket, which carries on seamlessly from the exact buckets.
+		private static int bucketOf( long value ) {
+			if ( value < SUB_BUCKETS )
+				return (int) value;
+			int exponent = 63 - Long.numberOfLeadingZeros( value );
+			int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+			return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+		}
+
+		private static long upperBound( int bucket ) {
+			if ( bucket < SUB_BUCKETS )
+				return bucket;
+			int shift = bucket / SUB_BUCKETS - 1;
+			long lower = (long) ( SUB_BUCKETS + bucket % SUB_BUCKETS ) << shift;
+			return lower + ( 1L << shift ) - 1L;
+		}
+	}
+} // end class Metrics
@@ -0,0 +1,53 @@
+package simulator;
+
+/** Management interface of <i>Metrics</i>, published over JMX as Metrics.OBJECT_NAME (open it with jconsole or VisualVM). Durations are in
+ * milliseconds; percentiles are bucket upper bounds, within 12.5% of the true value. */
+public interface MetricsMBean {
+
+	long getTickCount();
+
+	double getTickMeanMillis();
+
+	double getTickP50Millis();
+
+	double getTickP99Millis();
+
+	double getTickMaxMillis();
+
+	double getNearestQueriesPerTickMean();
+
+	long getNearestQueriesPerTickP99();
+
+	long getNearestQueriesPerTickMax();
+
+	double getContactChecksPerTickMean();
+
+	long getContactChecksPerTickP99();
+
+	long getContactChecksPerTickMax();
+
+	/** @return actions started since the last reset; each replaces what used to be a new Transition per actor */
+	long getActionsStarted();
+
+	String[] getArmyNames();
+
+	/** @return living actors of each army after the latest tick, in getArmyNames() order */
+	long[] getAliveByArmy();
+
+	long getPulseCount();
+
+	double getPulseLagMeanMillis();
+
+	double getPulseLagP99Millis();
+
+	double getPulseLagMaxMillis();
+
+	double getRenderMeanMillis();
+
+	double getRenderP99Millis();
+
+	/** @return milliseconds from the start of the JVM to the first frame of the window, or -1 before it has been drawn */
+	long getTimeToFirstFrameMillis();
+
+	void reset();
+} // end interface MetricsMBean
@@ -0,0 +1,65 @@
+package simulator;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.animation.TimelineBuilder;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.control.Label;
+import javafx.util.Duration;
+
+/** On-screen readout of the <i>Metrics</i>, drawn over the battlefield. It reads the metrics twice a second, and only while it is showing, so it
+ * costs nothing when hidden and never competes with the battle for frame time. */
+public class MetricsOverlay extends Label {
+
+	private static final Duration REFRESH_INTERVAL = Duration.millis( 500.0 );
+
+	private final Metrics metrics;
+	private final Timeline refresh;
+
+	public MetricsOverlay( Metrics metrics ) {
+		this.metrics = metrics;
+		setStyle( "-fx-background-color: rgba(0, 0, 0, 0.6); -fx-text-fill: white; -fx-font-family: monospace; -fx-padding: 6;" );
+		setMouseTransparent( true );
+		setVisible( false );
+		refresh = TimelineBuilder.create().cycleCount( Animation.INDEFINITE ).keyFrames( new KeyFrame( REFRESH_INTERVAL, new EventHandler<ActionEvent>() {
+			@Override
+			public void handle( ActionEvent event ) {
+				update();
+			}
+		} ) ).build();
+	}
+
+	public void setShowing( boolean showing ) {
+		setVisible( showing );
+		if ( showing ) {
+			update();
+			refresh.play();
+		} else
+			refresh.stop();
+	}
+
+	private void update() {
+		StringBuilder text = new StringBuilder();
+		text.append( String.format( "tick      %8.3f ms mean %8.3f p99 %8.3f max  (%d ticks)%n", metrics.getTickMeanMillis(), metrics.getTickP99Millis(),
+				metrics.getTickMaxMillis(), metrics.getTickCount() ) );
+		text.append( String.format( "render    %8.3f ms mean %8.3f p99%n", metrics.getRenderMeanMillis(), metrics.getRenderP99Millis() ) );
+		text.append( String.format( "pulse lag %8.3f ms mean %8.3f p99 %8.3f max%n", metrics.getPulseLagMeanMillis(), metrics.getPulseLagP99Millis(),
+				metrics.getPulseLagMaxMillis() ) );
+		text.append( String.format( "nearest   %10.1f /tick mean %8d max%n", metrics.getNearestQueriesPerTickMean(), metrics.getNearestQueriesPerTickMax() ) );
+		text.append( String.format( "contacts  %10.1f checks/tick mean %8d max%n", metrics.getContactChecksPerTickMean(), metrics.getContactChecksPerTickMax() ) );
+		text.append( String.format( "actions   %10d started%n", metrics.getActionsStarted() ) );
+		long firstFrame = metrics.getTimeToFirstFrameMillis();
+		if ( firstFrame < 0L )
+			text.append( "first frame   not yet drawn" );
+		else
+			text.append( String.format( "first frame %8d ms%s", firstFrame, firstFrame > Metrics.FIRST_FRAME_BUDGET ? ", over the "
+					+ Metrics.FIRST_FRAME_BUDGET + " ms budget" : "" ) );
+		String[] names = metrics.getArmyNames();
+		long[] alive = metrics.getAliveByArmy();
+		for ( int i = 0; i < Math.min( names.length, alive.length ); ++i )
+			text.append( String.format( "%n%-18s %8d alive", names[ i ], alive[ i ] ) );
+		setText( text.toString() );
+	}
+} // end class MetricsOverlay
@@ -0,0 +1,310 @@
+package simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import core.Battle;
+import core.TerrainMask;
+import util.RandomSource;
+
+/** Estimates how a composition fares by fighting it many times over: thousands of independent headless battles, run concurrently on every core.
+ * Each battle is ticked SEQUENTIAL on one thread and gets its own seed, derived from the run's seed and the battle's number, so the estimates depend
+ * only on the seed and never on the number of threads. Results are tallied in battle order, a batch at a time, and the running estimates (win rates,
+ * mean survivors and battle length, with 95% confidence intervals) are reported as each batch completes:
+ *
+ * <pre>
+ * java -cp &lt;classes&gt; simulator.MonteCarloRunner [--light HOBBIT:4,ELF:10,WIZARD:5] [--dark ORC:17,WIZARD:2] [--battles 10000] [--batch 500]
+ *                                                [--ticks 216000] [--seed n] [--threads n] [--map img/MiddleEarth-3.jpg]
+ * </pre> */
+public class MonteCarloRunner {
+
+	public static final int DEFAULT_BATTLES = 10000;
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	private static final double Z_95 = 1.959964; // standard normal quantile for a two-sided 95% interval
+
+	/** Told about the estimates every time a batch of battles has been tallied, on the thread that called run(). */
+	public interface Listener {
+		void batchCompleted( Tally tally );
+	}
+
+	private final BattleSpec spec;
+	private final long maxTicks;
+	private final long seed;
+	private final int threads;
+
+	public MonteCarloRunner( BattleSpec spec, long maxTicks, long seed, int threads ) {
+		this.spec = spec;
+		this.maxTicks = maxTicks;
+		this.seed = seed;
+		this.threads = threads;
+	}
+
+	/** @return seed of the numbered battle: the same run seed always gives the same battles */
+	public long battleSeed( int battle ) {
+		return RandomSource.stream( seed, battle ).nextLong();
+	}
+
+	/** Fights the battles and returns the final tally; the listener (or null) hears about each batch as it completes. */
+	public Tally run( int battles, int batchSize, Listener listener ) throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public synchronized Thread newThread( Runnable runnable ) {
+				Thread thread = new Thread( runnable, "Monte Carlo " + ++count );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+		try {
+			List<Future<HeadlessRunner.Outcome>> outcomes = new ArrayList<Future<HeadlessRunner.Outcome>>( battles );
+			for ( int battle = 0; battle < battles; ++battle ) { // queue every battle so no core waits between batches
+				final long battleSeed = battleSeed( battle );
+				outcomes.add( pool.submit( new Callable<HeadlessRunner.Outcome>() {
+					@Override
+					public HeadlessRunner.Outcome call() {
+						return HeadlessRunner.fight( spec.build( battleSeed ), maxTicks );
+					}
+				} ) );
+			}
+			Tally tally = new Tally();
+			for ( int battle = 0; battle < battles; ++battle ) {
+				tally.add( outcomes.get( battle ).get() );
+				outcomes.set( battle, null ); // tallied: let it go
+				if ( listener != null && ( ( battle + 1 ) % batchSize == 0 || battle + 1 == battles ) )
+					listener.batchCompleted( tally );
+			}
+			return tally;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/*******************************************************/
+	//-------------------------TALLY-----------------------//
+
+	/** Running totals over the battles fought so far, for two armies: army 0 (light) and army 1 (dark). */
+	public static final class Tally {
+		private int battles;
+		private final int[] wins = new int[ 2 ];
+		private int undecided; // tick limit reached
+		private final Statistic[] survivors = { new Statistic(), new Statistic() };
+		private final Statistic ticks = new Statistic(); // of decided battles only: the limit says nothing about how long a battle lasts
+
+		void add( HeadlessRunner.Outcome outcome ) {
+			++battles;
+			if ( outcome.getWinner() >= 0 )
+				++wins[ outcome.getWinner() ];
+			if ( outcome.isDecided() )
+				ticks.add( outcome.getTicks() );
+			else
+				++undecided;
+			for ( int army = 0; army < 2; ++army )
+				survivors[ army ].add( outcome.getSurvivors( army ) );
+		}
+
+		public int getBattles() {
+			return battles;
+		}
+
+		/** @return share of battles the army won, with its 95% Wilson score interval as { estimate, low, high } */
+		public double[] getWinRate( int army ) {
+			return wilsonInterval( wins[ army ], battles );
+		}
+
+		/** @return share of battles in which both armies were destroyed together, with its 95% interval */
+		public double[] getDrawRate() {
+			return wilsonInterval( battles - wins[ 0 ] - wins[ 1 ] - undecided, battles );
+		}
+
+		/** @return share of battles still undecided at the tick limit, with its 95% interval */
+		public double[] getUndecidedRate() {
+			return wilsonInterval( undecided, battles );
+		}
+
+		/** Survivors of the army at the end of each battle (zero when it lost). */
+		public Statistic getSurvivors( int army ) {
+			return survivors[ army ];
+		}
+
+		/** Ticks fought, over the battles that ended before the tick limit. */
+		public Statistic getTicks() {
+			return ticks;
+		}
+
+		// Wilson rather than the normal approximation: stays inside [0, 1] and behaves when a side (nearly) always wins.
+		private static double[] wilsonInterval( int successes, int trials ) {
+			if ( trials == 0 )
+				return new double[] { 0.0, 0.0, 1.0 };
+			double p = (double) successes / trials;
+			double z2 = Z_95 * Z_95;
+			double denominator = 1.0 + z2 / trials;
+			double centre = ( p + z2 / ( 2.0 * trials ) ) / denominator;
+			double halfWidth = Z_95 * Math.sqrt( p * ( 1.0 - p ) / trials + z2 / ( 4.0 * trials * trials ) ) / denominator;
+			return new double[] { p, Math.max( 0.0, centre - halfWidth ), Math.min( 1.0, centre + halfWidth ) };
+		}
+	}
+
+	/** Mean and spread of a stream of values, updated one value at a time (Welford's method, so it stays accurate over any number of values). */
+	public static final class Statistic {
+		private long count;
+		private double mean;
+		private double sumOfSquares; // of differences from the mean
+
+		void add( double value ) {
+			++count;
+			double delta = value - mean;
+			mean += delta / count;
+			sumOfSquares += delta * ( value - mean );
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		public double getStandardDeviation() {
+			return count > 1 ? Math.sqrt( sumOfSquares / ( count - 1 ) ) : 0.0;
+		}
+
+		/** @return half the width of the 95% confidence interval of the mean */
+		public double getMargin() {
+			return count > 1 ? Z_95 * getStandardDeviation() / Math.sqrt( count ) : Double.NaN;
+		}
+	}
+
+	/*******************************************************/
+	//--------------------------MAIN-----------------------//
+
+	public static void main( String[] args ) {
+		String light = BattleSpec.DEFAULT_LIGHT;
+		String dark = BattleSpec.DEFAULT_DARK;
+		long maxTicks = HeadlessRunner.DEFAULT_MAX_TICKS;
+		long seed = RandomSource.nextSeed();
+		int battles = DEFAULT_BATTLES;
+		int batchSize = DEFAULT_BATCH_SIZE;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String map = null;
+		BattleSpec spec;
+		try {
+			for ( int i = 0; i < args.length; ++i ) {
+				String option = args[ i ];
+				if ( option.equals( "--help" ) ) {
+					usage( null );
+					return;
+				}
+				if ( i + 1 >= args.length )
+					throw new IllegalArgumentException( "Missing value after " + option );
+				String value = args[ ++i ];
+				if ( option.equals( "--light" ) )
+					light = value;
+				else if ( option.equals( "--dark" ) )
+					dark = value;
+				else if ( option.equals( "--battles" ) )
+					battles = Integer.parseInt( value );
+				else if ( option.equals( "--batch" ) )
+					batchSize = Integer.parseInt( value );
+				else if ( option.equals( "--ticks" ) )
+					maxTicks = Long.parseLong( value );
+				else if ( option.equals( "--seed" ) )
+					seed = Long.parseLong( value );
+				else if ( option.equals( "--threads" ) )
+					threads = Integer.parseInt( value );
+				else if ( option.equals( "--map" ) )
+					map = value;
+				else
+					throw new IllegalArgumentException( "Unknown option " + option );
+			}
+			if ( battles < 1 || batchSize < 1 || threads < 1 )
+				throw new IllegalArgumentException( "--battles, --batch and --threads must be at least 1" );
+			spec = new BattleSpec( light, dark );
+		} catch ( IllegalArgumentException e ) { // NumberFormatException included
+			usage( e.getMessage() );
+			System.exit( 2 );
+			return;
+		}
+		if ( map != null ) {
+			try {
+				spec.setTerrain( TerrainMask.load( new File( map ) ) );
+			} catch ( IOException e ) {
+				System.err.println( "Cannot build the terrain from " + map + ": " + e.getMessage() );
+				System.exit( 1 );
+				return;
+			}
+		}
+
+		System.out.println( "Battles: " + battles + " x " + spec + "  (seed " + seed + ", " + threads + " threads"
+				+ ( map != null ? ", terrain from " + map : "" ) + ")" );
+		final long start = System.nanoTime();
+		Tally tally;
+		try {
+			tally = new MonteCarloRunner( spec, maxTicks, seed, threads ).run( battles, batchSize, new Listener() {
+				@Override
+				public void batchCompleted( Tally tally ) {
+					System.out.println( describe( tally, start ) );
+				}
+			} );
+		} catch ( InterruptedException e ) {
+			System.err.println( "Interrupted" );
+			System.exit( 1 );
+			return;
+		} catch ( ExecutionException e ) {
+			System.err.println( "A battle failed: " + e.getCause() );
+			System.exit( 1 );
+			return;
+		}
+
+		System.out.println();
+		System.out.println( String.format( Locale.ROOT, "Forces of Light win     %s", describeRate( tally.getWinRate( 0 ) ) ) );
+		System.out.println( String.format( Locale.ROOT, "Forces of Darkness win  %s", describeRate( tally.getWinRate( 1 ) ) ) );
+		System.out.println( String.format( Locale.ROOT, "Both destroyed          %s", describeRate( tally.getDrawRate() ) ) );
+		System.out.println( String.format( Locale.ROOT, "Undecided at the limit  %s", describeRate( tally.getUndecidedRate() ) ) );
+		System.out.println( String.format( Locale.ROOT, "Light survivors         %s of %d", describeMean( tally.getSurvivors( 0 ), 1.0 ), spec.getLightCount() ) );
+		System.out.println( String.format( Locale.ROOT, "Dark survivors          %s of %d", describeMean( tally.getSurvivors( 1 ), 1.0 ), spec.getDarkCount() ) );
+		System.out.println( String.format( Locale.ROOT, "Battle length           %s s of battle time", describeMean( tally.getTicks(), Battle.FIXED_TIMESTEP ) ) );
+	}
+
+	// One line of running estimates.
+	private static String describe( Tally tally, long start ) {
+		double seconds = ( System.nanoTime() - start ) / 1.0e9;
+		return String.format( Locale.ROOT, "%7d battles  light wins %s  dark wins %s  length %s s  survivors %s / %s  (%.1f battles/s)", tally.getBattles(),
+				describeRate( tally.getWinRate( 0 ) ), describeRate( tally.getWinRate( 1 ) ), describeMean( tally.getTicks(), Battle.FIXED_TIMESTEP ),
+				describeMean( tally.getSurvivors( 0 ), 1.0 ), describeMean( tally.getSurvivors( 1 ), 1.0 ), tally.getBattles() / seconds );
+	}
+
+	// "62.3% [59.3, 65.2]"
+	private static String describeRate( double[] rate ) {
+		return String.format( Locale.ROOT, "%5.1f%% [%.1f, %.1f]", rate[ 0 ] * 100.0, rate[ 1 ] * 100.0, rate[ 2 ] * 100.0 );
+	}
+
+	// "75.2 +/-1.1", scaled by unit
+	private static String describeMean( Statistic statistic, double unit ) {
+		if ( statistic.getCount() == 0 )
+			return "-";
+		return String.format( Locale.ROOT, "%.1f +/-%.1f", statistic.getMean() * unit, statistic.getMargin() * unit );
+	}
+
+	private static void usage( String problem ) {
+		if ( problem != null )
+			System.err.println( problem );
+		System.err.println( "Usage: simulator.MonteCarloRunner [--light KIND:COUNT,...] [--dark KIND:COUNT,...] [--battles n] [--batch n]" );
+		System.err.println( "                                  [--ticks n] [--seed n] [--threads n] [--map image]" );
+		System.err.println( "  KIND is Hobbit, Wizard, Orc, Elf or Random; defaults: --light " + BattleSpec.DEFAULT_LIGHT + " --dark " + BattleSpec.DEFAULT_DARK );
+		System.err.println( "  --battles  battles to fight (default " + DEFAULT_BATTLES + "), reported every --batch battles (default " + DEFAULT_BATCH_SIZE + ")" );
+		System.err.println( "  --ticks    a battle still undecided after this many ticks counts as undecided (default " + HeadlessRunner.DEFAULT_MAX_TICKS + ")" );
+		System.err.println( "  --threads  battles fought at once (default: one per core)" );
+	}
+} // end class MonteCarloRunner
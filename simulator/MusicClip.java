@@ -0,0 +1,81 @@
+package simulator;
+
+import java.io.File;
+
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.EventHandler;
+import javafx.scene.media.AudioClip;
+
+/** The background music: an <i>AudioClip</i> decoded on a background thread, so the window need not wait for it. Until the clip has loaded, play(),
+ * stop() and setRate() are remembered and applied as soon as it arrives; isPlaying() and getRate() answer as if it were already there. Use on the
+ * JavaFX Application Thread only. */
+public class MusicClip {
+
+	private final String file;
+	private AudioClip clip; // null until loaded, or if it could not be
+	private boolean playing; // requested state while there is no clip yet
+	private double startVolume;
+	private double rate = 1.0;
+
+	public MusicClip( String file ) {
+		this.file = file;
+	}
+
+	/** Starts decoding the clip on a daemon thread. */
+	public void load() {
+		final Task<AudioClip> task = new Task<AudioClip>() {
+			@Override
+			protected AudioClip call() throws Exception {
+				return new AudioClip( new File( file ).toURI().toString() );
+			}
+		};
+		task.setOnSucceeded( new EventHandler<WorkerStateEvent>() {
+			@Override
+			public void handle( WorkerStateEvent event ) {
+				clip = task.getValue();
+				clip.setRate( rate );
+				if ( playing )
+					clip.play( startVolume );
+			}
+		} );
+		task.setOnFailed( new EventHandler<WorkerStateEvent>() {
+			@Override
+			public void handle( WorkerStateEvent event ) {
+				System.err.println( "Cannot load the music from " + file + ": " + task.getException() );
+			}
+		} );
+		Thread loader = new Thread( task, "Music loader" );
+		loader.setDaemon( true );
+		loader.start();
+	}
+
+	/** @param volume as for AudioClip.play( double ) */
+	public void play( double volume ) {
+		playing = true;
+		startVolume = volume;
+		if ( clip != null )
+			clip.play( volume );
+	}
+
+	public void stop() {
+		playing = false;
+		if ( clip != null )
+			clip.stop();
+	}
+
+	public boolean isPlaying() {
+		return clip != null ? clip.isPlaying() : playing;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	/** Takes effect from the next play(), as for AudioClip. */
+	public void setRate( double rate ) {
+		this.rate = rate;
+		if ( clip != null )
+			clip.setRate( rate );
+	}
+} // end class MusicClip
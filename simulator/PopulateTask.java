@@ -0,0 +1,140 @@
+package simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import actor.Actor;
+import actor.ActorFactory;
+import army.Army;
+import core.SpawnGroup;
+
+/** Populates armies without freezing the UI. Slots are reserved up front on the JavaFX Application Thread; the Actors and their avatars are then
+ * built in parallel, in batches, across the common ForkJoinPool, and each finished batch is handed back to the Application Thread with one
+ * Platform.runLater(): one addAll() per list, so the TableView, ListView and scene graph see one change per batch rather than one per Actor.
+ * Only one batch is waiting on the Application Thread at any time, so a single pulse never has more than BATCH_SIZE Actors to take in.
+ *
+ * Progress (Actors published so far) is reported through progressProperty() and messageProperty(). Not meant to be cancelled: the reserved slots
+ * are released only once the task has succeeded or failed. */
+public class PopulateTask extends Task<Void> {
+
+	public static final int BATCH_SIZE = 500;
+
+	private final Simulator simulator;
+	private final List<Batch> batches = new ArrayList<Batch>();
+	private final List<Army> armies = new ArrayList<Army>(); // every army with slots reserved by this task
+	private int total;
+
+	public PopulateTask( Simulator simulator ) {
+		this.simulator = simulator;
+	}
+
+	/** Queues the Actors of a spawn group for the army and reserves their slots. Call on the Application Thread, before the task starts. A group
+	 * costs one small Batch per BATCH_SIZE Actors, and a byte per Actor only if its kinds are random: those are settled here, in order, so the
+	 * same seed always builds the same army. */
+	public void add( Army army, SpawnGroup group ) {
+		int actorCount = group.getCount();
+		byte[] kinds = null;
+		if ( group.isRandom() ) {
+			kinds = new byte[ actorCount ];
+			for ( int i = 0; i < actorCount; ++i ) {
+				kinds[ i ] = ActorFactory.selectRandomKind( army );
+			}
+		}
+		int firstSlot = army.getState().reserve( actorCount );
+		for ( int from = 0; from < actorCount; from += BATCH_SIZE ) {
+			batches.add( new Batch( army, group, kinds, from, Math.min( from + BATCH_SIZE, actorCount ), firstSlot + from ) );
+		}
+		if ( !armies.contains( army ) )
+			armies.add( army );
+		total += actorCount;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	@Override
+	protected Void call() throws Exception {
+		List<Future<List<Actor>>> built = new ArrayList<Future<List<Actor>>>( batches.size() );
+		for ( Batch batch : batches ) {
+			built.add( ForkJoinPool.commonPool().submit( batch ) );
+		}
+		int published = 0;
+		updateProgress( published, total );
+		try {
+			for ( int i = 0; i < batches.size(); ++i ) {
+				final Army army = batches.get( i ).army;
+				final List<Actor> actors = built.get( i ).get();
+				final CountDownLatch publishedLatch = new CountDownLatch( 1 );
+				Platform.runLater( new Runnable() {
+					@Override
+					public void run() {
+						simulator.publish( army, actors );
+						publishedLatch.countDown();
+					}
+				} );
+				publishedLatch.await(); // hand over the next batch only once this one is in
+				published += actors.size();
+				updateProgress( published, total );
+				updateMessage( "Populated " + published + " of " + total );
+			}
+		} finally {
+			for ( Future<List<Actor>> future : built ) { // a failed batch: let the others finish before the reserved slots are released
+				try {
+					future.get();
+				} catch ( Exception e ) {
+					// already reported by the batch that is being propagated
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	protected void succeeded() {
+		simulator.populateFinished( this );
+	}
+
+	@Override
+	protected void failed() {
+		abandon();
+		simulator.populateFinished( this );
+	}
+
+	/** Releases every slot reserved by add(); for a task that failed, or that will not be started after all. */
+	void abandon() {
+		for ( Army army : armies ) {
+			army.getState().cancelReservation();
+		}
+	}
+
+	/** One batch of Actors of one spawn group, built on a pool thread. */
+	private static final class Batch implements Callable<List<Actor>> {
+		private final Army army;
+		private final SpawnGroup group;
+		private final byte[] kinds; // shared by every batch of a random group, null otherwise
+		private final int from;
+		private final int to;
+		private final int firstSlot;
+
+		Batch( Army army, SpawnGroup group, byte[] kinds, int from, int to, int firstSlot ) {
+			this.army = army;
+			this.group = group;
+			this.kinds = kinds;
+			this.from = from;
+			this.to = to;
+			this.firstSlot = firstSlot;
+		}
+
+		@Override
+		public List<Actor> call() {
+			return army.build( group, kinds, from, to, firstSlot );
+		}
+	}
+} // end class PopulateTask
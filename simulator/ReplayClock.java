@@ -0,0 +1,68 @@
+package simulator;
+
+import javafx.animation.AnimationTimer;
+import core.Battle;
+
+/** Drives a replay the way the <i>BattleClock</i> drives a live battle, but from a recording: once per JavaFX pulse it works out how many recorded
+ * ticks are due at the current playback speed, has the <i>Simulator</i> read that many frames (only the last of which is applied to the armies), and
+ * renders. Playback speed is free to change at any time; at 10x a pulse simply reads ten frames instead of one. */
+public class ReplayClock extends AnimationTimer {
+
+	private static final double MAX_FRAME_TIME = 0.25; // seconds; after a stall, drop time rather than read a long backlog of frames
+
+	private final Simulator simulator;
+	private long previousPulse; // nanoseconds, 0 until the first pulse after start()
+	private double accumulator; // recorded seconds owed to the replay
+	private double speed = 1.0;
+	private boolean running;
+
+	public ReplayClock( Simulator simulator ) {
+		this.simulator = simulator;
+	}
+
+	@Override
+	public void start() {
+		previousPulse = 0L;
+		accumulator = 0.0;
+		running = true;
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		super.stop();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public double getSpeed() {
+		return speed;
+	}
+
+	/** @param speed recorded seconds played per second, e.g. 2.0 for double speed */
+	public void setSpeed( double speed ) {
+		this.speed = speed;
+	}
+
+	@Override
+	public void handle( long now ) {
+		if ( previousPulse == 0L ) {
+			previousPulse = now;
+			return;
+		}
+		double frameTime = Math.min( ( now - previousPulse ) / 1.0e9, MAX_FRAME_TIME );
+		previousPulse = now;
+		accumulator += frameTime * speed;
+		int due = (int) ( accumulator / Battle.FIXED_TIMESTEP );
+		accumulator -= due * Battle.FIXED_TIMESTEP;
+		if ( due > 0 && !simulator.advanceReplay( due ) ) {
+			stop(); // reached the end of the recording
+			simulator.render( 1.0 );
+			return;
+		}
+		simulator.render( accumulator / Battle.FIXED_TIMESTEP );
+	}
+} // end class ReplayClock
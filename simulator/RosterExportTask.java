@@ -0,0 +1,35 @@
+package simulator;
+
+import java.io.File;
+import java.util.List;
+
+import javafx.concurrent.Task;
+import core.Roster;
+import core.RosterWriter;
+
+/** Writes rosters captured on the JavaFX Application Thread to a file on a background thread (see core.RosterWriter), so that exporting a large
+ * army neither blocks the UI nor stops the battle. The value is the number of actors written. */
+public class RosterExportTask extends Task<Long> {
+
+	private final File file;
+	private final RosterWriter writer;
+	private final List<Roster> rosters;
+
+	public RosterExportTask( File file, RosterWriter writer, List<Roster> rosters ) {
+		this.file = file;
+		this.writer = writer;
+		this.rosters = rosters;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	protected Long call() throws Exception {
+		updateMessage( "Exporting to " + file );
+		long written = writer.write( file, rosters );
+		updateMessage( "Exported " + written + " actors to " + file );
+		return written;
+	}
+} // end class RosterExportTask
@@ -1,8 +1,18 @@
 package simulator;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
+import javafx.collections.ObservableList;
+import javafx.event.EventHandler;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.control.LabelBuilder;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
@@ -11,31 +21,70 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.TextAlignment;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
-import table_list.Actor_Table_List;
+import javafx.stage.WindowEvent;
 import util.InputGUI;
-import actor.ActorFactory;
+import actor.Actor;
 import army.Army;
+import core.Battle;
+import core.BattleSnapshot;
+import core.ReplayReader;
+import core.ReplayRecorder;
+import core.Roster;
+import core.RosterWriter;
+import core.ScenarioReader;
+import core.SpawnGroup;
+import core.TerrainMask;
 
 public class Simulator extends StackPane implements Serializable {
+
+    /** NODES: one scene-graph Node per Actor (tooltips, effects). CANVAS: every Actor drawn into a single Canvas each frame, for massive armies. */
+    public enum RenderMode {
+	NODES, CANVAS
+    }
+
     /**
 	 * 
 	 */
     private static final long serialVersionUID = 6569177158645537576L;
+    private static final double SPEED_STEP = 2.0; // speedUp() and slowDown() double or halve the time scale (or the playback speed)
+    private static final double MIN_TIME_SCALE = 1.0 / 16.0;
+    private static final double MAX_TIME_SCALE = 1024.0; // ten minutes of battle in under a second, if the machine can tick that fast
+    private static final Color[] FACTION_COLOURS = { Color.GOLD, Color.DODGERBLUE, Color.SADDLEBROWN, Color.MEDIUMPURPLE }; // for factions with none
     private Army forcesOfLight;
     private Army forcesOfDarkness;
+    private final List<Army> armies = new ArrayList<Army>(); // every Army of the battle, by battle index: Light, Darkness, then any a scenario adds
+    private Battle battle; // headless state of every army, independent of the scene graph
+    private transient BattleClock battleClock; // single fixed-timestep loop that advances the battle and renders it
+    private transient CanvasRenderer canvasRenderer;
+    private transient Tooltip toolTip; // one tooltip for the whole battlefield, in either render mode, re-targeted at whichever Actor is under the mouse
+    private transient Actor actorUnderMouse;
+    private RenderMode renderMode = RenderMode.NODES;
     private transient Stage primaryStage;
     private transient Stage tableViewStage;
     private transient Stage stageListArmiesWindow;
     private boolean populated;
+    private transient PopulateTask populateTask; // the populate in progress, or null
+    private transient boolean resumeAfterPopulate; // the battle was running when the populate started
+    private transient ReplayRecorder recorder; // the replay file being recorded, or null
+    private transient ReplayReader replay; // the replay being played back instead of the battle, or null
+    private transient ReplayClock replayClock;
+    private transient Metrics metrics; // timings and counts of the running battle, also published over JMX
 
     public Simulator( Stage primaryStage ) {
 	forcesOfLight = new Army( "Forces of Light", Color.SPRINGGREEN );
 	forcesOfDarkness = new Army( "Forces of Darkness", Color.DARKRED );
-	forcesOfLight.setOpposingArmy( forcesOfDarkness );
-	forcesOfDarkness.setOpposingArmy( forcesOfLight );
-	this.primaryStage = primaryStage;
-	buildTableViewStage();
-	buildListViewWindow();
+	forcesOfLight.setSpawnCentre( 452.0, 150.0 );
+	forcesOfDarkness.setSpawnCentre( 690.0, 400.0 );
+	battle = new Battle( 0.0, 0.0 ); // sized by setBattlefieldSize() once the Scene exists
+	forcesOfLight.joinBattle( battle, armies );
+	forcesOfDarkness.joinBattle( battle, armies );
+	metrics = new Metrics();
+	metrics.register();
+	battleClock = new BattleClock( battle, this, metrics );
+	replayClock = new ReplayClock( this );
+	buildCanvasRenderer();
+	buildToolTip();
+	this.primaryStage = primaryStage; // the list and table windows are built when first opened
 	this.populated = false;
 
     } // end constructor
@@ -43,14 +92,13 @@ public class Simulator extends StackPane implements Serializable {
 	/*******************************************************/
 	//-----------------LIST VIEW WINDOW--------------------//
     
-    public final void buildListViewWindow() { // final because of its use in the constructor
-	VBox vBoxLightArmy = new VBox( 5.0 );
-	vBoxLightArmy.getChildren().addAll( LabelBuilder.create().text( forcesOfLight.getArmyName() ).textAlignment( TextAlignment.CENTER ).build(), forcesOfLight.getListViewOfActors() );
-	VBox vBoxDarkArmy = new VBox( 5.0 );
-	vBoxDarkArmy.getChildren().addAll( LabelBuilder.create().text( forcesOfDarkness.getArmyName() ).textAlignment( TextAlignment.CENTER ).build(), forcesOfDarkness.getListViewOfActors() );
+    public void buildListViewWindow() {
 	HBox hBoxSceneGraphRoot = new HBox( 5.0 );
-
-	hBoxSceneGraphRoot.getChildren().addAll( vBoxLightArmy, vBoxDarkArmy );
+	for ( Army army : armies ) {
+	    VBox vBoxArmy = new VBox( 5.0 );
+	    vBoxArmy.getChildren().addAll( LabelBuilder.create().text( army.getArmyName() ).textAlignment( TextAlignment.CENTER ).build(), army.getListViewOfActors() );
+	    hBoxSceneGraphRoot.getChildren().add( vBoxArmy );
+	}
 
 	if ( stageListArmiesWindow != null ) {
 	    stageListArmiesWindow.close();
@@ -64,15 +112,13 @@ public class Simulator extends StackPane implements Serializable {
 	//-----------------TABLE VIEW STAGE--------------------//
 
 
-	public final void buildTableViewStage() { // final because of its use in the constructor
-    Actor_Table_List.createTable();    
-	VBox vBoxLightArmy = new VBox( 5.0 );
-	vBoxLightArmy.getChildren().addAll( LabelBuilder.create().text( forcesOfLight.getArmyName() ).textAlignment( TextAlignment.CENTER ).build(), forcesOfLight.getTableViewOfActors() );
-	VBox vBoxDarkArmy = new VBox( 5.0 );
-	vBoxDarkArmy.getChildren().addAll( LabelBuilder.create().text( forcesOfDarkness.getArmyName() ).textAlignment( TextAlignment.CENTER ).build(), forcesOfDarkness.getTableViewOfActors() );
+	public void buildTableViewStage() {
 	HBox hBoxSceneGraphRoot = new HBox( 5.0 );
-
-	hBoxSceneGraphRoot.getChildren().addAll( vBoxLightArmy, vBoxDarkArmy );
+	for ( Army army : armies ) {
+	    VBox vBoxArmy = new VBox( 5.0 );
+	    vBoxArmy.getChildren().addAll( LabelBuilder.create().text( army.getArmyName() ).textAlignment( TextAlignment.CENTER ).build(), army.getTableViewOfActors() );
+	    hBoxSceneGraphRoot.getChildren().add( vBoxArmy );
+	}
 
 		if ( tableViewStage != null ) {
 			tableViewStage.close();
@@ -83,76 +129,484 @@ public class Simulator extends StackPane implements Serializable {
 		tableViewStage.setScene( new Scene( hBoxSceneGraphRoot ) );
 	} // END TABLE VIEW STAGE
 
-	public void populate() {
-		forcesOfLight.populate( ActorFactory.Type.HOBBIT, 4, getChildren() );
-		forcesOfLight.populate( ActorFactory.Type.ELF, 10, getChildren() );
-		forcesOfLight.populate( ActorFactory.Type.WIZARD, 5, getChildren() );
+	/** Adds the actors of a scenario (see core.ScenarioReader) to the armies, in the background (see PopulateTask). The scenario is read line by
+	 * line, each spawn queued as it is read; its first faction joins the Forces of Light, its second the Forces of Darkness, and any others an
+	 * army of their own (see fieldArmy()). Each faction's centre becomes its army's spawn centre, and once the whole scenario has been read its
+	 * alliances replace those of the battle. The battle pauses until every Actor has been published.
+	 * 
+	 * @return the running task, for its progress, or null if a populate is already under way
+	 * @throws IOException if the scenario cannot be read; no actors are added then */
+	public PopulateTask populate( File scenario ) throws IOException {
+		if ( populateTask != null )
+			return null;
+		final PopulateTask task = new PopulateTask( this );
+		final List<int[]> alliances = new ArrayList<int[]>();
+		stopReplay();
+		boolean wasRunning = battleClock.isRunning();
+		battleClock.stop(); // the reserved slots must not be ticked while they are being filled
+		try {
+			ScenarioReader.read( scenario, new ScenarioReader.Handler() {
+				@Override
+				public void battlefield( double width, double height ) {
+					// the battlefield on screen is the window's
+				}
 
-		forcesOfDarkness.populate( ActorFactory.Type.ORC, 17, getChildren() );
-		forcesOfDarkness.populate( ActorFactory.Type.WIZARD, 2, getChildren() );
-		setPopulated( true );
+				@Override
+				public void faction( int faction, String name, String colour, double centreX, double centreY ) throws IOException {
+					fieldArmy( faction, name, colour ).setSpawnCentre( centreX, centreY );
+				}
+
+				@Override
+				public void spawn( int faction, SpawnGroup group ) {
+					task.add( armies.get( faction ), group );
+				}
+
+				@Override
+				public void allies( int faction, int other ) {
+					alliances.add( new int[] { faction, other } );
+				}
+			} );
+		} catch ( IOException e ) {
+			task.abandon();
+			if ( wasRunning )
+				battleClock.start();
+			throw e;
+		}
+		battle.resetHostility();
+		for ( int[] pair : alliances )
+			battle.setHostile( pair[ 0 ], pair[ 1 ], false );
+		resumeAfterPopulate = wasRunning;
+		populateTask = task;
+		Thread worker = new Thread( populateTask, "Populate" );
+		worker.setDaemon( true );
+		worker.start();
+		return populateTask;
 	} // end populate()
 
-	public void displayLightArmyToConsole() {
-		forcesOfLight.display();
+	// The army fighting for the faction with the index: the Forces of Light and of Darkness for the first two, and for each further one an Army
+	// named and coloured after the faction the first time a scenario, snapshot or replay calls for it, kept (empty, if need be) from then on.
+	private Army fieldArmy( int index, String name, String colour ) throws IOException {
+		if ( index < armies.size() )
+			return armies.get( index );
+		Color color = FACTION_COLOURS[ index % FACTION_COLOURS.length ];
+		if ( colour != null ) {
+			try {
+				color = Color.web( colour );
+			} catch ( IllegalArgumentException e ) {
+				throw new IOException( "Faction " + name + " has no colour " + colour );
+			}
+		}
+		Army army = new Army( name, color );
+		army.joinBattle( battle, armies );
+		discardArmyWindows(); // they show one column per army
+		return army;
+	}
+
+	// Called by the PopulateTask for each finished batch. Avatars only join the scene graph when they are what gets drawn.
+	void publish( Army army, List<Actor> actors ) {
+		ObservableList<Node> observableList = ( renderMode == RenderMode.NODES ) ? getChildren() : null;
+		army.publish( actors, observableList );
+		setPopulated( true );
+		if ( renderMode == RenderMode.CANVAS && !battleClock.isRunning() )
+			render( 1.0 );
+	}
+
+	// Called by the PopulateTask once it has succeeded or failed.
+	void populateFinished( PopulateTask task ) {
+		if ( task != populateTask )
+			return;
+		populateTask = null;
+		if ( resumeAfterPopulate )
+			run();
+	}
+
+	/*******************************************************/
+	//---------------------SAVE AND LOAD-------------------//
+
+	/** Writes every army to a binary snapshot (see core.BattleSnapshot). */
+	public void save( File file ) throws IOException {
+		BattleSnapshot.write( battle, file );
+	}
+
+	/** Replaces every army with the contents of a snapshot, fielding more if it holds more and emptying any it does not hold, and makes the armies
+	 * allies or enemies as they were when saved. The battle is left suspended; new Actor views are built for the saved kinds and then given the
+	 * saved locations and attributes. */
+	public void load( File file ) throws IOException {
+		if ( populateTask != null )
+			throw new IOException( "Cannot load while the armies are being populated" );
+		BattleSnapshot snapshot = BattleSnapshot.read( file );
+		stopReplay();
+		suspend();
+		for ( int i = 0; i < snapshot.getArmyCount(); ++i )
+			fieldArmy( i, snapshot.getArmyName( i ), null );
+		int total = 0;
+		for ( int i = 0; i < armies.size(); ++i ) {
+			int size = i < snapshot.getArmyCount() ? snapshot.getSize( i ) : 0;
+			byte[] kinds = new byte[ size ];
+			for ( int slot = 0; slot < size; ++slot ) {
+				kinds[ slot ] = snapshot.getKind( i, slot );
+			}
+			rebuild( armies.get( i ), kinds );
+			if ( i < snapshot.getArmyCount() )
+				snapshot.applyTo( i, armies.get( i ).getState() );
+			total += size;
+		}
+		snapshot.applyHostility( battle );
+		snapshot.applySeedAndTickCount( battle );
+		setPopulated( total > 0 );
+		render( 1.0 );
+	}
+
+	// Replaces every Actor of the army with new ones of the given kinds, built and published in one go; the caller then overwrites their
+	// attributes and locations.
+	private void rebuild( Army army, byte[] kinds ) {
+		ObservableList<Node> observableList = ( renderMode == RenderMode.NODES ) ? getChildren() : null;
+		army.clear( observableList );
+		int firstSlot = army.getState().reserve( kinds.length );
+		army.publish( army.build( SpawnGroup.around( army.getState() ), kinds, 0, kinds.length, firstSlot ), observableList );
+	}
+
+	/*******************************************************/
+	//-------------------------REPLAY----------------------//
+
+	/** Records every tick of the battle from now on to a replay file (see core.ReplayRecorder), until stopRecording(). An army fielded meanwhile is
+	 * recorded from the tick it joins. */
+	public void startRecording( File file ) throws IOException {
+		stopRecording();
+		recorder = new ReplayRecorder( file, battle );
+		battle.setRecorder( recorder );
+	}
+
+	/** Finishes the replay file being recorded, if there is one. */
+	public void stopRecording() throws IOException {
+		if ( recorder == null )
+			return;
+		ReplayRecorder finished = recorder;
+		recorder = null;
+		battle.setRecorder( null );
+		finished.close();
+	}
+
+	public boolean isRecording() {
+		return recorder != null;
+	}
+
+	/** Plays a replay file back through the renderer instead of running the battle: the battle is suspended, the armies are rebuilt to match the
+	 * recording and then follow it frame by frame. run() and suspend() resume and pause playback, speedUp() and slowDown() change its speed, and
+	 * stopReplay() leaves the armies where the replay got to. */
+	public void replay( File file ) throws IOException {
+		if ( populateTask != null )
+			throw new IOException( "Cannot replay while the armies are being populated" );
+		ReplayReader reader = new ReplayReader( file );
+		if ( !reader.next() ) {
+			reader.close();
+			throw new IOException( file + " holds no frames" );
+		}
+		stopReplay();
+		suspend();
+		for ( int i = 0; i < reader.getArmyCount(); ++i )
+			fieldArmy( i, reader.getArmyName( i ), null );
+		for ( int i = reader.getArmyCount(); i < armies.size(); ++i )
+			rebuild( armies.get( i ), new byte[ 0 ] ); // not in the recording
+		replay = reader;
+		applyReplayFrame();
+		render( 1.0 );
+		replayClock.setSpeed( 1.0 );
+		replayClock.start();
+	}
+
+	/** Ends playback, leaving the armies as of the last frame shown; run() then carries on with the battle from there. */
+	public void stopReplay() {
+		if ( replay == null )
+			return;
+		replayClock.stop();
+		try {
+			replay.close();
+		} catch ( IOException e ) {
+			// only read from: nothing is lost
+		}
+		replay = null;
+	}
+
+	public boolean isReplaying() {
+		return replay != null;
+	}
+
+	// Called by the ReplayClock with the number of recorded ticks due this pulse: reads that many frames and applies only the last.
+	boolean advanceReplay( int frames ) {
+		try {
+			for ( int i = 0; i < frames; ++i ) {
+				if ( !replay.next() ) {
+					if ( i > 0 )
+						applyReplayFrame();
+					return false;
+				}
+			}
+			applyReplayFrame();
+			return true;
+		} catch ( IOException e ) {
+			stopReplay();
+			InputGUI.showMessageGUI( "Replay stopped: " + e.getMessage() );
+			return false;
+		}
+	}
+
+	// Rebuilds an army's Actor views when the frame has a different line-up (the first frame, or a populate during the recording), then applies it.
+	private void applyReplayFrame() {
+		for ( int i = 0; i < replay.getArmyCount(); ++i ) {
+			Army army = armies.get( i );
+			if ( !replay.matches( i, army.getState() ) ) {
+				byte[] kinds = new byte[ replay.getSize( i ) ];
+				for ( int slot = 0; slot < kinds.length; ++slot ) {
+					kinds[ slot ] = replay.getKind( i, slot );
+				}
+				rebuild( army, kinds );
+			}
+			replay.applyTo( i, army.getState() );
+		}
+		replay.applied();
+		setPopulated( true );
+	}
+
+	/*******************************************************/
+	//--------------------RENDER MODE----------------------//
+
+	private void buildCanvasRenderer() {
+		canvasRenderer = new CanvasRenderer( battle.getWidth(), battle.getHeight() );
+	}
+
+	// Avatars carry no tooltip of their own: mouse moves over the Canvas or any avatar bubble up to this pane, where the Actor under the mouse is
+	// looked up in the simulation state, and its text is built only when it changes or the tooltip is about to show.
+	private void buildToolTip() {
+		toolTip = new Tooltip();
+		toolTip.setOpacity( 0.80 );
+		toolTip.setOnShowing( new EventHandler<WindowEvent>() {
+			@Override
+			public void handle( WindowEvent event ) {
+				if ( actorUnderMouse != null )
+					toolTip.setText( actorUnderMouse.toString() );
+			}
+		} );
+		setOnMouseMoved( new EventHandler<MouseEvent>() {
+			@Override
+			public void handle( MouseEvent event ) {
+				Actor actor = pick( event );
+				if ( actor == actorUnderMouse )
+					return;
+				actorUnderMouse = actor;
+				if ( actor == null ) {
+					Tooltip.uninstall( Simulator.this, toolTip );
+				} else {
+					toolTip.setText( actor.toString() );
+					Tooltip.install( Simulator.this, toolTip );
+				}
+			}
+		} );
+	}
+
+	/** @return the living Actor drawn under the mouse, or null. Both the Canvas and the avatars are children of this pane drawn at their battlefield
+	 *         coordinates, so taking away the layout offset the pane gave the child under the mouse leaves the battlefield point. */
+	private Actor pick( MouseEvent event ) {
+		if ( !( event.getTarget() instanceof Node ) || event.getTarget() == this )
+			return null;
+		Node child = (Node) event.getTarget();
+		while ( child.getParent() != null && child.getParent() != this )
+			child = child.getParent();
+		if ( child.getParent() != this )
+			return null;
+		Point2D point = sceneToLocal( event.getSceneX(), event.getSceneY() );
+		return canvasRenderer.pick( point.getX() - child.getLayoutX(), point.getY() - child.getLayoutY(), armies );
+	}
+
+	public RenderMode getRenderMode() {
+		return renderMode;
 	}
 
-	public void displayDarkArmyToConsole() {
-		forcesOfDarkness.display();
+	/** Swaps the per-Actor Nodes for the single Canvas (or back) in the scene graph. */
+	public void setRenderMode( RenderMode renderMode ) {
+		if ( renderMode == this.renderMode )
+			return;
+		this.renderMode = renderMode;
+		getChildren().clear();
+		if ( renderMode == RenderMode.CANVAS ) {
+			getChildren().add( canvasRenderer.getCanvas() );
+		} else {
+			for ( Army army : armies )
+				army.addAvatarsTo( getChildren() );
+		}
+		render( 1.0 );
+	}
+
+	/** @return the name of every army of the battle, by battle index: the Forces of Light and of Darkness, then any a scenario, snapshot or replay
+	 *         has fielded */
+	public List<String> getArmyNames() {
+		List<String> names = new ArrayList<String>( armies.size() );
+		for ( Army army : armies )
+			names.add( army.getArmyName() );
+		return names;
+	}
+
+	/** Exports the chosen armies with the writer's format and filters, on a background thread; the battle carries on meanwhile. The armies are
+	 * copied here, as they stand, so the file shows a single moment of the battle.
+	 * 
+	 * @param included whether to export each army, by battle index; armies beyond its length are left out
+	 * @return the running task, for its outcome */
+	public RosterExportTask exportRoster( File file, RosterWriter writer, boolean[] included ) {
+		List<Roster> rosters = new ArrayList<Roster>( armies.size() );
+		for ( int i = 0; i < Math.min( included.length, armies.size() ); ++i ) {
+			if ( included[ i ] )
+				rosters.add( armies.get( i ).captureRoster() );
+		}
+		RosterExportTask task = new RosterExportTask( file, writer, rosters );
+		Thread worker = new Thread( task, "Roster export" );
+		worker.setDaemon( true );
+		worker.start();
+		return task;
+	}
+
+	/** @param index the army's battle index, as in getArmyNames() */
+	public void displayArmyToConsole( int index ) {
+		armies.get( index ).display();
 	}
 
-	public void editDarkArmy() {
-		forcesOfDarkness.editArmy( InputGUI.getInt( "Index to Edit (Max: " + ( forcesOfDarkness.getSize() - 1 ) + ")", 0, forcesOfDarkness.getSize() - 1 ) );
+	public void displayMemoryFootprintToConsole() {
+		new FootprintReport( armies.toArray( new Army[ armies.size() ] ) ).print();
 	}
 
-	public void editLightArmy() {
-		forcesOfLight.editArmy( InputGUI.getInt( "Index to Edit (Max: " + ( forcesOfLight.getSize() - 1 ) + ")", 0, forcesOfLight.getSize() - 1 ) );
+	/** @param index the army's battle index, as in getArmyNames() */
+	public void editArmy( int index ) {
+		Army army = armies.get( index );
+		army.editArmy( InputGUI.getInt( "Index to Edit (Max: " + ( army.getSize() - 1 ) + ")", 0, army.getSize() - 1 ) );
 	}
 
 	public void openListWindow() {
+		if ( stageListArmiesWindow == null )
+			buildListViewWindow();
 		stageListArmiesWindow.show();
 	}
 
 	public void closeListWindow() {
-		stageListArmiesWindow.close();
+		if ( stageListArmiesWindow != null )
+			stageListArmiesWindow.close();
 	}
 
 	public void closeTableWindow() {
-		tableViewStage.close();
+		if ( tableViewStage != null )
+			tableViewStage.close();
+	}
+
+	// Closes the list and table windows for good; they are built again, with a column for every army, when next opened.
+	private void discardArmyWindows() {
+		if ( stageListArmiesWindow != null ) {
+			stageListArmiesWindow.close();
+			stageListArmiesWindow.setScene( null );
+			stageListArmiesWindow = null;
+		}
+		if ( tableViewStage != null ) {
+			tableViewStage.close();
+			tableViewStage.setScene( null );
+			tableViewStage = null;
+		}
 	}
 
 	public void openTableWindow() {
+		if ( tableViewStage == null )
+			buildTableViewStage();
 		tableViewStage.show();
 
 	}
 
 	public void run() {
-		forcesOfLight.run();
-		forcesOfDarkness.run();
+		if ( replay != null ) {
+			if ( !replayClock.isRunning() )
+				replayClock.start();
+			return;
+		}
+		if ( populateTask != null ) {
+			resumeAfterPopulate = true; // start once the populate has finished
+			return;
+		}
+		if ( isPopulated() && !battleClock.isRunning() )
+			battleClock.start();
 	}
 
 	public void suspend() {
-		forcesOfLight.suspend();
-		forcesOfDarkness.suspend();
+		resumeAfterPopulate = false;
+		battleClock.stop(); // the whole battle pauses with the clock
+		replayClock.stop();
+	}
 
+	/** Called by the BattleClock after it has advanced the battle.
+	 * 
+	 * @param alpha fraction of a timestep since the latest tick, used to interpolate avatar locations */
+	public void render( double alpha ) {
+		for ( Army army : armies )
+			army.publishProperties(); // table and list views and avatar attributes: one batch of changes per pulse
+		if ( renderMode == RenderMode.CANVAS ) {
+			canvasRenderer.render( alpha, armies );
+		} else {
+			for ( Army army : armies )
+				army.render( alpha );
+		}
 	}
     
+    /** Doubles the time scale of the battle (see BattleClock), or the playback speed of a replay. */
     public void speedUp(){
-    	final double TEN_PERCENT_FASTER = 0.90;
-    	forcesOfLight.setDuration( TEN_PERCENT_FASTER );
-    	forcesOfDarkness.setDuration( TEN_PERCENT_FASTER );
+    	if ( replay != null ) {
+    		replayClock.setSpeed( replayClock.getSpeed() * SPEED_STEP );
+    		return;
+    	}
+    	battleClock.setTimeScale( Math.min( MAX_TIME_SCALE, battleClock.getTimeScale() * SPEED_STEP ) );
     }
     
     public void slowDown(){
-    	final double TEN_PERCENT_SLOWER = 1.10;
-    	forcesOfLight.setDuration( TEN_PERCENT_SLOWER );
-    	forcesOfDarkness.setDuration( TEN_PERCENT_SLOWER );    	
+    	if ( replay != null ) {
+    		replayClock.setSpeed( replayClock.getSpeed() / SPEED_STEP );
+    		return;
+    	}
+    	battleClock.setTimeScale( Math.max( MIN_TIME_SCALE, battleClock.getTimeScale() / SPEED_STEP ) );
     }
     
     public void resetSpeed(){
-    	final double DEFAULT_DURATION = 200.0;
-    	forcesOfLight.setDuration( DEFAULT_DURATION );
-    	forcesOfDarkness.setDuration( DEFAULT_DURATION );
+    	if ( replay != null ) {
+    		replayClock.setSpeed( 1.0 );
+    		return;
+    	}
+    	battleClock.setTimeScale( 1.0 );
+    }
+
+    /** @return simulated seconds per wall-clock second: the battle's time scale, or the playback speed of a replay */
+    public double getSpeed(){
+    	return replay != null ? replayClock.getSpeed() : battleClock.getTimeScale();
+    }
+    
+    /** Switches the battle between the spatial-grid nearest-enemy search and the linear-scan reference implementation. */
+    public void setSearchMode( Battle.SearchMode searchMode ){
+    	battle.setSearchMode( searchMode );
+    }
+    
+    public Battle getBattle(){
+    	return battle;
+    }
+
+    public Metrics getMetrics(){
+    	return metrics;
+    }
+
+    /** Switches the battle between ticking on the JavaFX Application Thread and ticking across a ForkJoinPool. */
+    public void setTickMode( Battle.TickMode tickMode ){
+    	battle.setTickMode( tickMode );
+    }
+
+    /** Where actors may stand: the walkable ground of the map drawn behind them (see core.TerrainMask). */
+    public void setTerrain( TerrainMask terrain ){
+    	battle.setTerrain( terrain );
+    }
+
+    /** Keeps the headless battlefield the same size as the Scene the armies are drawn in. */
+    public void setBattlefieldSize( double width, double height ){
+    	battle.setSize( width, height );
+    	canvasRenderer.setSize( width, height );
     }
     
     public boolean isPopulated(){
@@ -162,4 +616,4 @@ public class Simulator extends StackPane implements Serializable {
     	this.populated = pop;
     }   
     
-} // end class Simulator
\ No newline at end of file
+} // end class Simulator